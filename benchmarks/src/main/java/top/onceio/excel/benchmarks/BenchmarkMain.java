@@ -0,0 +1,35 @@
+package top.onceio.excel.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 同JMH命令行，未指定时默认启用gc和{@link RowProfiler}，结果以JSON写入target/jmh-result.json，
+ * 例如只跑10万行的写出：java -jar target/onceio-excel-utils-0.1.0-benchmarks.jar WriteBenchmark -p rows=100000
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cli = new CommandLineOptions(args);
+		if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+				|| cli.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(cli);
+		if (!cli.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cli.getResult().hasValue()) {
+			builder.result("target/jmh-result.json");
+		}
+		if (cli.getProfilers().isEmpty()) {
+			builder.addProfiler(GCProfiler.class).addProfiler(RowProfiler.class);
+		}
+		new Runner(builder.build()).run();
+	}
+}
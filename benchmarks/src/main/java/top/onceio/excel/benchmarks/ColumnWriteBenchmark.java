@@ -0,0 +1,38 @@
+package top.onceio.excel.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import top.onceio.excel.utils.ExcelTplWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExcelTplWriter.writeByColumn：每条数据占一列，xlsx最多16384列，因此按列数而非行数取参数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ColumnWriteBenchmark {
+	@Param({"1000", "10000"})
+	public int columns;
+	private byte[] template;
+	private List<Object[]> data;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		template = Synthetic.bytes(Synthetic.columnTemplate());
+		data = Synthetic.columns(columns);
+	}
+
+	@Benchmark
+	public long writeByColumn() {
+		Synthetic.CountingOutputStream os = new Synthetic.CountingOutputStream();
+		ExcelTplWriter.writeByColumn(new ByteArrayInputStream(template), 0, 1, data, "out.xlsx", os);
+		return os.count;
+	}
+}
@@ -0,0 +1,39 @@
+package top.onceio.excel.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import top.onceio.excel.utils.ExcelClassHelper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExcelClassHelper.read按文件路径读取：xlsx按SAX事件流式解析，csv按通道读取
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ReadBenchmark {
+	@Param({"10000", "100000", "1000000"})
+	public int rows;
+	@Param({"xlsx", "csv"})
+	public String format;
+	private String path;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		path = Synthetic.data(rows, format).getPath();
+	}
+
+	@Benchmark
+	public List<Item> read() {
+		List<Item> items = ExcelClassHelper.read(Item.class, Synthetic.ALIAS, path);
+		if (items.size() != rows) {
+			throw new IllegalStateException("读取行数不符:" + items.size());
+		}
+		return items;
+	}
+}
@@ -0,0 +1,83 @@
+package top.onceio.excel.benchmarks;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 按行归一的指标：每行分配字节、每秒行数，以及迭代期间的堆峰值。
+ * 行数取自基准的rows(或columns)参数；分配字节按迭代结束时仍存活的线程统计，
+ * 堆峰值为各堆内存池峰值之和，略高于实际同时占用
+ */
+public class RowProfiler implements InternalProfiler {
+	private final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private long allocated;
+	private long start;
+
+	@Override
+	public String getDescription() {
+		return "每行分配字节、每秒行数和堆峰值";
+	}
+
+	@Override
+	public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+		allocated = allocatedBytes();
+		start = System.nanoTime();
+	}
+
+	@Override
+	public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+													   IterationResult result) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long bytes = allocatedBytes() - allocated;
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		List<Result> results = new ArrayList<>();
+		results.add(new ScalarResult("·heap.peak", peak / (1024.0 * 1024.0), "MB", AggregationPolicy.MAX));
+		double rows = result.getMetadata().getAllOps() * (double) rowsPerOp(benchmarkParams);
+		if (rows > 0) {
+			results.add(new ScalarResult("·alloc.norm.row", bytes / rows, "B/row", AggregationPolicy.AVG));
+			results.add(new ScalarResult("·rows.rate", rows / seconds, "rows/s", AggregationPolicy.AVG));
+		}
+		return results;
+	}
+
+	private static long rowsPerOp(BenchmarkParams params) {
+		String rows = params.getParam("rows");
+		if (rows == null) {
+			rows = params.getParam("columns");
+		}
+		return rows != null ? Long.parseLong(rows) : 0;
+	}
+
+	private long allocatedBytes() {
+		long total = 0;
+		for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+}
@@ -0,0 +1,257 @@
+package top.onceio.excel.benchmarks;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * 基准测试用的合成数据，各值由行号决定：字符串、整数、小数、公式(数量*单价)、日期、布尔。
+ * 数据文件和模板用POI直接生成到target/bench-data，已存在时复用
+ */
+public final class Synthetic {
+	static final File DIR = new File("target/bench-data");
+	static final String[] HEADS = {"名称", "数量", "单价", "金额", "日期", "启用"};
+	static final Map<String, String> ALIAS = new HashMap<>();
+	private static final long BASE_DATE = 1500000000000L;
+	private static final long DAY_MILLIS = 86400000L;
+
+	static {
+		ALIAS.put("名称", "name");
+		ALIAS.put("数量", "quantity");
+		ALIAS.put("单价", "price");
+		ALIAS.put("金额", "amount");
+		ALIAS.put("日期", "date");
+		ALIAS.put("启用", "enabled");
+	}
+
+	private Synthetic() {
+	}
+
+	static Item item(int i) {
+		Item item = new Item();
+		item.setName("name:" + i);
+		item.setQuantity(i % 100);
+		item.setPrice(price(i));
+		item.setAmount(BigDecimal.valueOf(i % 100 * price(i)));
+		item.setDate(new Date(BASE_DATE - i % 10000 * DAY_MILLIS));
+		item.setEnabled(i % 3 == 0);
+		return item;
+	}
+
+	private static double price(int i) {
+		return i % 1000 / 4.0;
+	}
+
+	/**
+	 * 按需生成，不占用与行数相关的内存
+	 */
+	static List<Item> items(final int rows) {
+		return new AbstractList<Item>() {
+			@Override
+			public Item get(int index) {
+				return item(index);
+			}
+
+			@Override
+			public int size() {
+				return rows;
+			}
+		};
+	}
+
+	/**
+	 * 与{@link #template()}对应的数据行，第一列为空，金额列为公式
+	 */
+	public static Iterator<Object[]> rows(final int rows) {
+		return new Iterator<Object[]>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < rows;
+			}
+
+			@Override
+			public Object[] next() {
+				int r = i + 2;
+				Object[] row = new Object[]{"name:" + i, i % 100, price(i), "B" + r + "*C" + r,
+						new Date(BASE_DATE - i % 10000 * DAY_MILLIS), i % 3 == 0};
+				i++;
+				return row;
+			}
+		};
+	}
+
+	/**
+	 * 与{@link #columnTemplate()}对应的按列数据，每个数组是一列
+	 */
+	static List<Object[]> columns(int columns) {
+		List<Object[]> data = new ArrayList<>(columns);
+		for (int i = 0; i < columns; i++) {
+			Item item = item(i);
+			data.add(new Object[]{item.getName(), item.getQuantity(), item.getPrice(), item.getAmount(), item.getDate(), item.getEnabled()});
+		}
+		return data;
+	}
+
+	/**
+	 * 第一行为表头，第二行为示例行
+	 */
+	public static synchronized File template() throws IOException {
+		File file = new File(DIR, "tpl-rows.xlsx");
+		if (!file.exists()) {
+			try (XSSFWorkbook wb = new XSSFWorkbook()) {
+				Sheet sheet = wb.createSheet("明细");
+				Row head = sheet.createRow(0);
+				for (int c = 0; c < HEADS.length; c++) {
+					head.createCell(c).setCellValue(HEADS[c]);
+				}
+				fillExample(styles(wb), sheet.createRow(1), 0, "B2*C2");
+				save(wb, file);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * 第一列为字段名，第二列为示例列
+	 */
+	static synchronized File columnTemplate() throws IOException {
+		File file = new File(DIR, "tpl-columns.xlsx");
+		if (!file.exists()) {
+			try (XSSFWorkbook wb = new XSSFWorkbook()) {
+				Sheet sheet = wb.createSheet("明细");
+				Row[] rows = new Row[HEADS.length];
+				for (int r = 0; r < HEADS.length; r++) {
+					rows[r] = sheet.createRow(r);
+					rows[r].createCell(0).setCellValue(HEADS[r]);
+				}
+				CellStyle[] styles = styles(wb);
+				rows[0].createCell(1).setCellValue("name");
+				rows[1].createCell(1).setCellValue(1);
+				rows[2].createCell(1).setCellValue(1.5);
+				rows[2].getCell(1).setCellStyle(styles[0]);
+				rows[3].createCell(1).setCellValue(1.5);
+				rows[3].getCell(1).setCellStyle(styles[0]);
+				rows[4].createCell(1).setCellValue(new Date());
+				rows[4].getCell(1).setCellStyle(styles[1]);
+				rows[5].createCell(1).setCellValue(true);
+				save(wb, file);
+			}
+		}
+		return file;
+	}
+
+	private static void fillExample(CellStyle[] styles, Row example, int i, String formula) {
+		Item item = item(i);
+		example.createCell(0).setCellValue(item.getName());
+		example.createCell(1).setCellValue(item.getQuantity());
+		Cell price = example.createCell(2);
+		price.setCellValue(item.getPrice());
+		price.setCellStyle(styles[0]);
+		Cell amount = example.createCell(3);
+		amount.setCellFormula(formula);
+		amount.setCellValue(item.getAmount().doubleValue());
+		amount.setCellStyle(styles[0]);
+		Cell date = example.createCell(4);
+		date.setCellValue(item.getDate());
+		date.setCellStyle(styles[1]);
+		example.createCell(5).setCellValue(item.getEnabled());
+	}
+
+	private static CellStyle[] styles(Workbook wb) {
+		CellStyle money = wb.createCellStyle();
+		money.setDataFormat(wb.createDataFormat().getFormat("0.00"));
+		CellStyle date = wb.createCellStyle();
+		date.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+		return new CellStyle[]{money, date};
+	}
+
+	/**
+	 * 待读取的数据文件，xlsx的公式单元格带缓存结果
+	 *
+	 * @param format xlsx或csv
+	 */
+	static synchronized File data(int rows, String format) throws IOException {
+		File file = new File(DIR, "data-" + rows + "." + format);
+		if (file.exists()) {
+			return file;
+		}
+		if ("csv".equals(format)) {
+			writeCsv(rows, file);
+			return file;
+		}
+		SXSSFWorkbook wb = new SXSSFWorkbook(1000);
+		try {
+			Sheet sheet = wb.createSheet("明细");
+			Row head = sheet.createRow(0);
+			for (int c = 0; c < HEADS.length; c++) {
+				head.createCell(c).setCellValue(HEADS[c]);
+			}
+			CellStyle[] styles = styles(wb);
+			for (int i = 0; i < rows; i++) {
+				fillExample(styles, sheet.createRow(i + 1), i, "B" + (i + 2) + "*C" + (i + 2));
+			}
+			save(wb, file);
+		} finally {
+			wb.dispose();
+			wb.close();
+		}
+		return file;
+	}
+
+	private static void writeCsv(int rows, File file) throws IOException {
+		DIR.mkdirs();
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			w.write(String.join(",", HEADS));
+			w.write("\r\n");
+			for (int i = 0; i < rows; i++) {
+				Item item = item(i);
+				w.write(item.getName() + "," + item.getQuantity() + "," + item.getPrice() + "," + item.getAmount().toPlainString() + ","
+						+ format.format(item.getDate()) + "," + item.getEnabled() + "\r\n");
+			}
+		}
+	}
+
+	private static void save(Workbook wb, File file) throws IOException {
+		DIR.mkdirs();
+		File tmp = new File(DIR, file.getName() + ".tmp");
+		try (OutputStream os = new FileOutputStream(tmp)) {
+			wb.write(os);
+		}
+		Files.move(tmp.toPath(), file.toPath());
+	}
+
+	public static byte[] bytes(File file) throws IOException {
+		return Files.readAllBytes(file.toPath());
+	}
+
+	/**
+	 * 只计数的输出流，基准测试不受磁盘影响
+	 */
+	public static final class CountingOutputStream extends OutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package top.onceio.excel.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import top.onceio.excel.utils.ExcelClassHelper;
+import top.onceio.excel.utils.ExcelTplWriter;
+import top.onceio.excel.utils.ExcelWriteOptions;
+import top.onceio.excel.utils.WriteEngine;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按模板逐行导出：ExcelClassHelper.write写对象列表，ExcelTplWriter.write写数组行。
+ * 数据按需生成，输出只计数不落盘，target为SXSSF、DIRECT两种xlsx引擎或CSV
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class WriteBenchmark {
+	@Param({"10000", "100000", "1000000"})
+	public int rows;
+	@Param({"SXSSF", "DIRECT", "CSV"})
+	public String target;
+	private byte[] template;
+	private String filename;
+	private ExcelWriteOptions options;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		template = Synthetic.bytes(Synthetic.template());
+		filename = "CSV".equals(target) ? "out.csv" : "out.xlsx";
+		options = new ExcelWriteOptions().setEngine("DIRECT".equals(target) ? WriteEngine.DIRECT : WriteEngine.SXSSF);
+	}
+
+	@Benchmark
+	public long classHelperWrite() {
+		Synthetic.CountingOutputStream os = new Synthetic.CountingOutputStream();
+		check(ExcelClassHelper.write(Item.class, Synthetic.items(rows), Synthetic.ALIAS, filename, new ByteArrayInputStream(template), os,
+				options));
+		return os.count;
+	}
+
+	@Benchmark
+	public long tplWriterWrite() {
+		Synthetic.CountingOutputStream os = new Synthetic.CountingOutputStream();
+		check(ExcelTplWriter.write(new ByteArrayInputStream(template), 1, null, Synthetic.rows(rows), filename, os, options));
+		return os.count;
+	}
+
+	private void check(int written) {
+		if (written != rows) {
+			throw new IllegalStateException("写出行数不符:" + written);
+		}
+	}
+}
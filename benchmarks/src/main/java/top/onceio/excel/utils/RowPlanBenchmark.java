@@ -0,0 +1,150 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import top.onceio.excel.benchmarks.Synthetic;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐单元格写出的两种方式：EG_CELL为RowPlan之前按列号从HashMap取示例单元格、setCellType后按类型分支写值的做法，
+ * ROW_PLAN为编译后的{@link RowPlan}。两者都从模板建SXSSF工作簿并写出到只计数的输出流，只有数据行的循环不同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class RowPlanBenchmark {
+	@Param({"100000"})
+	public int rows;
+	@Param({"EG_CELL", "ROW_PLAN"})
+	public String mode;
+	private byte[] template;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		template = Synthetic.bytes(Synthetic.template());
+	}
+
+	@Benchmark
+	public int write() throws IOException {
+		SXSSFWorkbook wb = new SXSSFWorkbook(new XSSFWorkbook(new ByteArrayInputStream(template)), 1000);
+		try {
+			Row example = wb.getXSSFWorkbook().getSheetAt(0).getRow(1);
+			Sheet sheet = wb.createSheet();
+			int written = "ROW_PLAN".equals(mode) ? rowPlan(example, sheet) : egCell(example, sheet);
+			wb.write(new Synthetic.CountingOutputStream());
+			return written;
+		} finally {
+			wb.dispose();
+			wb.close();
+		}
+	}
+
+	private int rowPlan(Row example, Sheet sheet) {
+		RowPlan plan = RowPlan.compile(example);
+		Iterator<Object[]> data = Synthetic.rows(rows);
+		int r = 1;
+		while (data.hasNext()) {
+			Object[] objs = data.next();
+			Row row = sheet.createRow(r++);
+			for (int i = 0; i < objs.length; i++) {
+				if (plan.has(i)) {
+					plan.write(row, i, objs[i]);
+				}
+			}
+		}
+		return r - 1;
+	}
+
+	private int egCell(Row example, Sheet sheet) {
+		Map<Integer, Cell> egCell = new HashMap<>();
+		for (int c = example.getFirstCellNum(); c <= example.getLastCellNum(); c++) {
+			Cell cell = example.getCell(c);
+			if (cell != null) {
+				egCell.put(c, cell);
+			}
+		}
+		Iterator<Object[]> data = Synthetic.rows(rows);
+		int r = 1;
+		while (data.hasNext()) {
+			Object[] objs = data.next();
+			Row row = sheet.createRow(r++);
+			for (int i = 0; i < objs.length; i++) {
+				Cell eg = egCell.get(i);
+				Cell cell = row.createCell(i);
+				Object val = objs[i];
+				String comment = null;
+				if (eg != null) {
+					cell.setCellType(eg.getCellType());
+					cell.setCellStyle(eg.getCellStyle());
+					Comment cc = eg.getCellComment();
+					if (cc != null) {
+						comment = cc.getString().getString();
+					}
+				}
+				if (eg == null || val == null) continue;
+				fillCellValue(cell, val, comment);
+			}
+		}
+		return r - 1;
+	}
+
+	/**
+	 * RowPlan之前的ExcelTplWriter.fillCellValue
+	 */
+	private static void fillCellValue(Cell cell, Object val, String comment) {
+		switch (cell.getCellType()) {
+			case Cell.CELL_TYPE_NUMERIC:
+				if (val instanceof Date) {
+					cell.setCellValue((Date) val);
+				} else {
+					cell.setCellValue(Double.parseDouble(val.toString()));
+				}
+				break;
+			case Cell.CELL_TYPE_STRING:
+				cell.setCellValue(val.toString());
+				break;
+			case Cell.CELL_TYPE_BOOLEAN:
+				cell.setCellValue(Boolean.parseBoolean(val.toString()));
+				break;
+			case Cell.CELL_TYPE_FORMULA:
+				cell.setCellFormula(val.toString());
+				break;
+			case Cell.CELL_TYPE_BLANK:
+				if (val instanceof String) {
+					cell.setCellValue((String) val);
+				} else if (val instanceof Boolean) {
+					cell.setCellValue((Boolean) val);
+				} else if (val instanceof BigDecimal
+						|| val instanceof Integer
+						|| val instanceof Short
+						|| val instanceof Float
+						|| val instanceof Double
+						|| val instanceof Long) {
+					cell.setCellValue(Double.parseDouble(val.toString()));
+				} else if (val instanceof Date) {
+					cell.setCellValue((Date) val);
+				} else {
+					cell.setCellValue(val.toString());
+				}
+				break;
+			default:
+				break;
+		}
+	}
+}
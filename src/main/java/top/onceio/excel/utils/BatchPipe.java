@@ -0,0 +1,198 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.util.LocaleUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 在后台线程运行解析，按批次经有界队列交给消费方，
+ * 同一时刻最多有 (QUEUE_DEPTH + 2) 个批次驻留内存。
+ * POI的日期换算按线程取用户时区(LocaleUtil)，解析线程沿用创建方的设置
+ */
+final class BatchPipe<T> implements Iterator<List<T>>, AutoCloseable {
+	static final int DEFAULT_BATCH_SIZE = 1000;
+	private static final int QUEUE_DEPTH = 2;
+	private static final AtomicInteger SEQ = new AtomicInteger();
+
+	interface Producer<T> {
+		void produce(Consumer<T> sink) throws IOException;
+	}
+
+	private final BlockingQueue<List<T>> queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+	private final List<T> end = Collections.emptyList();
+	private final int batchSize;
+	private volatile boolean closed;
+	private volatile Throwable failure;
+	private List<T> next;
+	private boolean done;
+	/**
+	 * 解析线程正在填充的批次
+	 */
+	private List<T> batch;
+
+	BatchPipe(Producer<T> producer, int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize必须大于0");
+		}
+		this.batchSize = batchSize;
+		TimeZone tz = LocaleUtil.getUserTimeZone();
+		Thread thread = new Thread(() -> run(producer, tz), "onceio-excel-reader-" + SEQ.incrementAndGet());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void run(Producer<T> producer, TimeZone tz) {
+		TimeZone prev = LocaleUtil.getUserTimeZone();
+		LocaleUtil.setUserTimeZone(tz);
+		try {
+			produce(producer);
+		} finally {
+			LocaleUtil.setUserTimeZone(prev);
+		}
+	}
+
+	private void produce(Producer<T> producer) {
+		try {
+			batch = new ArrayList<>(batchSize);
+			producer.produce(obj -> {
+				batch.add(obj);
+				if (batch.size() >= batchSize) {
+					put(batch);
+					batch = new ArrayList<>(batchSize);
+				}
+			});
+			if (!batch.isEmpty()) {
+				put(batch);
+			}
+		} catch (Closed c) {
+			return;
+		} catch (Throwable t) {
+			failure = t;
+		}
+		try {
+			put(end);
+		} catch (Closed c) {
+			// 已关闭，无需结束标记
+		}
+	}
+
+	private void put(List<T> batch) {
+		try {
+			while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+				if (closed) {
+					throw new Closed();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Closed();
+		}
+		if (closed) {
+			throw new Closed();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+		if (done || closed) {
+			return false;
+		}
+		try {
+			next = queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new IllegalStateException(e);
+		}
+		if (next == end) {
+			next = null;
+			done = true;
+			Throwable t = failure;
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			} else if (t instanceof Error) {
+				throw (Error) t;
+			} else if (t instanceof IOException) {
+				throw new UncheckedIOException((IOException) t);
+			} else if (t != null) {
+				throw new IllegalStateException(t);
+			}
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public List<T> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		List<T> batch = next;
+		next = null;
+		return batch;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		next = null;
+		queue.clear();
+	}
+
+	/**
+	 * 逐行迭代
+	 */
+	CloseableIterator<T> rows() {
+		return new CloseableIterator<T>() {
+			private List<T> batch = Collections.emptyList();
+			private int i;
+
+			@Override
+			public boolean hasNext() {
+				while (i >= batch.size()) {
+					if (!BatchPipe.this.hasNext()) {
+						return false;
+					}
+					batch = BatchPipe.this.next();
+					i = 0;
+				}
+				return true;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return batch.get(i++);
+			}
+
+			@Override
+			public void close() {
+				batch = Collections.emptyList();
+				BatchPipe.this.close();
+			}
+		};
+	}
+
+	private static final class Closed extends RuntimeException {
+		Closed() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 第一行作为表头，其余各行按表头/别名映射为对象后交给sink。
+ * 按options只映射指定的列，跳过前offset行，达到limit或stopWhen成立后{@link #done()}
+ */
+class BeanRowHandler<T> implements SheetRowHandler {
+	private final Class<T> clazz;
+	private final Map<String, String> alias;
+	private final boolean trim;
+	private final boolean date1904;
+	private final Consumer<T> sink;
+	private final Collection<String> columns;
+	private final int offset;
+	private final int limit;
+	private final Predicate<Object> stopWhen;
+	/**
+	 * 启用指标时的计数，否则为null
+	 */
+	private final CellStats stats;
+	private final Map<String, Integer> nameToC = new HashMap<>();
+	private ClassMapper<T> mapper;
+	private T current;
+	/**
+	 * 表头之后已经过的行数和已交给sink的对象数
+	 */
+	private int seen;
+	private int emitted;
+	private boolean done;
+
+	BeanRowHandler(Class<T> clazz, Map<String, String> alias, boolean trim, boolean date1904, Consumer<T> sink) {
+		this(clazz, alias, new ExcelReadOptions().setTrim(trim), date1904, sink, null);
+	}
+
+	BeanRowHandler(Class<T> clazz, Map<String, String> alias, ExcelReadOptions options, boolean date1904, Consumer<T> sink,
+				   CellStats stats) {
+		this.clazz = clazz;
+		this.alias = alias;
+		this.trim = options.isTrim();
+		this.date1904 = date1904;
+		this.sink = sink;
+		this.columns = options.getColumns();
+		this.offset = options.getOffset();
+		this.limit = options.getLimit();
+		this.stopWhen = options.getStopWhen();
+		this.stats = stats;
+	}
+
+	/**
+	 * 只保留options.columns中的表头，按表头名称或别名对应的字段名匹配
+	 */
+	static Map<String, Integer> project(Map<String, Integer> nameToC, Map<String, String> alias, Collection<String> columns) {
+		if (columns == null) {
+			return nameToC;
+		}
+		Map<String, Integer> projected = new HashMap<>();
+		for (Map.Entry<String, Integer> entry : nameToC.entrySet()) {
+			String name = entry.getKey();
+			if (columns.contains(name) || (alias != null && columns.contains(alias.get(name)))) {
+				projected.put(name, entry.getValue());
+			}
+		}
+		return projected;
+	}
+
+	@Override
+	public void startRow(int rowNum) {
+		if (mapper != null && !done && seen >= offset) {
+			current = mapper.newInstance();
+		}
+	}
+
+	@Override
+	public void numericCell(int col, double val) {
+		if (mapper == null) {
+			header(col, (String) CellConverter.of(String.class).fromNumeric(val, date1904));
+			return;
+		}
+		if (current == null) {
+			return;
+		}
+		ClassMapper.Column column = mapper.column(col);
+		if (stats != null) {
+			stats.cell(Cell.CELL_TYPE_NUMERIC);
+		}
+		if (column != null) {
+			try {
+				column.setNumeric(current, val, date1904);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void stringCell(int col, String val) {
+		if (mapper == null) {
+			header(col, val);
+			return;
+		}
+		if (current == null) {
+			return;
+		}
+		ClassMapper.Column column = mapper.column(col);
+		if (stats != null) {
+			stats.cell(Cell.CELL_TYPE_STRING);
+		}
+		if (column != null && val != null) {
+			try {
+				column.setString(current, trim ? val.trim() : val);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void booleanCell(int col, boolean val) {
+		if (mapper == null) {
+			header(col, String.valueOf(val));
+			return;
+		}
+		if (current == null) {
+			return;
+		}
+		ClassMapper.Column column = mapper.column(col);
+		if (stats != null) {
+			stats.cell(Cell.CELL_TYPE_BOOLEAN);
+		}
+		if (column != null) {
+			try {
+				column.setBoolean(current, val);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void endRow(int rowNum) {
+		if (mapper == null) {
+			mapper = ClassMapper.of(clazz, alias, project(nameToC, alias, columns));
+			done = limit <= 0;
+			return;
+		}
+		seen++;
+		if (current == null) {
+			return;
+		}
+		T obj = current;
+		current = null;
+		if (stopWhen != null && stopWhen.test(obj)) {
+			done = true;
+			return;
+		}
+		if (stats != null) {
+			stats.rows++;
+		}
+		sink.accept(obj);
+		done = ++emitted >= limit;
+	}
+
+	@Override
+	public boolean accepts(int col) {
+		return mapper == null || (current != null && mapper.column(col) != null);
+	}
+
+	@Override
+	public boolean done() {
+		return done;
+	}
+
+	private void failed() {
+		if (stats != null) {
+			stats.failures++;
+		}
+	}
+
+	private void header(int col, String name) {
+		if (name != null) {
+			nameToC.put(trim ? name.trim() : name, col);
+		}
+	}
+}
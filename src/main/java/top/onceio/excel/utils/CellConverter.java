@@ -0,0 +1,198 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 单元格值到字段类型的转换，按字段类型预先选定，逐单元格调用时不再做类型判断
+ */
+abstract class CellConverter {
+
+	abstract Object fromNumeric(double val, boolean date1904);
+
+	/**
+	 * @param val 非null，已按需trim
+	 */
+	abstract Object fromString(String val);
+
+	Object fromBoolean(boolean val) {
+		return null;
+	}
+
+	static CellConverter of(Class<?> type) {
+		if (type.equals(String.class)) {
+			return new CellConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					if (val - (long) val == 0.0) {
+						return (long) val + "";
+					} else {
+						return val + "";
+					}
+				}
+
+				@Override
+				Object fromString(String val) {
+					return val;
+				}
+			};
+		} else if (type.equals(Date.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					return DateUtil.getJavaDate(val, date1904);
+				}
+
+				@Override
+				Object parse(String val) {
+					return ExcelDates.parse(val.trim());
+				}
+			};
+		} else if (type.equals(Long.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					if (val - (long) val != 0.0) {
+						// 带小数部分的视为日期
+						return DateUtil.getJavaDate(val, date1904).getTime();
+					}
+					return (long) val;
+				}
+
+				@Override
+				Object parse(String val) {
+					return Long.valueOf(val);
+				}
+			};
+		} else if (type.equals(long.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					return (long) val;
+				}
+
+				@Override
+				Object parse(String val) {
+					return Long.valueOf(val);
+				}
+			};
+		} else if (type.equals(int.class) || type.equals(Integer.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					return (int) val;
+				}
+
+				@Override
+				Object parse(String val) {
+					return Integer.valueOf(val);
+				}
+			};
+		} else if (type.equals(short.class) || type.equals(Short.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					return (short) val;
+				}
+
+				@Override
+				Object parse(String val) {
+					return Short.valueOf(val);
+				}
+			};
+		} else if (type.equals(byte.class) || type.equals(Byte.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					return (byte) val;
+				}
+
+				@Override
+				Object parse(String val) {
+					return Byte.valueOf(val);
+				}
+			};
+		} else if (type.equals(double.class) || type.equals(Double.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					return val;
+				}
+
+				@Override
+				Object parse(String val) {
+					return Double.valueOf(val);
+				}
+			};
+		} else if (type.equals(float.class) || type.equals(Float.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					return (float) val;
+				}
+
+				@Override
+				Object parse(String val) {
+					return Float.valueOf(val);
+				}
+			};
+		} else if (type.equals(BigDecimal.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					return new BigDecimal(val + "");
+				}
+
+				@Override
+				Object parse(String val) {
+					return BigDecimal.valueOf(Double.valueOf(val));
+				}
+			};
+		} else if (type.equals(boolean.class) || type.equals(Boolean.class) || type.equals(Object.class)) {
+			return new NonStringConverter() {
+				@Override
+				Object fromNumeric(double val, boolean date1904) {
+					return null;
+				}
+
+				@Override
+				Object parse(String val) {
+					return type.equals(Object.class) ? null : Boolean.valueOf(val);
+				}
+
+				@Override
+				Object fromBoolean(boolean val) {
+					return val;
+				}
+			};
+		}
+		return new NonStringConverter() {
+			@Override
+			Object fromNumeric(double val, boolean date1904) {
+				return null;
+			}
+
+			@Override
+			Object parse(String val) {
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * 空白字符串转为null
+	 */
+	private abstract static class NonStringConverter extends CellConverter {
+		@Override
+		final Object fromString(String val) {
+			if (val.trim().isEmpty()) {
+				return null;
+			}
+			return parse(val);
+		}
+
+		abstract Object parse(String val);
+	}
+}
@@ -0,0 +1,20 @@
+package top.onceio.excel.utils;
+
+/**
+ * 单元格写入目标，{@link CellValueWriter}通过它以原始类型写值
+ */
+public interface CellSink {
+
+	void setNumber(double val);
+
+	void setString(String val);
+
+	void setBoolean(boolean val);
+
+	void setFormula(String formula);
+
+	/**
+	 * 工作簿是否使用1904日期系统，日期序列值需据此换算
+	 */
+	boolean isDate1904();
+}
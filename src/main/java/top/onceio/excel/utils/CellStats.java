@@ -0,0 +1,17 @@
+package top.onceio.excel.utils;
+
+/**
+ * 单个线程内的行数、按类型的单元格数和转换失败计数，结束时并入{@link Meter}
+ */
+final class CellStats {
+	static final int TYPES = 6;
+	long rows;
+	final long[] cells = new long[TYPES];
+	long failures;
+
+	void cell(int cellType) {
+		if (cellType >= 0 && cellType < TYPES) {
+			cells[cellType]++;
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package top.onceio.excel.utils;
+
+/**
+ * 按值类型写单元格，通过{@link CellValueWriters#register}注册自定义类型
+ */
+@FunctionalInterface
+public interface CellValueWriter<T> {
+
+	void write(CellSink sink, T val);
+}
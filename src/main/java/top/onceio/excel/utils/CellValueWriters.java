@@ -0,0 +1,81 @@
+package top.onceio.excel.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按值类型注册的单元格写入器。
+ * 数值直接取doubleValue，日期直接换算为Excel序列值，常见类型写入时不产生临时对象。
+ * 未注册的类型按父类、接口查找，结果会缓存。
+ */
+public final class CellValueWriters {
+	private static final ConcurrentMap<Class<?>, CellValueWriter<?>> REGISTERED = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Class<?>, CellValueWriter<?>> RESOLVED = new ConcurrentHashMap<>();
+	private static final CellValueWriter<Object> NONE = (sink, val) -> {
+	};
+
+	static {
+		CellValueWriter<Number> number = (sink, val) -> sink.setNumber(val.doubleValue());
+		REGISTERED.put(Double.class, number);
+		REGISTERED.put(Float.class, number);
+		REGISTERED.put(Long.class, number);
+		REGISTERED.put(Integer.class, number);
+		REGISTERED.put(Short.class, number);
+		REGISTERED.put(Byte.class, number);
+		REGISTERED.put(BigDecimal.class, number);
+		REGISTERED.put(BigInteger.class, number);
+		REGISTERED.put(Number.class, number);
+		REGISTERED.put(Date.class, (CellValueWriter<Date>) (sink, val) -> sink.setNumber(ExcelDates.serial(val.getTime(), sink.isDate1904())));
+		REGISTERED.put(Calendar.class, (CellValueWriter<Calendar>) (sink, val) -> sink.setNumber(ExcelDates.serial(val.getTimeInMillis(), sink.isDate1904())));
+		REGISTERED.put(LocalDate.class, (CellValueWriter<LocalDate>) (sink, val) -> sink.setNumber(ExcelDates.serial(val, sink.isDate1904())));
+		REGISTERED.put(LocalDateTime.class, (CellValueWriter<LocalDateTime>) (sink, val) -> sink.setNumber(ExcelDates.serial(val, sink.isDate1904())));
+		REGISTERED.put(Boolean.class, (CellValueWriter<Boolean>) (sink, val) -> sink.setBoolean(val));
+		REGISTERED.put(String.class, (CellValueWriter<String>) (sink, val) -> sink.setString(val));
+	}
+
+	private CellValueWriters() {
+	}
+
+	/**
+	 * 注册或替换某类型(含子类)的写入器
+	 */
+	public static <T> void register(Class<T> type, CellValueWriter<? super T> writer) {
+		REGISTERED.put(type, writer);
+		RESOLVED.clear();
+	}
+
+	/**
+	 * @return 未注册时返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public static CellValueWriter<Object> get(Class<?> type) {
+		CellValueWriter<?> writer = RESOLVED.get(type);
+		if (writer == null) {
+			writer = resolve(type);
+			RESOLVED.put(type, writer);
+		}
+		return writer == NONE ? null : (CellValueWriter<Object>) writer;
+	}
+
+	private static CellValueWriter<?> resolve(Class<?> type) {
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			CellValueWriter<?> writer = REGISTERED.get(c);
+			if (writer != null) {
+				return writer;
+			}
+			for (Class<?> i : c.getInterfaces()) {
+				writer = REGISTERED.get(i);
+				if (writer != null) {
+					return writer;
+				}
+			}
+		}
+		return NONE;
+	}
+}
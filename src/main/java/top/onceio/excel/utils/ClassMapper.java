@@ -0,0 +1,224 @@
+package top.onceio.excel.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 类与表头的映射，按 (类, 别名, 表头布局) 编译并缓存，线程安全。
+ * 每列预先解析好字段的setter/getter(MethodHandle)和转换器，逐单元格读写时不再反射查找。
+ */
+final class ClassMapper<T> {
+	private static final int MAX_CACHED = 512;
+	private static final ConcurrentMap<Class<?>, Map<String, Field>> FIELDS = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Key, ClassMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+	private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+
+	private final Class<T> clazz;
+	private final MethodHandle constructor;
+	private final Column[] columns;
+	private final Column[] byIndex;
+
+	private ClassMapper(Class<T> clazz, MethodHandle constructor, Column[] columns) {
+		this.clazz = clazz;
+		this.constructor = constructor;
+		this.columns = columns;
+		int max = -1;
+		for (Column c : columns) {
+			max = Math.max(max, c.index);
+		}
+		this.byIndex = new Column[max + 1];
+		for (Column c : columns) {
+			byIndex[c.index] = c;
+		}
+	}
+
+	/**
+	 * @param nameToIndex 表头名称到列号
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> ClassMapper<T> of(Class<T> clazz, Map<String, String> alias, Map<String, Integer> nameToIndex) {
+		Key key = new Key(clazz, alias, nameToIndex);
+		ClassMapper<?> mapper = MAPPERS.get(key);
+		if (mapper == null) {
+			if (MAPPERS.size() >= MAX_CACHED) {
+				MAPPERS.clear();
+			}
+			mapper = MAPPERS.computeIfAbsent(key, k -> compile(clazz, alias, nameToIndex));
+		}
+		return (ClassMapper<T>) mapper;
+	}
+
+	private static <T> ClassMapper<T> compile(Class<T> clazz, Map<String, String> aliasToField, Map<String, Integer> nameToIndex) {
+		Map<String, Field> nameToField = FIELDS.computeIfAbsent(clazz, ClassMapper::declaredFields);
+		Set<String> fieldNames = aliasToField != null ? new HashSet<>(aliasToField.values()) : null;
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		List<Column> columns = new ArrayList<>();
+		try {
+			for (Map.Entry<String, Integer> entry : nameToIndex.entrySet()) {
+				String fn = entry.getKey();
+				if (aliasToField != null) {
+					fn = aliasToField.get(entry.getKey());
+					if (fn == null) {
+						fn = entry.getKey();
+					}
+					if (!fieldNames.contains(fn)) {
+						continue;
+					}
+				}
+				Field f = nameToField.get(fn);
+				if (f != null) {
+					columns.add(new Column(entry.getValue(), f,
+							lookup.unreflectSetter(f).asType(SETTER),
+							lookup.unreflectGetter(f).asType(GETTER)));
+				}
+			}
+			Collections.sort(columns, (a, b) -> Integer.compare(a.index, b.index));
+			MethodHandle constructor = null;
+			try {
+				Constructor<T> c = clazz.getDeclaredConstructor();
+				c.setAccessible(true);
+				constructor = lookup.unreflectConstructor(c).asType(CONSTRUCTOR);
+			} catch (NoSuchMethodException e) {
+				// 仅用于写出时无需无参构造
+			}
+			return new ClassMapper<>(clazz, constructor, columns.toArray(new Column[columns.size()]));
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Map<String, Field> declaredFields(Class<?> clazz) {
+		Map<String, Field> nameToField = new HashMap<>();
+		for (Class<?> sc = clazz; sc != null && !sc.equals(Object.class); sc = sc.getSuperclass()) {
+			for (Field f : sc.getDeclaredFields()) {
+				if (Modifier.isStatic(f.getModifiers())) {
+					continue;
+				}
+				f.setAccessible(true);
+				nameToField.put(f.getName(), f);
+			}
+		}
+		return nameToField;
+	}
+
+	@SuppressWarnings("unchecked")
+	T newInstance() {
+		if (constructor == null) {
+			throw new IllegalStateException(clazz.getName() + "缺少无参构造函数");
+		}
+		try {
+			return (T) constructor.invokeExact();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * 已映射的列，按列号升序
+	 */
+	Column[] columns() {
+		return columns;
+	}
+
+	/**
+	 * @return 未映射时返回null
+	 */
+	Column column(int index) {
+		return index < byIndex.length ? byIndex[index] : null;
+	}
+
+	static final class Column {
+		final int index;
+		final Field field;
+		private final CellConverter converter;
+		private final MethodHandle setter;
+		private final MethodHandle getter;
+		private final boolean primitive;
+
+		Column(int index, Field field, MethodHandle setter, MethodHandle getter) {
+			this.index = index;
+			this.field = field;
+			this.converter = CellConverter.of(field.getType());
+			this.setter = setter;
+			this.getter = getter;
+			this.primitive = field.getType().isPrimitive();
+		}
+
+		void setNumeric(Object bean, double val, boolean date1904) {
+			set(bean, converter.fromNumeric(val, date1904));
+		}
+
+		void setString(Object bean, String val) {
+			set(bean, converter.fromString(val));
+		}
+
+		void setBoolean(Object bean, boolean val) {
+			set(bean, converter.fromBoolean(val));
+		}
+
+		void set(Object bean, Object val) {
+			if (val == null && primitive) {
+				return;
+			}
+			try {
+				setter.invokeExact(bean, val);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new IllegalStateException(t);
+			}
+		}
+
+		Object get(Object bean) {
+			try {
+				return (Object) getter.invokeExact(bean);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new IllegalStateException(t);
+			}
+		}
+	}
+
+	private static final class Key {
+		private final Class<?> clazz;
+		private final Map<String, String> alias;
+		private final Map<String, Integer> nameToIndex;
+		private final int hash;
+
+		Key(Class<?> clazz, Map<String, String> alias, Map<String, Integer> nameToIndex) {
+			this.clazz = clazz;
+			this.alias = alias != null ? new HashMap<>(alias) : null;
+			this.nameToIndex = new HashMap<>(nameToIndex);
+			this.hash = Objects.hash(clazz, this.alias, this.nameToIndex);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return hash == k.hash && clazz.equals(k.clazz) && Objects.equals(alias, k.alias) && nameToIndex.equals(k.nameToIndex);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
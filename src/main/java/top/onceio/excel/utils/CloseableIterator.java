@@ -0,0 +1,12 @@
+package top.onceio.excel.utils;
+
+import java.util.Iterator;
+
+/**
+ * 可提前关闭的迭代器，未迭代完时需调用close释放后台解析线程
+ */
+public interface CloseableIterator<T> extends Iterator<T>, AutoCloseable {
+
+	@Override
+	void close();
+}
@@ -0,0 +1,272 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.util.TempFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按列写出时的磁盘缓冲：逐列追加的值先按所在行示例单元格的类型转换(同{@link RowPlan})并编码，
+ * 在内存中累积到blockSize字节后按行转置为一个块写入临时文件；写出时逐行读取各块中该行的片段。
+ * 内存占用只与行数和blockSize有关，与列数无关，非线程安全
+ */
+final class ColumnSpill implements CellSink, Closeable {
+	/**
+	 * 该列在此行没有值，不创建单元格
+	 */
+	private static final byte MISSING = 0;
+	/**
+	 * 创建单元格但不写值
+	 */
+	private static final byte EMPTY = 1;
+	private static final byte NUMBER = 2;
+	private static final byte STRING = 3;
+	private static final byte TRUE = 4;
+	private static final byte FALSE = 5;
+	private static final byte FORMULA = 6;
+
+	private final RowPlan.Writer[] writers;
+	private final boolean date1904;
+	private final int blockSize;
+	private final File file;
+	private final FileChannel channel;
+	/**
+	 * 当前块中各行已编码的片段
+	 */
+	private byte[][] pending;
+	private final int[] lengths;
+	private int buffered;
+	/**
+	 * 每块各行片段在文件中的起始位置，末尾多一个元素为块的结束位置
+	 */
+	private final List<long[]> blocks = new ArrayList<>();
+	private long size;
+	private int columns;
+	private int row;
+	private ByteBuffer readBuf = ByteBuffer.allocate(8 * 1024);
+
+	/**
+	 * @param types 各行示例单元格的类型，-1表示该行没有示例单元格
+	 */
+	ColumnSpill(int[] types, boolean date1904, int blockSize) throws IOException {
+		this.writers = new RowPlan.Writer[types.length];
+		for (int r = 0; r < types.length; r++) {
+			writers[r] = types[r] < 0 ? null : RowPlan.writer(types[r]);
+		}
+		this.date1904 = date1904;
+		this.blockSize = Math.max(blockSize, 1024);
+		this.pending = new byte[types.length][];
+		this.lengths = new int[types.length];
+		// 经POI创建，启用ExcelTempStorage时计入导出的临时文件配额
+		this.file = TempFile.createTempFile("onceio-columns-", ".tmp");
+		this.channel = new RandomAccessFile(file, "rw").getChannel();
+	}
+
+	int columns() {
+		return columns;
+	}
+
+	/**
+	 * 追加一列，column[i]对应第i行，超出行数的值忽略，column为null时整列为空
+	 */
+	void add(Object[] column) throws IOException {
+		for (int r = 0; r < writers.length; r++) {
+			row = r;
+			if (column == null || r >= column.length || writers[r] == null) {
+				putByte(MISSING);
+			} else if (column[r] == null) {
+				putByte(EMPTY);
+			} else {
+				int before = lengths[r];
+				writers[r].write(this, column[r]);
+				if (lengths[r] == before) {
+					putByte(EMPTY);
+				}
+			}
+		}
+		columns++;
+		if (buffered >= blockSize) {
+			flushBlock();
+		}
+	}
+
+	/**
+	 * 追加结束，写出最后一个块并释放内存中的缓冲
+	 */
+	void finish() throws IOException {
+		if (buffered > 0) {
+			flushBlock();
+		}
+		pending = null;
+	}
+
+	/**
+	 * 在finish之后调用，把第r行各列的值按示例单元格的类型和样式写入targets，
+	 * 第j列写到targets[j / perTarget]的第firstCol + j % perTarget列
+	 */
+	void replay(int r, Row[] targets, int firstCol, int perTarget, int cellType, CellStyle style) throws IOException {
+		int col = 0;
+		for (long[] offsets : blocks) {
+			int len = (int) (offsets[r + 1] - offsets[r]);
+			if (readBuf.capacity() < len) {
+				readBuf = ByteBuffer.allocate(Math.max(len, readBuf.capacity() * 2));
+			}
+			((Buffer) readBuf).clear();
+			((Buffer) readBuf).limit(len);
+			long pos = offsets[r];
+			while (readBuf.hasRemaining()) {
+				int n = channel.read(readBuf, pos);
+				if (n < 0) {
+					throw new IOException("列缓冲文件不完整:" + file);
+				}
+				pos += n;
+			}
+			((Buffer) readBuf).flip();
+			while (readBuf.hasRemaining()) {
+				byte tag = readBuf.get();
+				if (tag != MISSING) {
+					Cell cell = targets[col / perTarget].createCell(firstCol + col % perTarget, cellType);
+					cell.setCellStyle(style);
+					decode(tag, cell);
+				}
+				col++;
+			}
+		}
+	}
+
+	private void decode(byte tag, Cell cell) {
+		switch (tag) {
+			case NUMBER:
+				cell.setCellValue(readBuf.getDouble());
+				break;
+			case STRING:
+				cell.setCellValue(readString());
+				break;
+			case TRUE:
+			case FALSE:
+				cell.setCellValue(tag == TRUE);
+				break;
+			case FORMULA:
+				cell.setCellFormula(readString());
+				break;
+			default:
+		}
+	}
+
+	private String readString() {
+		int len = readBuf.getInt();
+		String s = new String(readBuf.array(), readBuf.position(), len, StandardCharsets.UTF_8);
+		((Buffer) readBuf).position(readBuf.position() + len);
+		return s;
+	}
+
+	@Override
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Override
+	public void setNumber(double val) {
+		long bits = Double.doubleToRawLongBits(val);
+		byte[] buf = reserve(9);
+		int p = lengths[row];
+		buf[p] = NUMBER;
+		for (int i = 0; i < 8; i++) {
+			buf[p + 1 + i] = (byte) (bits >>> (56 - 8 * i));
+		}
+		advance(9);
+	}
+
+	@Override
+	public void setString(String val) {
+		putString(STRING, val);
+	}
+
+	@Override
+	public void setBoolean(boolean val) {
+		putByte(val ? TRUE : FALSE);
+	}
+
+	@Override
+	public void setFormula(String formula) {
+		putString(FORMULA, formula);
+	}
+
+	@Override
+	public boolean isDate1904() {
+		return date1904;
+	}
+
+	private void putString(byte tag, String val) {
+		byte[] bytes = val.getBytes(StandardCharsets.UTF_8);
+		byte[] buf = reserve(5 + bytes.length);
+		int p = lengths[row];
+		buf[p] = tag;
+		buf[p + 1] = (byte) (bytes.length >>> 24);
+		buf[p + 2] = (byte) (bytes.length >>> 16);
+		buf[p + 3] = (byte) (bytes.length >>> 8);
+		buf[p + 4] = (byte) bytes.length;
+		System.arraycopy(bytes, 0, buf, p + 5, bytes.length);
+		advance(5 + bytes.length);
+	}
+
+	private void putByte(byte tag) {
+		byte[] buf = reserve(1);
+		buf[lengths[row]] = tag;
+		advance(1);
+	}
+
+	private byte[] reserve(int n) {
+		byte[] buf = pending[row];
+		int need = lengths[row] + n;
+		if (buf == null || buf.length < need) {
+			buf = Arrays.copyOf(buf == null ? new byte[0] : buf, Math.max(need, buf == null ? 64 : buf.length * 2));
+			pending[row] = buf;
+		}
+		return buf;
+	}
+
+	private void advance(int n) {
+		lengths[row] += n;
+		buffered += n;
+	}
+
+	/**
+	 * 当前块按行依次写入文件，行缓冲保留容量供下一块复用
+	 */
+	private void flushBlock() throws IOException {
+		long[] offsets = new long[writers.length + 1];
+		for (int r = 0; r < writers.length; r++) {
+			offsets[r] = size;
+			if (lengths[r] > 0) {
+				ByteBuffer bb = ByteBuffer.wrap(pending[r], 0, lengths[r]);
+				while (bb.hasRemaining()) {
+					size += channel.write(bb, size);
+				}
+			}
+			lengths[r] = 0;
+		}
+		offsets[writers.length] = size;
+		blocks.add(offsets);
+		buffered = 0;
+	}
+}
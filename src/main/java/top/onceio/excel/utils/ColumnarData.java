@@ -0,0 +1,292 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * 按列提供的导出数据，每列绑定模板示例行中的一个列号，值直接从基本类型数组写出，
+ * 不为每个单元格装箱，也不为每行创建数组。
+ * present为非空位图，第row行对应present[row/64]的第row%64位，与{@link ColumnarSheet.Column#presentBits()}相同；
+ * 为null时表示全部有值。未绑定的列与Object[]行中的null相同
+ */
+public final class ColumnarData {
+	private final int rows;
+	private Vector[] columns = new Vector[0];
+
+	public ColumnarData(int rows) {
+		if (rows < 0) {
+			throw new RuntimeException("行数不能为负:" + rows);
+		}
+		this.rows = rows;
+	}
+
+	public int getRowCount() {
+		return rows;
+	}
+
+	public ColumnarData setDouble(int col, double[] values) {
+		return setDouble(col, values, null);
+	}
+
+	public ColumnarData setDouble(int col, double[] values, long[] present) {
+		check(col, values.length, present);
+		return set(col, new DoubleVector(values, present));
+	}
+
+	public ColumnarData setLong(int col, long[] values) {
+		return setLong(col, values, null);
+	}
+
+	public ColumnarData setLong(int col, long[] values, long[] present) {
+		check(col, values.length, present);
+		return set(col, new LongVector(values, present));
+	}
+
+	/**
+	 * @param epochMillis 毫秒时间戳，按POI的用户时区换算为Excel日期
+	 */
+	public ColumnarData setDate(int col, long[] epochMillis) {
+		return setDate(col, epochMillis, null);
+	}
+
+	public ColumnarData setDate(int col, long[] epochMillis, long[] present) {
+		check(col, epochMillis.length, present);
+		return set(col, new DateVector(epochMillis, present));
+	}
+
+	/**
+	 * @param values 为null的元素即空值
+	 */
+	public ColumnarData setString(int col, String[] values) {
+		check(col, values.length, null);
+		return set(col, new StringVector(values));
+	}
+
+	/**
+	 * 列数，即绑定的最大列号+1
+	 */
+	int width() {
+		return columns.length;
+	}
+
+	/**
+	 * @return 未绑定时返回null
+	 */
+	Vector column(int col) {
+		return col < columns.length ? columns[col] : null;
+	}
+
+	/**
+	 * 逐行写出的游标，写出时不修改本对象
+	 */
+	RowSource rows() {
+		return new RowSource() {
+			private int row = -1;
+
+			@Override
+			public boolean next() {
+				return ++row < rows;
+			}
+
+			@Override
+			public void write(Row target, RowPlan plan) {
+				int width = plan.width();
+				for (int c = 0; c < width; c++) {
+					if (plan.has(c)) {
+						Vector vector = column(c);
+						if (vector != null) {
+							plan.write(target, c, vector, row);
+						} else {
+							plan.write(target, c, null);
+						}
+					}
+				}
+			}
+
+			@Override
+			public void write(XlsxDirectWriter writer) {
+				writer.writeRow(ColumnarData.this, row);
+			}
+
+			@Override
+			public void write(CsvWriter writer) {
+				writer.writeRow(ColumnarData.this, row);
+			}
+		};
+	}
+
+	private void check(int col, int length, long[] present) {
+		if (col < 0) {
+			throw new RuntimeException("列号不能为负:" + col);
+		} else if (length < rows) {
+			throw new RuntimeException("第" + col + "列数据长度" + length + "小于行数" + rows);
+		} else if (present != null && present.length < (rows + 63) >>> 6) {
+			throw new RuntimeException("第" + col + "列非空位图长度不足");
+		}
+	}
+
+	private ColumnarData set(int col, Vector vector) {
+		if (col >= columns.length) {
+			columns = Arrays.copyOf(columns, col + 1);
+		}
+		columns[col] = vector;
+		return this;
+	}
+
+	/**
+	 * 一列数据，按目标单元格的类型写出
+	 */
+	abstract static class Vector {
+		private final long[] present;
+
+		Vector(long[] present) {
+			this.present = present;
+		}
+
+		boolean isNull(int row) {
+			return present != null && (present[row >>> 6] & (1L << row)) == 0;
+		}
+
+		/**
+		 * 与Object[]行中对应包装类型的值写出结果一致，字符串、公式和布尔单元格按toString的结果写出
+		 */
+		final void write(CellSink sink, int cellType, int row) {
+			switch (cellType) {
+				case Cell.CELL_TYPE_STRING:
+					sink.setString(text(row));
+					break;
+				case Cell.CELL_TYPE_FORMULA:
+					sink.setFormula(text(row));
+					break;
+				case Cell.CELL_TYPE_BOOLEAN:
+					sink.setBoolean(Boolean.parseBoolean(text(row)));
+					break;
+				case Cell.CELL_TYPE_NUMERIC:
+				case Cell.CELL_TYPE_BLANK:
+					value(sink, cellType, row);
+					break;
+				default:
+			}
+		}
+
+		/**
+		 * 数值和空白单元格
+		 */
+		abstract void value(CellSink sink, int cellType, int row);
+
+		abstract String text(int row);
+
+		abstract void write(CsvWriter writer, int row);
+	}
+
+	private static final class DoubleVector extends Vector {
+		private final double[] values;
+
+		DoubleVector(double[] values, long[] present) {
+			super(present);
+			this.values = values;
+		}
+
+		@Override
+		void value(CellSink sink, int cellType, int row) {
+			sink.setNumber(values[row]);
+		}
+
+		@Override
+		String text(int row) {
+			return Double.toString(values[row]);
+		}
+
+		@Override
+		void write(CsvWriter writer, int row) {
+			writer.number(values[row]);
+		}
+	}
+
+	private static final class LongVector extends Vector {
+		private final long[] values;
+
+		LongVector(long[] values, long[] present) {
+			super(present);
+			this.values = values;
+		}
+
+		@Override
+		void value(CellSink sink, int cellType, int row) {
+			sink.setNumber(values[row]);
+		}
+
+		@Override
+		String text(int row) {
+			return Long.toString(values[row]);
+		}
+
+		@Override
+		void write(CsvWriter writer, int row) {
+			writer.putLong(values[row]);
+		}
+	}
+
+	private static final class DateVector extends Vector {
+		private final long[] values;
+
+		DateVector(long[] values, long[] present) {
+			super(present);
+			this.values = values;
+		}
+
+		@Override
+		void value(CellSink sink, int cellType, int row) {
+			sink.setNumber(ExcelDates.serial(values[row], sink.isDate1904()));
+		}
+
+		@Override
+		String text(int row) {
+			return new Date(values[row]).toString();
+		}
+
+		@Override
+		void write(CsvWriter writer, int row) {
+			writer.date(values[row]);
+		}
+	}
+
+	private static final class StringVector extends Vector {
+		private final String[] values;
+
+		StringVector(String[] values) {
+			super(null);
+			this.values = values;
+		}
+
+		@Override
+		boolean isNull(int row) {
+			return values[row] == null;
+		}
+
+		/**
+		 * 数值单元格按数字解析，空白单元格写为字符串
+		 */
+		@Override
+		void value(CellSink sink, int cellType, int row) {
+			if (cellType == Cell.CELL_TYPE_NUMERIC) {
+				sink.setNumber(Double.parseDouble(values[row]));
+			} else {
+				sink.setString(values[row]);
+			}
+		}
+
+		@Override
+		String text(int row) {
+			return values[row];
+		}
+
+		@Override
+		void write(CsvWriter writer, int row) {
+			writer.text(values[row]);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+import java.util.*;
+
+/**
+ * 第一行作为表头，按表头/别名映射到字段，字段类型决定列的存放方式，各单元格直接写入列数组。
+ * 支持options的columns、offset、limit，不支持stopWhen(没有行对象可供判断)
+ */
+class ColumnarRowHandler implements SheetRowHandler {
+	private final Class<?> clazz;
+	private final Map<String, String> alias;
+	private final boolean trim;
+	private final boolean date1904;
+	private final Collection<String> columns;
+	private final int offset;
+	private final int limit;
+	private final CellStats stats;
+	private final Map<String, Integer> nameToC = new HashMap<>();
+	/**
+	 * 列号到列，未映射的列为null
+	 */
+	private ColumnarSheet.Column[] byCol;
+	private Map<String, ColumnarSheet.Column> result;
+	private boolean wanted;
+	private int seen;
+	private int rows;
+	private boolean done;
+
+	ColumnarRowHandler(Class<?> clazz, Map<String, String> alias, ExcelReadOptions options, boolean date1904, CellStats stats) {
+		this.clazz = clazz;
+		this.alias = alias;
+		this.trim = options.isTrim();
+		this.date1904 = date1904;
+		this.columns = options.getColumns();
+		this.offset = options.getOffset();
+		this.limit = options.getLimit();
+		this.stats = stats;
+	}
+
+	ColumnarSheet toSheet() {
+		if (result == null) {
+			return new ColumnarSheet(0, new LinkedHashMap<>());
+		}
+		for (ColumnarSheet.Column column : result.values()) {
+			column.finish(rows);
+		}
+		return new ColumnarSheet(rows, result);
+	}
+
+	@Override
+	public void startRow(int rowNum) {
+		wanted = byCol != null && !done && seen >= offset;
+	}
+
+	@Override
+	public void numericCell(int col, double val) {
+		if (byCol == null) {
+			header(col, (String) CellConverter.of(String.class).fromNumeric(val, date1904));
+		} else if (accepts(col)) {
+			count(Cell.CELL_TYPE_NUMERIC);
+			try {
+				byCol[col].numeric(rows, val, date1904);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void stringCell(int col, String val) {
+		if (byCol == null) {
+			header(col, val);
+		} else if (accepts(col) && val != null) {
+			count(Cell.CELL_TYPE_STRING);
+			try {
+				byCol[col].string(rows, trim ? val.trim() : val);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void booleanCell(int col, boolean val) {
+		if (byCol == null) {
+			header(col, String.valueOf(val));
+		} else if (accepts(col)) {
+			count(Cell.CELL_TYPE_BOOLEAN);
+			try {
+				byCol[col].bool(rows, val);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void endRow(int rowNum) {
+		if (byCol == null) {
+			mapColumns();
+			done = limit <= 0;
+			return;
+		}
+		seen++;
+		if (!wanted) {
+			return;
+		}
+		wanted = false;
+		rows++;
+		if (stats != null) {
+			stats.rows++;
+		}
+		done = rows >= limit;
+	}
+
+	@Override
+	public boolean accepts(int col) {
+		return byCol == null || (wanted && col < byCol.length && byCol[col] != null);
+	}
+
+	@Override
+	public boolean done() {
+		return done;
+	}
+
+	/**
+	 * 列按在表头中的位置排列
+	 */
+	private void mapColumns() {
+		Map<String, Integer> projected = BeanRowHandler.project(nameToC, alias, columns);
+		// 已按列号升序
+		ClassMapper.Column[] mapped = ClassMapper.of(clazz, alias, projected).columns();
+		int width = mapped.length == 0 ? 0 : mapped[mapped.length - 1].index + 1;
+		byCol = new ColumnarSheet.Column[width];
+		result = new LinkedHashMap<>();
+		for (ClassMapper.Column c : mapped) {
+			ColumnarSheet.Column column = ColumnarSheet.column(c.field.getName(), c.field.getType());
+			byCol[c.index] = column;
+			result.put(column.getName(), column);
+		}
+	}
+
+	private void count(int cellType) {
+		if (stats != null) {
+			stats.cell(cellType);
+		}
+	}
+
+	private void failed() {
+		if (stats != null) {
+			stats.failures++;
+		}
+	}
+
+	private void header(int col, String name) {
+		if (name != null) {
+			nameToC.put(trim ? name.trim() : name, col);
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package top.onceio.excel.utils;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * 按列存放的读取结果，每列一个基本类型数组和一个非空位图，不为每行创建对象。
+ * 列按字段类型选择存放方式：整数为long[]，浮点数和BigDecimal为double[]，Date为毫秒时间戳long[]，
+ * boolean为位图，其余按字符串字典编码
+ */
+public final class ColumnarSheet {
+	private final int rows;
+	private final Map<String, Column> columns;
+
+	ColumnarSheet(int rows, Map<String, Column> columns) {
+		this.rows = rows;
+		this.columns = Collections.unmodifiableMap(columns);
+	}
+
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * 字段名到列，按表头中的顺序
+	 */
+	public Map<String, Column> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return 字段未映射到任何列时返回null
+	 */
+	public Column getColumn(String field) {
+		return columns.get(field);
+	}
+
+	public LongColumn getLongColumn(String field) {
+		return (LongColumn) columns.get(field);
+	}
+
+	public DoubleColumn getDoubleColumn(String field) {
+		return (DoubleColumn) columns.get(field);
+	}
+
+	public DateColumn getDateColumn(String field) {
+		return (DateColumn) columns.get(field);
+	}
+
+	public BooleanColumn getBooleanColumn(String field) {
+		return (BooleanColumn) columns.get(field);
+	}
+
+	public StringColumn getStringColumn(String field) {
+		return (StringColumn) columns.get(field);
+	}
+
+	/**
+	 * 按字段类型创建列
+	 */
+	static Column column(String name, Class<?> type) {
+		if (type == long.class || type == Long.class || type == int.class || type == Integer.class
+				|| type == short.class || type == Short.class || type == byte.class || type == Byte.class) {
+			return new LongColumn(name);
+		} else if (type == double.class || type == Double.class || type == float.class || type == Float.class
+				|| type == BigDecimal.class) {
+			return new DoubleColumn(name);
+		} else if (type == Date.class) {
+			return new DateColumn(name);
+		} else if (type == boolean.class || type == Boolean.class) {
+			return new BooleanColumn(name);
+		}
+		return new StringColumn(name);
+	}
+
+	public abstract static class Column {
+		private final String name;
+		/**
+		 * 有值的行
+		 */
+		private long[] present = new long[16];
+
+		Column(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * 字段名
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public boolean isNull(int row) {
+			int word = row >>> 6;
+			return word >= present.length || (present[word] & (1L << row)) == 0;
+		}
+
+		/**
+		 * 非空位图，第row行对应第row/64个元素的第row%64位
+		 */
+		public long[] presentBits() {
+			return present;
+		}
+
+		abstract void numeric(int row, double val, boolean date1904);
+
+		/**
+		 * @param val 非null，已按需trim
+		 */
+		abstract void string(int row, String val);
+
+		void bool(int row, boolean val) {
+		}
+
+		/**
+		 * 数组截到实际行数
+		 */
+		void finish(int rows) {
+			present = Arrays.copyOf(present, (rows + 63) >>> 6);
+		}
+
+		final void mark(int row) {
+			int word = row >>> 6;
+			if (word >= present.length) {
+				present = Arrays.copyOf(present, Math.max(word + 1, present.length * 2));
+			}
+			present[word] |= 1L << row;
+		}
+
+		static int capacity(int current, int row) {
+			return Math.max(row + 1, current * 2);
+		}
+	}
+
+	public static class LongColumn extends Column {
+		long[] values = new long[1024];
+
+		LongColumn(String name) {
+			super(name);
+		}
+
+		/**
+		 * 空值为0
+		 */
+		public long get(int row) {
+			return values[row];
+		}
+
+		public long[] values() {
+			return values;
+		}
+
+		@Override
+		void numeric(int row, double val, boolean date1904) {
+			set(row, (long) val);
+		}
+
+		@Override
+		void string(int row, String val) {
+			if (!val.trim().isEmpty()) {
+				set(row, Long.parseLong(val.trim()));
+			}
+		}
+
+		final void set(int row, long val) {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, capacity(values.length, row));
+			}
+			values[row] = val;
+			mark(row);
+		}
+
+		@Override
+		void finish(int rows) {
+			super.finish(rows);
+			values = Arrays.copyOf(values, rows);
+		}
+	}
+
+	/**
+	 * 毫秒时间戳，按POI的用户时区换算
+	 */
+	public static final class DateColumn extends LongColumn {
+		DateColumn(String name) {
+			super(name);
+		}
+
+		@Override
+		void numeric(int row, double val, boolean date1904) {
+			if (val >= 0) {
+				set(row, ExcelDates.epochMillis(val, date1904));
+			}
+		}
+
+		@Override
+		void string(int row, String val) {
+			Date date = ExcelDates.parse(val.trim());
+			if (date != null) {
+				set(row, date.getTime());
+			}
+		}
+	}
+
+	public static final class DoubleColumn extends Column {
+		private double[] values = new double[1024];
+
+		DoubleColumn(String name) {
+			super(name);
+		}
+
+		/**
+		 * 空值为0
+		 */
+		public double get(int row) {
+			return values[row];
+		}
+
+		public double[] values() {
+			return values;
+		}
+
+		@Override
+		void numeric(int row, double val, boolean date1904) {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, capacity(values.length, row));
+			}
+			values[row] = val;
+			mark(row);
+		}
+
+		@Override
+		void string(int row, String val) {
+			if (!val.trim().isEmpty()) {
+				numeric(row, Double.parseDouble(val.trim()), false);
+			}
+		}
+
+		@Override
+		void finish(int rows) {
+			super.finish(rows);
+			values = Arrays.copyOf(values, rows);
+		}
+	}
+
+	public static final class BooleanColumn extends Column {
+		private long[] bits = new long[16];
+
+		BooleanColumn(String name) {
+			super(name);
+		}
+
+		/**
+		 * 空值为false
+		 */
+		public boolean get(int row) {
+			int word = row >>> 6;
+			return word < bits.length && (bits[word] & (1L << row)) != 0;
+		}
+
+		/**
+		 * 值位图，布局同{@link #presentBits()}
+		 */
+		public long[] bits() {
+			return bits;
+		}
+
+		@Override
+		void numeric(int row, double val, boolean date1904) {
+		}
+
+		@Override
+		void string(int row, String val) {
+			if (!val.trim().isEmpty()) {
+				bool(row, Boolean.parseBoolean(val.trim()));
+			}
+		}
+
+		@Override
+		void bool(int row, boolean val) {
+			int word = row >>> 6;
+			if (word >= bits.length) {
+				bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+			}
+			if (val) {
+				bits[word] |= 1L << row;
+			}
+			mark(row);
+		}
+
+		@Override
+		void finish(int rows) {
+			super.finish(rows);
+			bits = Arrays.copyOf(bits, (rows + 63) >>> 6);
+		}
+	}
+
+	/**
+	 * 字典编码的字符串，每行存字典中的序号，空值为-1
+	 */
+	public static final class StringColumn extends Column {
+		private int[] codes = new int[1024];
+		private final Map<String, Integer> index = new HashMap<>();
+		private final List<String> dictionary = new ArrayList<>();
+		private String[] words;
+
+		StringColumn(String name) {
+			super(name);
+			Arrays.fill(codes, -1);
+		}
+
+		public String get(int row) {
+			int code = codes[row];
+			return code < 0 ? null : words[code];
+		}
+
+		public int[] codes() {
+			return codes;
+		}
+
+		/**
+		 * 按首次出现的顺序
+		 */
+		public String[] dictionary() {
+			return words;
+		}
+
+		@Override
+		void numeric(int row, double val, boolean date1904) {
+			string(row, val - (long) val == 0.0 ? Long.toString((long) val) : Double.toString(val));
+		}
+
+		@Override
+		void string(int row, String val) {
+			if (row >= codes.length) {
+				int from = codes.length;
+				codes = Arrays.copyOf(codes, capacity(codes.length, row));
+				Arrays.fill(codes, from, codes.length, -1);
+			}
+			Integer code = index.get(val);
+			if (code == null) {
+				code = dictionary.size();
+				index.put(val, code);
+				dictionary.add(val);
+			}
+			codes[row] = code;
+			mark(row);
+		}
+
+		@Override
+		void bool(int row, boolean val) {
+			string(row, String.valueOf(val));
+		}
+
+		@Override
+		void finish(int rows) {
+			super.finish(rows);
+			int from = Math.min(rows, codes.length);
+			codes = Arrays.copyOf(codes, rows);
+			Arrays.fill(codes, from, rows, -1);
+			words = dictionary.toArray(new String[dictionary.size()]);
+			index.clear();
+		}
+	}
+}
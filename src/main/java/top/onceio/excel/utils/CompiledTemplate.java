@@ -0,0 +1,141 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 预读取的模板，内容不可变，可在多个线程的导出间共享；
+ * 用于SXSSF导出时缓存重建工作簿用的{@link SheetTemplate}，直接写出时缓存编译后的{@link XlsxTemplate}，导出CSV时缓存提取的{@link CsvTemplate}
+ */
+final class CompiledTemplate {
+	private final long lastModified;
+	private final long length;
+	private final byte[] bytes;
+	/**
+	 * 按示例行号编译的xlsx模板
+	 */
+	private final ConcurrentMap<Integer, XlsxTemplate> xlsx = new ConcurrentHashMap<>();
+	/**
+	 * 按示例行号提取的CSV表头
+	 */
+	private final ConcurrentMap<Integer, CsvTemplate> csv = new ConcurrentHashMap<>();
+	/**
+	 * 首次用于SXSSF导出时编译，模板无法重建时为null
+	 */
+	private volatile SheetTemplate sheet;
+	private volatile boolean sheetCompiled;
+
+	private CompiledTemplate(long lastModified, long length, byte[] bytes) {
+		this.lastModified = lastModified;
+		this.length = length;
+		this.bytes = bytes;
+	}
+
+	static CompiledTemplate compile(File file) throws IOException {
+		long lastModified = file.lastModified();
+		long length = file.length();
+		InputStream is = new FileInputStream(file);
+		try {
+			return new CompiledTemplate(lastModified, length, readAll(is));
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * 由{@link #open()}得到的流直接取回模板，其它流读取为不缓存的模板
+	 */
+	static CompiledTemplate of(InputStream is) throws IOException {
+		if (is instanceof Input) {
+			return ((Input) is).template;
+		}
+		return new CompiledTemplate(-1, -1, readAll(is));
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		byte[] buf = new byte[64 * 1024];
+		int len;
+		while ((len = is.read(buf)) != -1) {
+			bos.write(buf, 0, len);
+		}
+		return bos.toByteArray();
+	}
+
+	/**
+	 * 文件自编译以来是否未被修改
+	 */
+	boolean matches(File file) {
+		return file.lastModified() == lastModified && file.length() == length;
+	}
+
+	/**
+	 * 每次返回新的输入流，供POI解析出独立的工作簿
+	 */
+	InputStream open() {
+		return new Input(this);
+	}
+
+	/**
+	 * SXSSF导出用的模板工作簿，每次返回新的实例，由调用方关闭。
+	 * 缓存的模板首次调用时编译为{@link SheetTemplate}，之后按它重建，不再解析模板；未缓存的模板直接解析
+	 */
+	XSSFWorkbook workbook() throws IOException {
+		if (lastModified < 0) {
+			return new XSSFWorkbook(new ByteArrayInputStream(bytes));
+		}
+		if (!sheetCompiled) {
+			// 同一模板并发编译时结果相同
+			try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(bytes))) {
+				sheet = SheetTemplate.compile(wb);
+			}
+			sheetCompiled = true;
+		}
+		SheetTemplate tpl = sheet;
+		return tpl != null ? tpl.build() : new XSSFWorkbook(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * 编译结果随模板缓存，命中时无需再解析模板
+	 */
+	XlsxTemplate xlsx(int exampleRow) throws IOException {
+		XlsxTemplate tpl = xlsx.get(exampleRow);
+		if (tpl == null) {
+			tpl = XlsxTemplate.compile(new ByteArrayInputStream(bytes), exampleRow, null);
+			XlsxTemplate prev = xlsx.putIfAbsent(exampleRow, tpl);
+			if (prev != null) {
+				tpl = prev;
+			}
+		}
+		return tpl;
+	}
+
+	CsvTemplate csv(int exampleRow) throws IOException {
+		CsvTemplate tpl = csv.get(exampleRow);
+		if (tpl == null) {
+			tpl = CsvTemplate.compile(bytes, exampleRow);
+			CsvTemplate prev = csv.putIfAbsent(exampleRow, tpl);
+			if (prev != null) {
+				tpl = prev;
+			}
+		}
+		return tpl;
+	}
+
+	private static final class Input extends ByteArrayInputStream {
+		private final CompiledTemplate template;
+
+		Input(CompiledTemplate template) {
+			super(template.bytes);
+			this.template = template;
+		}
+	}
+}
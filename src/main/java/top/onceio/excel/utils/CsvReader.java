@@ -0,0 +1,260 @@
+package top.onceio.excel.utils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CSV/TSV事件解析：通道读入大块堆缓冲区，在缓冲区内原地切分字段，只记录字段的起止位置，
+ * 仅{@link SheetRowHandler#accepts(int)}需要的字段才解码为字符串。
+ * 按RFC 4180处理引号、转义引号和引号内的换行；编码为UTF-8，忽略BOM，跳过空行，空字段不回调
+ */
+final class CsvReader {
+	static final int BUFFER_SIZE = 1 << 20;
+	/**
+	 * 单条记录的上限，缓冲区最多扩容到这个大小
+	 */
+	static final int MAX_RECORD_SIZE = 64 << 20;
+	private static final int MORE = -1;
+	private static final int DONE = -2;
+
+	private final ReadableByteChannel channel;
+	private final byte delimiter;
+	private ByteBuffer buf;
+	/**
+	 * 缓冲区中当前记录的起点和有效数据的终点
+	 */
+	private int pos;
+	private int end;
+	private boolean eof;
+	private int fields;
+	private int[] starts = new int[64];
+	private int[] ends = new int[64];
+	private boolean[] escaped = new boolean[64];
+	private byte[] scratch = new byte[256];
+
+	CsvReader(ReadableByteChannel channel, char delimiter) {
+		this(channel, delimiter, BUFFER_SIZE);
+	}
+
+	CsvReader(ReadableByteChannel channel, char delimiter, int bufferSize) {
+		this.channel = channel;
+		this.delimiter = (byte) delimiter;
+		this.buf = ByteBuffer.allocate(bufferSize);
+	}
+
+	static boolean isCsv(String filename) {
+		return filename.endsWith(".csv") || filename.endsWith(".tsv");
+	}
+
+	static char delimiter(String filename) {
+		return filename.endsWith(".tsv") ? '\t' : ',';
+	}
+
+	/**
+	 * 文件流直接使用其FileChannel；返回的通道不需要关闭，由调用方关闭is
+	 */
+	static ReadableByteChannel channel(InputStream is) {
+		if (is instanceof FileInputStream) {
+			return ((FileInputStream) is).getChannel();
+		}
+		return Channels.newChannel(is);
+	}
+
+	/**
+	 * 文件名去掉目录和扩展名，作为唯一sheet的名称
+	 */
+	static String sheetName(String filename) {
+		String name = filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1);
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	void read(SheetRowHandler handler) throws IOException {
+		fill();
+		if (end >= 3 && buf.get(0) == (byte) 0xef && buf.get(1) == (byte) 0xbb && buf.get(2) == (byte) 0xbf) {
+			pos = 3;
+		}
+		int rowNum = 0;
+		while (true) {
+			int next = parse(pos);
+			if (next == DONE) {
+				return;
+			} else if (next == MORE) {
+				fill();
+				continue;
+			}
+			pos = next;
+			if (fields > 1 || ends[0] > starts[0]) {
+				handler.startRow(rowNum);
+				for (int f = 0; f < fields; f++) {
+					if (ends[f] > starts[f] && handler.accepts(f)) {
+						handler.stringCell(f, field(f));
+					}
+				}
+				handler.endRow(rowNum);
+				if (handler.done()) {
+					return;
+				}
+			}
+			rowNum++;
+		}
+	}
+
+	/**
+	 * 从from开始切分一条记录
+	 *
+	 * @return 记录之后的位置；数据不完整时返回MORE，已无数据时返回DONE
+	 */
+	private int parse(int from) {
+		fields = 0;
+		int i = from;
+		if (i >= end) {
+			return eof ? DONE : MORE;
+		}
+		while (true) {
+			int start;
+			int stop;
+			boolean esc = false;
+			if (i < end && buf.get(i) == '"') {
+				start = ++i;
+				while (true) {
+					if (i >= end) {
+						if (!eof) {
+							return MORE;
+						}
+						// 引号未闭合，取到文件末尾
+						stop = i;
+						break;
+					}
+					if (buf.get(i) == '"') {
+						if (i + 1 >= end && !eof) {
+							return MORE;
+						}
+						if (i + 1 < end && buf.get(i + 1) == '"') {
+							esc = true;
+							i += 2;
+							continue;
+						}
+						stop = i++;
+						break;
+					}
+					i++;
+				}
+				// 结束引号之后、分隔符之前的内容忽略
+				i = skipField(i);
+			} else {
+				start = i;
+				i = skipField(i);
+				stop = i;
+			}
+			if (i >= end && !eof) {
+				return MORE;
+			}
+			add(start, stop, esc);
+			if (i >= end) {
+				return i;
+			}
+			byte b = buf.get(i);
+			if (b == delimiter) {
+				i++;
+			} else if (b == '\r') {
+				if (i + 1 >= end && !eof) {
+					return MORE;
+				}
+				i++;
+				if (i < end && buf.get(i) == '\n') {
+					i++;
+				}
+				return i;
+			} else {
+				return i + 1;
+			}
+		}
+	}
+
+	private int skipField(int i) {
+		while (i < end) {
+			byte b = buf.get(i);
+			if (b == delimiter || b == '\n' || b == '\r') {
+				break;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	private void add(int start, int stop, boolean esc) {
+		if (fields == starts.length) {
+			int n = fields * 2;
+			starts = Arrays.copyOf(starts, n);
+			ends = Arrays.copyOf(ends, n);
+			escaped = Arrays.copyOf(escaped, n);
+		}
+		starts[fields] = start;
+		ends[fields] = stop;
+		escaped[fields] = esc;
+		fields++;
+	}
+
+	private String field(int f) {
+		int len = ends[f] - starts[f];
+		if (scratch.length < len) {
+			scratch = new byte[Math.max(len, scratch.length * 2)];
+		}
+		((Buffer) buf).position(starts[f]);
+		buf.get(scratch, 0, len);
+		if (escaped[f]) {
+			// 两个连续引号还原为一个
+			int n = 0;
+			for (int i = 0; i < len; i++) {
+				scratch[n++] = scratch[i];
+				if (scratch[i] == '"') {
+					i++;
+				}
+			}
+			len = n;
+		}
+		return new String(scratch, 0, len, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 未处理完的记录移到缓冲区开头后继续读入；单条记录超过缓冲区时扩容，超过{@link #MAX_RECORD_SIZE}时抛出异常
+	 */
+	private void fill() throws IOException {
+		if (pos > 0) {
+			((Buffer) buf).limit(end);
+			((Buffer) buf).position(pos);
+			buf.compact();
+			end -= pos;
+			pos = 0;
+		} else if (end == buf.capacity()) {
+			if (buf.capacity() >= MAX_RECORD_SIZE) {
+				throw new IOException("CSV单条记录超过" + (MAX_RECORD_SIZE >> 20) + "MB");
+			}
+			ByteBuffer bigger = ByteBuffer.allocate(Math.min(buf.capacity() * 2, MAX_RECORD_SIZE));
+			((Buffer) buf).limit(end);
+			((Buffer) buf).position(0);
+			bigger.put(buf);
+			buf = bigger;
+		}
+		((Buffer) buf).limit(buf.capacity());
+		((Buffer) buf).position(end);
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf);
+			if (n < 0) {
+				eof = true;
+				break;
+			} else if (n == 0) {
+				break;
+			}
+		}
+		end = buf.position();
+	}
+}
@@ -0,0 +1,157 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.*;
+
+/**
+ * CSV/TSV导出使用的模板表头，不可变。模板可以是CSV/TSV文本，也可以直接复用xlsx/xls模板，
+ * 此时只取第一个sheet示例行之前各行的显示文本，样式等其余内容忽略
+ */
+final class CsvTemplate {
+	/**
+	 * 示例行之前的各行，空行为空数组
+	 */
+	final List<String[]> rows;
+	private final Map<String, Integer> header;
+
+	private CsvTemplate(List<String[]> rows) {
+		this.rows = Collections.unmodifiableList(rows);
+		this.header = new HashMap<>();
+		if (!rows.isEmpty()) {
+			String[] last = rows.get(rows.size() - 1);
+			for (int c = 0; c < last.length; c++) {
+				if (last[c] != null) {
+					header.put(last[c], c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param exampleRow 示例行号，{@link XlsxTemplate#AFTER_FIRST_ROW}表示第一个非空行为表头
+	 */
+	static CsvTemplate compile(byte[] bytes, int exampleRow) throws IOException {
+		if (bytes.length >= 4 && bytes[0] == 'P' && bytes[1] == 'K') {
+			return fromWorkbook(new XSSFWorkbook(new ByteArrayInputStream(bytes)), exampleRow);
+		} else if (bytes.length >= 4 && (bytes[0] & 0xff) == 0xd0 && (bytes[1] & 0xff) == 0xcf
+				&& (bytes[2] & 0xff) == 0x11 && (bytes[3] & 0xff) == 0xe0) {
+			return fromWorkbook(new HSSFWorkbook(new ByteArrayInputStream(bytes)), exampleRow);
+		}
+		return fromText(bytes, exampleRow);
+	}
+
+	private static CsvTemplate fromWorkbook(Workbook wb, int exampleRow) throws IOException {
+		try {
+			Sheet sheet = wb.getSheetAt(0);
+			int end = exampleRow == XlsxTemplate.AFTER_FIRST_ROW ? sheet.getFirstRowNum() + 1 : exampleRow;
+			DataFormatter formatter = new DataFormatter();
+			List<String[]> rows = new ArrayList<>();
+			for (int r = 0; r < end; r++) {
+				Row row = sheet.getRow(r);
+				String[] values = new String[row != null ? Math.max(row.getLastCellNum(), 0) : 0];
+				for (int c = 0; c < values.length; c++) {
+					Cell cell = row.getCell(c);
+					if (cell != null && cell.getCellType() != Cell.CELL_TYPE_BLANK) {
+						values[c] = formatter.formatCellValue(cell);
+					}
+				}
+				rows.add(values);
+			}
+			return new CsvTemplate(rows);
+		} finally {
+			wb.close();
+		}
+	}
+
+	/**
+	 * 分隔符按第一行中逗号和制表符的数量判断
+	 */
+	private static CsvTemplate fromText(byte[] bytes, int exampleRow) throws IOException {
+		int commas = 0;
+		int tabs = 0;
+		for (int i = 0; i < bytes.length && bytes[i] != '\n'; i++) {
+			if (bytes[i] == ',') {
+				commas++;
+			} else if (bytes[i] == '\t') {
+				tabs++;
+			}
+		}
+		List<String[]> rows = new ArrayList<>();
+		new CsvReader(Channels.newChannel(new ByteArrayInputStream(bytes)), tabs > commas ? '\t' : ',', Math.max(bytes.length, 16))
+				.read(new SheetRowHandler() {
+					private final List<String> values = new ArrayList<>();
+
+					@Override
+					public void startRow(int rowNum) {
+						values.clear();
+					}
+
+					@Override
+					public void numericCell(int col, double val) {
+					}
+
+					@Override
+					public void stringCell(int col, String val) {
+						while (values.size() <= col) {
+							values.add(null);
+						}
+						values.set(col, val);
+					}
+
+					@Override
+					public void booleanCell(int col, boolean val) {
+					}
+
+					@Override
+					public void endRow(int rowNum) {
+						while (rows.size() < rowNum) {
+							rows.add(new String[0]);
+						}
+						rows.add(values.toArray(new String[values.size()]));
+					}
+				});
+		int end = rows.size();
+		if (exampleRow == XlsxTemplate.AFTER_FIRST_ROW) {
+			for (end = 0; end < rows.size() && rows.get(end).length == 0; end++) {
+			}
+			end = Math.min(end + 1, rows.size());
+		} else if (exampleRow < end) {
+			end = exampleRow;
+		}
+		return new CsvTemplate(new ArrayList<>(rows.subList(0, end)));
+	}
+
+	/**
+	 * 表头行的列名到列号
+	 */
+	Map<String, Integer> header() {
+		return header;
+	}
+
+	/**
+	 * 从表头行尾部开始替换标题，同{@link ExcelTplWriter#replaceHeads}
+	 */
+	CsvTemplate withHeads(List<String> heads) {
+		List<String[]> replaced = new ArrayList<>(rows);
+		String[] last = rows.get(rows.size() - 1);
+		int offset = last.length - heads.size();
+		String[] head = Arrays.copyOf(last, last.length);
+		for (int i = 0; i < heads.size(); i++) {
+			if (i + offset >= 0) {
+				head[i + offset] = heads.get(i);
+			}
+		}
+		replaced.set(replaced.size() - 1, head);
+		return new CsvTemplate(replaced);
+	}
+}
@@ -0,0 +1,254 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.util.LocaleUtil;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * CSV/TSV写出：值直接编码为UTF-8写入堆缓冲区，满后整块写入通道。
+ * 文件以BOM开头以便Excel识别编码，行以CRLF结束；含分隔符、引号或换行的字段加引号，引号双写。
+ * 数字按原值写出，日期按POI的用户时区写为yyyy-MM-dd HH:mm:ss[.SSS]，可由{@link CsvReader}按原类型读回。
+ * 非线程安全，IO异常以UncheckedIOException抛出
+ */
+final class CsvWriter {
+	private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+	private final WritableByteChannel channel;
+	private final byte delimiter;
+	private final TimeZone timeZone = LocaleUtil.getUserTimeZone();
+	private final ByteBuffer buf = ByteBuffer.allocate(CsvReader.BUFFER_SIZE);
+	/**
+	 * 当前行已写出的字段数
+	 */
+	private int fields;
+	/**
+	 * 启用指标时的字段计数，都计为字符串单元格
+	 */
+	CellStats stats;
+
+	CsvWriter(OutputStream os, char delimiter) {
+		this.channel = os instanceof FileOutputStream ? ((FileOutputStream) os).getChannel() : Channels.newChannel(os);
+		this.delimiter = (byte) delimiter;
+		buf.put((byte) 0xef).put((byte) 0xbb).put((byte) 0xbf);
+	}
+
+	void writeRow(Object[] values) {
+		for (int i = 0; i < values.length; i++) {
+			write(i, values[i]);
+		}
+		endRow();
+	}
+
+	/**
+	 * 列号须递增，跳过的列写为空字段
+	 */
+	void write(int col, Object val) {
+		field(col);
+		if (val != null) {
+			if (stats != null) {
+				stats.cell(Cell.CELL_TYPE_STRING);
+			}
+			value(val);
+		}
+	}
+
+	/**
+	 * 写出按列数据的一行，列数为绑定的最大列号+1，未绑定的列写为空字段
+	 */
+	void writeRow(ColumnarData data, int row) {
+		int width = data.width();
+		for (int c = 0; c < width; c++) {
+			ColumnarData.Vector vector = data.column(c);
+			field(c);
+			if (vector != null && !vector.isNull(row)) {
+				if (stats != null) {
+					stats.cell(Cell.CELL_TYPE_STRING);
+				}
+				vector.write(this, row);
+			}
+		}
+		endRow();
+	}
+
+	/**
+	 * 写出到col为止的分隔符
+	 */
+	private void field(int col) {
+		if (col < fields) {
+			throw new IllegalArgumentException("列号须递增:" + col);
+		}
+		ensure(col - fields + 1);
+		while (fields <= col) {
+			if (fields > 0) {
+				buf.put(delimiter);
+			}
+			fields++;
+		}
+	}
+
+	void endRow() {
+		ensure(2);
+		buf.put((byte) '\r').put((byte) '\n');
+		fields = 0;
+	}
+
+	/**
+	 * 写出缓冲区剩余内容，不关闭输出流
+	 */
+	void finish() {
+		flush();
+	}
+
+	private void value(Object val) {
+		if (val instanceof String) {
+			text((String) val);
+		} else if (val instanceof Double || val instanceof Float) {
+			number(((Number) val).doubleValue());
+		} else if (val instanceof Long || val instanceof Integer || val instanceof Short || val instanceof Byte) {
+			putLong(((Number) val).longValue());
+		} else if (val instanceof BigDecimal) {
+			putAscii(((BigDecimal) val).toPlainString());
+		} else if (val instanceof Date) {
+			date(((Date) val).getTime());
+		} else if (val instanceof Calendar) {
+			date(((Calendar) val).getTimeInMillis());
+		} else {
+			text(val.toString());
+		}
+	}
+
+	void number(double val) {
+		if (val == Math.rint(val) && Math.abs(val) < 1e15) {
+			putLong((long) val);
+		} else {
+			putAscii(Double.toString(val));
+		}
+	}
+
+	void date(long epochMillis) {
+		long local = epochMillis + timeZone.getOffset(epochMillis);
+		LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(local, DAY_MILLIS));
+		int millis = (int) Math.floorMod(local, DAY_MILLIS);
+		ensure(32);
+		putLong(day.getYear());
+		buf.put((byte) '-');
+		put2(day.getMonthValue());
+		buf.put((byte) '-');
+		put2(day.getDayOfMonth());
+		buf.put((byte) ' ');
+		put2(millis / 3600000);
+		buf.put((byte) ':');
+		put2(millis / 60000 % 60);
+		buf.put((byte) ':');
+		put2(millis / 1000 % 60);
+		if (millis % 1000 != 0) {
+			buf.put((byte) '.');
+			put2(millis % 1000 / 10);
+			buf.put((byte) ('0' + millis % 10));
+		}
+	}
+
+	private void put2(int v) {
+		buf.put((byte) ('0' + v / 10)).put((byte) ('0' + v % 10));
+	}
+
+	void text(String s) {
+		int len = s.length();
+		boolean quote = false;
+		for (int i = 0; i < len && !quote; i++) {
+			char ch = s.charAt(i);
+			quote = ch == delimiter || ch == '"' || ch == '\n' || ch == '\r';
+		}
+		if (quote) {
+			ensure(1);
+			buf.put((byte) '"');
+		}
+		for (int i = 0; i < len; i++) {
+			char ch = s.charAt(i);
+			ensure(4);
+			if (ch < 0x80) {
+				if (ch == '"') {
+					buf.put((byte) '"');
+				}
+				buf.put((byte) ch);
+			} else if (ch < 0x800) {
+				buf.put((byte) (0xc0 | (ch >> 6)));
+				buf.put((byte) (0x80 | (ch & 0x3f)));
+			} else if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(ch, s.charAt(++i));
+				buf.put((byte) (0xf0 | (cp >> 18)));
+				buf.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+				buf.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+				buf.put((byte) (0x80 | (cp & 0x3f)));
+			} else if (Character.isSurrogate(ch)) {
+				// 不成对的代理字符丢弃
+			} else {
+				buf.put((byte) (0xe0 | (ch >> 12)));
+				buf.put((byte) (0x80 | ((ch >> 6) & 0x3f)));
+				buf.put((byte) (0x80 | (ch & 0x3f)));
+			}
+		}
+		if (quote) {
+			ensure(1);
+			buf.put((byte) '"');
+		}
+	}
+
+	private void putAscii(String s) {
+		int len = s.length();
+		ensure(len);
+		for (int i = 0; i < len; i++) {
+			buf.put((byte) s.charAt(i));
+		}
+	}
+
+	void putLong(long v) {
+		if (v == Long.MIN_VALUE) {
+			putAscii(Long.toString(v));
+			return;
+		}
+		ensure(20);
+		if (v < 0) {
+			buf.put((byte) '-');
+			v = -v;
+		}
+		long div = 1;
+		while (div <= v / 10) {
+			div *= 10;
+		}
+		for (; div > 0; div /= 10) {
+			buf.put((byte) ('0' + v / div % 10));
+		}
+	}
+
+	private void ensure(int n) {
+		if (buf.remaining() < n) {
+			flush();
+		}
+	}
+
+	private void flush() {
+		((Buffer) buf).flip();
+		try {
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		((Buffer) buf).clear();
+	}
+}
@@ -1,6 +1,7 @@
 package top.onceio.excel.utils;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -8,59 +9,45 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.lang.reflect.Field;
-import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ExcelClassHelper {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ExcelClassHelper.class);
+	public static final int DEFAULT_WINDOW_SIZE = 100;
 
-	private static Map<String, Field> getNameToField(Class<?> clazz, Map<String, String> aliasToField) {
-		Set<String> fieldNames = null;
-		if (aliasToField != null) {
-			fieldNames = new HashSet<>(aliasToField.values());
-		}
-		Map<String, Field> nameToField = new HashMap<>();
-		for (Class<?> sc = clazz; sc != null && !sc.equals(Object.class); sc = sc.getSuperclass()) {
-			for (Field f : sc.getDeclaredFields()) {
-				if (fieldNames == null) {
-					nameToField.put(f.getName(), f);
-				} else if (fieldNames.contains(f.getName())) {
-					nameToField.put(f.getName(), f);
-				}
-			}
-		}
-		return nameToField;
+	public static <T> List<T> read(Class<T> clazz, Map<String, String> alias, String filepath) {
+		return read(clazz, alias, filepath, new ExcelReadOptions());
 	}
 
-	private static Map<Field, Integer> build(Class<?> clazz, Map<String, String> aliasToField, Map<String, Integer> nameToIndex) {
-		Map<String, Field> nameToField = getNameToField(clazz, aliasToField);
-		Map<Field, Integer> fieldToIndex = new HashMap<>();
-		for (Map.Entry<String, Integer> entry : nameToIndex.entrySet()) {
-			String fn = entry.getKey();
-			if (aliasToField != null) {
-				fn = aliasToField.get(entry.getKey());
-				if (fn == null) {
-					fn = entry.getKey();
-				}
-			}
-			if (fn != null) {
-				Field f = nameToField.get(fn);
-				if (f != null) {
-					f.setAccessible(true);
-					fieldToIndex.put(f, entry.getValue());
-				}
+	public static <T> List<T> read(Class<T> clazz, Map<String, String> alias, String filepath, ExcelReadOptions options) {
+		if (isStreaming(filepath, options)) {
+			List<T> result = new ArrayList<>();
+			try {
+				Meter meter = Meter.of(options.getMetrics());
+				readFile(clazz, alias, new File(filepath), options, result::add, meter);
+				meter.read();
+			} catch (IOException e) {
+				e.printStackTrace();
+				LOGGER.error("Exception", e);
+			} catch (IllegalStateException ex) {
+				ex.printStackTrace();
+				LOGGER.error("数据错误:" + ex.getMessage());
 			}
+			return result;
 		}
-		return fieldToIndex;
-	}
-
-	public static <T> List<T> read(Class<T> clazz, Map<String, String> alias, String filepath) {
 		List<T> result = null;
 		FileInputStream fis = null;
 		try {
 			fis = new FileInputStream(filepath);
-			result = read(clazz, alias, filepath, fis);
+			result = read(clazz, alias, filepath, fis, options);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
@@ -81,53 +68,152 @@ public class ExcelClassHelper {
 		return read(clazz, alias, filename, is, true);
 	}
 
-	private static void fillObjectViaExcel(int valType, Cell cell, Field field, Object obj, boolean useTrim) throws IllegalAccessException {
-		switch (valType) {
-			case Cell.CELL_TYPE_NUMERIC:
-				if (field.getType().equals(Date.class)) {
-					field.set(obj, cell.getDateCellValue());
-				} else if (field.getType().equals(Long.class)
-						&& (cell.getNumericCellValue() - (long) cell.getNumericCellValue()) != 0.0) {
-					field.set(obj, cell.getDateCellValue().getTime());
-				} else {
-					field.set(obj, parseNumber(cell.getNumericCellValue(), field.getType()));
-				}
-				break;
-			case Cell.CELL_TYPE_STRING:
-				if (cell.getStringCellValue() != null) {
-					if (useTrim) {
-						field.set(obj, strToBaseType(field.getType(), cell.getStringCellValue().trim()));
-					} else {
-						field.set(obj, strToBaseType(field.getType(), cell.getStringCellValue()));
-					}
-				}
-				break;
-			case Cell.CELL_TYPE_BOOLEAN:
-				field.set(obj, cell.getBooleanCellValue());
-				break;
-			default:
-		}
+	public static <T> List<T> read(Class<T> clazz, Map<String, String> alias, String filename, InputStream is, boolean useTrim) {
+		return read(clazz, alias, filename, is, new ExcelReadOptions().setTrim(useTrim));
 	}
 
-	public static <T> List<T> read(Class<T> clazz, Map<String, String> alias, String filename, InputStream is, boolean useTrim) {
+	public static <T> List<T> read(Class<T> clazz, Map<String, String> alias, String filename, InputStream is, ExcelReadOptions options) {
 		List<T> result = new ArrayList<>();
+		try {
+			readTo(clazz, alias, filename, is, options, result::add);
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error("Exception", e);
+		} catch (IllegalStateException ex) {
+			ex.printStackTrace();
+			LOGGER.error("数据错误:" + ex.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * 边解析边按batchSize分批回调，解析在后台线程进行，batchSink在调用线程执行，
+	 * 两者交替重叠，内存占用只与batchSize有关
+	 */
+	public static <T> void read(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+								Consumer<List<T>> batchSink, int batchSize) {
+		read(clazz, alias, filename, is, new ExcelReadOptions(), batchSink, batchSize);
+	}
+
+	public static <T> void read(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+								ExcelReadOptions options, Consumer<List<T>> batchSink, int batchSize) {
+		try (BatchPipe<T> pipe = new BatchPipe<>(sink -> readTo(clazz, alias, filename, is, options, sink), batchSize)) {
+			while (pipe.hasNext()) {
+				batchSink.accept(pipe.next());
+			}
+		}
+	}
+
+	/**
+	 * 惰性读取，后台线程预读至多两个批次；is需在迭代结束前保持打开，提前结束时需close
+	 */
+	public static <T> CloseableIterator<T> iterator(Class<T> clazz, Map<String, String> alias, String filename, InputStream is) {
+		return iterator(clazz, alias, filename, is, new ExcelReadOptions(), BatchPipe.DEFAULT_BATCH_SIZE);
+	}
+
+	public static <T> CloseableIterator<T> iterator(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+													ExcelReadOptions options, int batchSize) {
+		return new BatchPipe<T>(sink -> readTo(clazz, alias, filename, is, options, sink), batchSize).rows();
+	}
+
+	/**
+	 * 同{@link #iterator}，使用完毕需关闭Stream
+	 */
+	public static <T> Stream<T> stream(Class<T> clazz, Map<String, String> alias, String filename, InputStream is) {
+		return stream(clazz, alias, filename, is, new ExcelReadOptions(), BatchPipe.DEFAULT_BATCH_SIZE);
+	}
+
+	public static <T> Stream<T> stream(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+									   ExcelReadOptions options, int batchSize) {
+		CloseableIterator<T> it = iterator(clazz, alias, filename, is, options, batchSize);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(it::close);
+	}
+
+	static <T> void readTo(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+						   ExcelReadOptions options, Consumer<T> sink) throws IOException {
 		String ext = filename.substring(filename.lastIndexOf("."));
+		Meter meter = Meter.of(options.getMetrics());
+		if (CsvReader.isCsv(filename)) {
+			readCsv(clazz, alias, filename, is, options, sink, meter.stats());
+			meter.phase(ExcelMetrics.Phase.PARSE);
+		} else if (isStreaming(filename, options)) {
+			File tmp = XlsxStreamReader.spill(is, ext);
+			try {
+				readFile(clazz, alias, tmp, options, sink, meter);
+			} finally {
+				tmp.delete();
+			}
+		} else {
+			readWorkbook(clazz, alias, ext, is, options, sink, meter);
+		}
+		meter.read();
+	}
+
+	/**
+	 * 第一行为表头，各字段按字符串交给字段类型的转换，未映射的列不解码
+	 */
+	private static <T> void readCsv(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+									ExcelReadOptions options, Consumer<T> sink, CellStats stats) throws IOException {
+		new CsvReader(CsvReader.channel(is), CsvReader.delimiter(filename))
+				.read(new BeanRowHandler<>(clazz, alias, options, false, sink, stats));
+	}
+
+	private static <T> void readWorkbook(Class<T> clazz, Map<String, String> alias, String ext, InputStream is,
+										 ExcelReadOptions options, Consumer<T> sink, Meter meter) throws IOException {
 		Workbook wb = null;
+		try {
+			wb = openWorkbook(ext, is);
+			meter.phase(ExcelMetrics.Phase.OPEN);
+			readSheet(clazz, alias, wb.getSheetAt(0), options, isDate1904(wb), evaluator(wb, options), sink, meter.stats());
+			meter.phase(ExcelMetrics.Phase.PARSE);
+		} finally {
+			if (wb != null) {
+				try {
+					wb.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+					LOGGER.error(e.getMessage());
+				}
+			}
+		}
+	}
+
+	private static Workbook openWorkbook(String ext, InputStream is) throws IOException {
+		if (".xls".equals(ext)) {
+			return new HSSFWorkbook(is);
+		} else if (".xlsx".equals(ext)) {
+			return new XSSFWorkbook(is);
+		} else {
+			throw new RuntimeException("文件格式只支持xls、xlsx、csv和tsv");
+		}
+	}
+
+	/**
+	 * options.evaluateFormulas时返回工作簿共用的FormulaEvaluator，否则为null
+	 */
+	private static FormulaEvaluator evaluator(Workbook wb, ExcelReadOptions options) {
+		return options.isEvaluateFormulas() ? wb.getCreationHelper().createFormulaEvaluator() : null;
+	}
+
+	/**
+	 * 同{@link BeanRowHandler}只映射options.columns，按options.offset、limit和stopWhen取行
+	 *
+	 * @param evaluator 非null时重新计算公式单元格，否则使用缓存的计算结果
+	 * @param stats 启用指标时的计数，否则为null
+	 */
+	private static <T> void readSheet(Class<T> clazz, Map<String, String> alias, Sheet sheet, ExcelReadOptions options, boolean date1904,
+									  FormulaEvaluator evaluator, Consumer<T> sink, CellStats stats) {
+		boolean useTrim = options.isTrim();
 		int rowNum = 0;
 		int colNum = 0;
 		Cell cell = null;
 		try {
-			if (".xls".equals(ext)) {
-				wb = new HSSFWorkbook(is);
-			} else if (".xlsx".equals(ext)) {
-				wb = new XSSFWorkbook(is);
-			} else {
-				throw new RuntimeException("文件格式只支持xls和xlsx");
-			}
-
-			Sheet sheet = wb.getSheetAt(0);
 			Map<String, Integer> nameToC = new HashMap<>();
 			Row row = sheet.getRow(sheet.getFirstRowNum());
+			if (row == null) {
+				return;
+			}
 			for (int c = row.getFirstCellNum(); c <= row.getLastCellNum(); c++) {
 				cell = row.getCell(c);
 				if (cell != null) {
@@ -138,99 +224,348 @@ public class ExcelClassHelper {
 					}
 				}
 			}
-			Map<Field, Integer> fieldToIndex = build(clazz, alias, nameToC);
-			for (rowNum = sheet.getFirstRowNum() + 1; rowNum <= sheet.getLastRowNum(); rowNum++) {
+			ClassMapper<T> mapper = ClassMapper.of(clazz, alias, BeanRowHandler.project(nameToC, alias, options.getColumns()));
+			int skip = options.getOffset();
+			int left = options.getLimit();
+			for (rowNum = sheet.getFirstRowNum() + 1; rowNum <= sheet.getLastRowNum() && left > 0; rowNum++) {
 				row = sheet.getRow(rowNum);
 				if (row == null) continue;
-				T obj = clazz.newInstance();
-				for (Map.Entry<Field, Integer> entry : fieldToIndex.entrySet()) {
-					colNum = entry.getValue();
-					cell = row.getCell(entry.getValue());
-					Field field = entry.getKey();
+				if (skip > 0) {
+					skip--;
+					continue;
+				}
+				T obj = mapper.newInstance();
+				for (ClassMapper.Column column : mapper.columns()) {
+					colNum = column.index;
+					cell = row.getCell(colNum);
 					if (cell == null) continue;
-					switch (cell.getCellType()) {
-						case Cell.CELL_TYPE_NUMERIC:
-							fillObjectViaExcel(Cell.CELL_TYPE_NUMERIC, cell, field, obj, useTrim);
-							break;
-						case Cell.CELL_TYPE_STRING:
-							fillObjectViaExcel(Cell.CELL_TYPE_STRING, cell, field, obj, useTrim);
-							break;
-						case Cell.CELL_TYPE_BOOLEAN:
-							fillObjectViaExcel(Cell.CELL_TYPE_BOOLEAN, cell, field, obj, useTrim);
-							break;
-						case Cell.CELL_TYPE_FORMULA:
-							do {
-								try {
-									if (field.getType().equals(Date.class)) {
-										field.set(obj, cell.getDateCellValue());
-										break;
-									} else if (field.getType().equals(Long.class)
-											&& (cell.getNumericCellValue() - (long) cell.getNumericCellValue()) != 0.0) {
-										field.set(obj, cell.getDateCellValue().getTime());
-										break;
-									} else if (field.getType().equals(String.class)) {
-										field.set(obj, cell.getStringCellValue());
-										break;
-									} else if (field.getType().equals(Boolean.class)) {
-										field.set(obj, cell.getBooleanCellValue());
-										break;
-									} else if (field.getType().equals(Integer.class)
-											|| field.getType().equals(Short.class)
-											|| field.getType().equals(Byte.class)
-											|| field.getType().equals(Float.class)
-											|| field.getType().equals(BigDecimal.class)) {
-										field.set(obj, parseNumber(cell.getNumericCellValue(), field.getType()));
-										break;
-									} else {
-										field.set(obj, strToBaseType(field.getType(), cell.getStringCellValue()));
-										break;
-									}
-								} catch (Exception formulaE) {
-								}
-								//TODO 容错处理
-								try {
-									Double fdVal = cell.getNumericCellValue();
-									if (fdVal != null) {
-										fillObjectViaExcel(Cell.CELL_TYPE_NUMERIC, cell, field, obj, useTrim);
-										break;
-									}
-								} catch (Exception formulaE) {
-								}
-								try {
-									String fsVal = cell.getStringCellValue();
-									if (fsVal != null) {
-										fillObjectViaExcel(Cell.CELL_TYPE_STRING, cell, field, obj, useTrim);
-										break;
-									}
-								} catch (Exception formulaE) {
-								}
-								try {
-									Boolean fbVal = cell.getBooleanCellValue();
-									if (fbVal != null) {
-										fillObjectViaExcel(Cell.CELL_TYPE_BOOLEAN, cell, field, obj, useTrim);
-										break;
-									}
-								} catch (Exception formulaE) {
-								}
-							} while (false);
-							break;
-						case Cell.CELL_TYPE_BLANK:
-							break;
-						case Cell.CELL_TYPE_ERROR:
-							break;
-						default:
-							LOGGER.info("未知类型 : ", cell.getCellType());
+					if (stats != null) {
+						stats.cell(cell.getCellType());
+					}
+					try {
+						fillCell(column, obj, cell, cell.getCellType(), useTrim, date1904, evaluator);
+					} catch (RuntimeException e) {
+						if (stats != null) {
+							stats.failures++;
+						}
+						throw e;
 					}
 				}
-				result.add(obj);
+				if (options.getStopWhen() != null && options.getStopWhen().test(obj)) {
+					break;
+				}
+				if (stats != null) {
+					stats.rows++;
+				}
+				sink.accept(obj);
+				left--;
 			}
+		} catch (IllegalStateException e) {
+			throw new IllegalStateException(String.format("%s,%s", rowNum, colNum), e);
+		}
+	}
 
-		} catch (InstantiationException | IllegalAccessException | IOException e) {
+	/**
+	 * 按单元格类型取值，公式按缓存的结果类型取值，不依赖取值失败的异常
+	 */
+	private static void fillCell(ClassMapper.Column column, Object obj, Cell cell, int type, boolean useTrim, boolean date1904,
+								 FormulaEvaluator evaluator) {
+		switch (type) {
+			case Cell.CELL_TYPE_NUMERIC:
+				column.setNumeric(obj, cell.getNumericCellValue(), date1904);
+				break;
+			case Cell.CELL_TYPE_STRING:
+				fillString(column, obj, cell.getStringCellValue(), useTrim);
+				break;
+			case Cell.CELL_TYPE_BOOLEAN:
+				column.setBoolean(obj, cell.getBooleanCellValue());
+				break;
+			case Cell.CELL_TYPE_FORMULA:
+				CellValue value = evaluator != null ? evaluate(evaluator, cell) : null;
+				if (value != null) {
+					fillValue(column, obj, value, useTrim, date1904);
+				} else {
+					fillCell(column, obj, cell, cell.getCachedFormulaResultType(), useTrim, date1904, null);
+				}
+				break;
+			case Cell.CELL_TYPE_BLANK:
+				break;
+			case Cell.CELL_TYPE_ERROR:
+				break;
+			default:
+				LOGGER.info("未知类型 : ", cell.getCellType());
+		}
+	}
+
+	private static void fillValue(ClassMapper.Column column, Object obj, CellValue value, boolean useTrim, boolean date1904) {
+		switch (value.getCellType()) {
+			case Cell.CELL_TYPE_NUMERIC:
+				column.setNumeric(obj, value.getNumberValue(), date1904);
+				break;
+			case Cell.CELL_TYPE_STRING:
+				fillString(column, obj, value.getStringValue(), useTrim);
+				break;
+			case Cell.CELL_TYPE_BOOLEAN:
+				column.setBoolean(obj, value.getBooleanValue());
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * 不支持的函数或外部引用无法计算时返回null，改用缓存的结果
+	 */
+	private static CellValue evaluate(FormulaEvaluator evaluator, Cell cell) {
+		try {
+			return evaluator.evaluate(cell);
+		} catch (RuntimeException e) {
+			LOGGER.warn("公式计算失败，使用缓存结果:" + cell.getCellFormula(), e);
+			return null;
+		}
+	}
+
+	static boolean isDate1904(Workbook wb) {
+		if (wb instanceof XSSFWorkbook) {
+			return ((XSSFWorkbook) wb).isDate1904();
+		} else if (wb instanceof HSSFWorkbook) {
+			return ((HSSFWorkbook) wb).getInternalWorkbook().isUsing1904DateWindowing();
+		}
+		return false;
+	}
+
+	private static void fillString(ClassMapper.Column column, Object obj, String val, boolean useTrim) {
+		if (val != null) {
+			column.setString(obj, useTrim ? val.trim() : val);
+		}
+	}
+
+	/**
+	 * xlsx和xls都可按事件模型流式读取，重新计算公式时需要对象模型
+	 */
+	private static boolean isStreaming(String filename, ExcelReadOptions options) {
+		return options.isStreaming() && !options.isEvaluateFormulas() && (filename.endsWith(".xlsx") || filename.endsWith(".xls"));
+	}
+
+	private static <T> void readFile(Class<T> clazz, Map<String, String> alias, File file, ExcelReadOptions options,
+									 Consumer<T> sink, Meter meter) throws IOException {
+		if (file.getName().endsWith(".xls")) {
+			readXls(clazz, alias, file, options, sink, meter);
+		} else {
+			readXlsx(clazz, alias, file, options, sink, meter);
+		}
+	}
+
+	/**
+	 * 通过HSSF事件模型读取xls的第一个sheet，内存占用与行数无关
+	 */
+	private static <T> void readXls(Class<T> clazz, Map<String, String> alias, File file, ExcelReadOptions options,
+									Consumer<T> sink, Meter meter) throws IOException {
+		XlsStreamReader reader = new XlsStreamReader(file);
+		try {
+			meter.phase(ExcelMetrics.Phase.OPEN);
+			// 日期系统在工作簿全局记录中，sheet开始时才能确定
+			reader.read(name -> new BeanRowHandler<>(clazz, alias, options, reader.isDate1904(), sink, meter.stats()), 1);
+			meter.phase(ExcelMetrics.Phase.PARSE);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * 通过SAX事件模型读取xlsx的第一个sheet，内存占用与行数无关
+	 */
+	private static <T> void readXlsx(Class<T> clazz, Map<String, String> alias, File file, ExcelReadOptions options,
+									 Consumer<T> sink, Meter meter) throws IOException {
+		XlsxStreamReader reader = new XlsxStreamReader(file);
+		try {
+			meter.phase(ExcelMetrics.Phase.OPEN);
+			reader.readFirstSheet(new BeanRowHandler<>(clazz, alias, options, reader.isDate1904(), sink, meter.stats()));
+			meter.phase(ExcelMetrics.Phase.PARSE);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * 按列读取第一个sheet，不为每行创建对象，clazz只用于表头/别名映射和确定各列的类型。
+	 * 总是通过事件模型解析，不支持options.stopWhen和evaluateFormulas，公式单元格取缓存的结果
+	 */
+	public static ColumnarSheet readColumnar(Class<?> clazz, Map<String, String> alias, String filepath, ExcelReadOptions options) {
+		try (InputStream is = new FileInputStream(filepath)) {
+			return readColumnar(clazz, alias, filepath, is, options);
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+		return null;
+	}
+
+	public static ColumnarSheet readColumnar(Class<?> clazz, Map<String, String> alias, String filename, InputStream is,
+											 ExcelReadOptions options) {
+		String ext = filename.substring(filename.lastIndexOf("."));
+		Meter meter = Meter.of(options.getMetrics());
+		ColumnarRowHandler[] handler = new ColumnarRowHandler[1];
+		try {
+			if (CsvReader.isCsv(filename)) {
+				handler[0] = new ColumnarRowHandler(clazz, alias, options, false, meter.stats());
+				new CsvReader(CsvReader.channel(is), CsvReader.delimiter(filename)).read(handler[0]);
+			} else {
+				File tmp = XlsxStreamReader.spill(is, ext);
+				try {
+					if (ext.equals(".xls")) {
+						try (XlsStreamReader reader = new XlsStreamReader(tmp)) {
+							meter.phase(ExcelMetrics.Phase.OPEN);
+							reader.read(name -> handler[0] = new ColumnarRowHandler(clazz, alias, options, reader.isDate1904(), meter.stats()), 1);
+						}
+					} else {
+						XlsxStreamReader reader = new XlsxStreamReader(tmp);
+						try {
+							meter.phase(ExcelMetrics.Phase.OPEN);
+							handler[0] = new ColumnarRowHandler(clazz, alias, options, reader.isDate1904(), meter.stats());
+							reader.readFirstSheet(handler[0]);
+						} finally {
+							reader.close();
+						}
+					}
+				} finally {
+					tmp.delete();
+				}
+			}
+			meter.phase(ExcelMetrics.Phase.PARSE);
+			meter.read();
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error("Exception", e);
+			return null;
+		}
+		return handler[0] == null ? new ColumnarRowHandler(clazz, alias, options, false, null).toSheet() : handler[0].toSheet();
+	}
+
+	/**
+	 * 读取多个sheet(options.sheets，默认全部)，各sheet表头独立映射。
+	 * xlsx流式读取时各sheet在options.executor(默认options.parallelism个线程)上并行解析，共用只读的共享字符串表
+	 *
+	 * @return sheet名称到对象列表，按工作簿中的顺序
+	 */
+	public static <T> Map<String, List<T>> readSheets(Class<T> clazz, Map<String, String> alias, String filepath, ExcelReadOptions options) {
+		if (isStreaming(filepath, options)) {
+			SheetCollector<T> collector = new SheetCollector<>();
+			try {
+				Meter meter = Meter.of(options.getMetrics());
+				collector.names = readFileSheets(clazz, alias, new File(filepath), options, collector, Integer.MAX_VALUE, meter);
+				meter.read();
+			} catch (IOException e) {
+				e.printStackTrace();
+				LOGGER.error("Exception", e);
+			} catch (IllegalStateException ex) {
+				ex.printStackTrace();
+				LOGGER.error("数据错误:" + ex.getMessage());
+			}
+			return collector.result();
+		}
+		Map<String, List<T>> result = null;
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(filepath);
+			result = readSheets(clazz, alias, filepath, fis, options);
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		} finally {
+			if (fis != null) {
+				try {
+					fis.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+					LOGGER.error(e.getMessage());
+				}
+			}
+		}
+		return result;
+	}
+
+	public static <T> Map<String, List<T>> readSheets(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+													  ExcelReadOptions options) {
+		SheetCollector<T> collector = new SheetCollector<>();
+		try {
+			collector.names = readSheetsTo(clazz, alias, filename, is, options, collector, Integer.MAX_VALUE);
+		} catch (IOException e) {
 			e.printStackTrace();
 			LOGGER.error("Exception", e);
 		} catch (IllegalStateException ex) {
 			ex.printStackTrace();
-			LOGGER.error("数据错误:" + String.format("%s,%s", rowNum, colNum));
+			LOGGER.error("数据错误:" + ex.getMessage());
+		}
+		return collector.result();
+	}
+
+	/**
+	 * 同{@link #readSheets(Class, Map, String, ExcelReadOptions)}，各sheet按batchSize分批回调；
+	 * batchSink在解析线程中串行调用，无需自行同步，同一sheet的批次按行顺序到达
+	 */
+	public static <T> void readSheets(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+									  ExcelReadOptions options, BiConsumer<String, List<T>> batchSink, int batchSize) {
+		try {
+			readSheetsTo(clazz, alias, filename, is, options, batchSink, batchSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return 读取的sheet名称，按工作簿中的顺序
+	 */
+	static <T> List<String> readSheetsTo(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+										 ExcelReadOptions options, BiConsumer<String, List<T>> batchSink, int batchSize) throws IOException {
+		Meter meter = Meter.of(options.getMetrics());
+		List<String> names = readSheetsTo(clazz, alias, filename, is, options, batchSink, batchSize, meter);
+		meter.read();
+		return names;
+	}
+
+	private static <T> List<String> readSheetsTo(Class<T> clazz, Map<String, String> alias, String filename, InputStream is,
+												 ExcelReadOptions options, BiConsumer<String, List<T>> batchSink, int batchSize,
+												 Meter meter) throws IOException {
+		String ext = filename.substring(filename.lastIndexOf("."));
+		if (CsvReader.isCsv(filename)) {
+			// 只有一个sheet，以文件名命名
+			List<String> names = selectSheets(Collections.singletonList(CsvReader.sheetName(filename)), options.getSheets());
+			if (!names.isEmpty()) {
+				SheetBatcher<T> batcher = new SheetBatcher<>(names.get(0), batchSize, batchSink, new Object(), null);
+				readCsv(clazz, alias, filename, is, options, batcher, meter.stats());
+				batcher.flush();
+				meter.phase(ExcelMetrics.Phase.PARSE);
+			}
+			return names;
+		}
+		if (isStreaming(filename, options)) {
+			File tmp = XlsxStreamReader.spill(is, ext);
+			try {
+				return readFileSheets(clazz, alias, tmp, options, batchSink, batchSize, meter);
+			} finally {
+				tmp.delete();
+			}
+		}
+		Workbook wb = null;
+		try {
+			wb = openWorkbook(ext, is);
+			meter.phase(ExcelMetrics.Phase.OPEN);
+			List<String> all = new ArrayList<>();
+			for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+				all.add(wb.getSheetName(i));
+			}
+			List<String> names = selectSheets(all, options.getSheets());
+			boolean date1904 = isDate1904(wb);
+			FormulaEvaluator evaluator = evaluator(wb, options);
+			// HSSF/XSSF对象模型非线程安全，依次读取
+			for (String name : names) {
+				SheetBatcher<T> batcher = new SheetBatcher<>(name, batchSize, batchSink, new Object(), null);
+				readSheet(clazz, alias, wb.getSheet(name), options, date1904, evaluator, batcher, meter.stats());
+				batcher.flush();
+			}
+			meter.phase(ExcelMetrics.Phase.PARSE);
+			return names;
 		} finally {
 			if (wb != null) {
 				try {
@@ -241,19 +576,211 @@ public class ExcelClassHelper {
 				}
 			}
 		}
-		return result;
 	}
 
+	private static <T> List<String> readFileSheets(Class<T> clazz, Map<String, String> alias, File file, ExcelReadOptions options,
+												   BiConsumer<String, List<T>> batchSink, int batchSize, Meter meter) throws IOException {
+		if (file.getName().endsWith(".xls")) {
+			return readXlsSheets(clazz, alias, file, options, batchSink, batchSize, meter);
+		}
+		return readXlsxSheets(clazz, alias, file, options, batchSink, batchSize, meter);
+	}
+
+	/**
+	 * xls的各sheet在同一个记录流中，按顺序读取
+	 */
+	private static <T> List<String> readXlsSheets(Class<T> clazz, Map<String, String> alias, File file, ExcelReadOptions options,
+												  BiConsumer<String, List<T>> batchSink, int batchSize, Meter meter) throws IOException {
+		XlsStreamReader reader = new XlsStreamReader(file);
+		try {
+			meter.phase(ExcelMetrics.Phase.OPEN);
+			Collection<String> selected = options.getSheets();
+			Object lock = new Object();
+			List<SheetBatcher<T>> current = new ArrayList<>(1);
+			List<String> names = reader.read(name -> {
+				if (selected != null && !selected.contains(name)) {
+					return null;
+				}
+				if (!current.isEmpty()) {
+					current.remove(0).flush();
+				}
+				SheetBatcher<T> batcher = new SheetBatcher<>(name, batchSize, batchSink, lock, null);
+				current.add(batcher);
+				return new BeanRowHandler<>(clazz, alias, options, reader.isDate1904(), batcher, meter.stats());
+			}, selected != null ? selected.size() : Integer.MAX_VALUE);
+			if (!current.isEmpty()) {
+				current.remove(0).flush();
+			}
+			meter.phase(ExcelMetrics.Phase.PARSE);
+			if (selected != null) {
+				selectSheets(names, selected);
+			}
+			return names;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static <T> List<String> readXlsxSheets(Class<T> clazz, Map<String, String> alias, File file, ExcelReadOptions options,
+												   BiConsumer<String, List<T>> batchSink, int batchSize, Meter meter) throws IOException {
+		XlsxStreamReader reader = new XlsxStreamReader(file);
+		ExecutorService pool = null;
+		try {
+			Map<String, PackagePart> parts = reader.sheetParts();
+			meter.phase(ExcelMetrics.Phase.OPEN);
+			List<String> names = selectSheets(parts.keySet(), options.getSheets());
+			Executor executor = options.getExecutor();
+			if (executor == null) {
+				int threads = Math.min(Math.max(options.getParallelism(), 1), names.size());
+				if (threads > 1) {
+					pool = Workers.newPool("onceio-excel-reader", threads);
+					executor = pool;
+				} else {
+					executor = Runnable::run;
+				}
+			}
+			Object lock = new Object();
+			AtomicBoolean failed = new AtomicBoolean();
+			List<Future<Void>> futures = new ArrayList<>();
+			for (String name : names) {
+				PackagePart part = parts.get(name);
+				futures.add(Workers.submit(executor, () -> {
+					try {
+						SheetBatcher<T> batcher = new SheetBatcher<>(name, batchSize, batchSink, lock, failed);
+						reader.readSheet(part, new BeanRowHandler<>(clazz, alias, options, reader.isDate1904(), batcher,
+								meter.stats()));
+						batcher.flush();
+						return null;
+					} catch (IOException | RuntimeException | Error e) {
+						failed.set(true);
+						throw e;
+					}
+				}));
+			}
+			try {
+				Workers.awaitAll(futures, null);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			meter.phase(ExcelMetrics.Phase.PARSE);
+			return names;
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+			reader.close();
+		}
+	}
+
+	private static List<String> selectSheets(Collection<String> all, Collection<String> selected) {
+		if (selected == null) {
+			return new ArrayList<>(all);
+		}
+		for (String name : selected) {
+			if (!all.contains(name)) {
+				throw new RuntimeException("sheet不存在:" + name);
+			}
+		}
+		List<String> names = new ArrayList<>();
+		for (String name : all) {
+			if (selected.contains(name)) {
+				names.add(name);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * 逐sheet攒批，满batchSize或sheet结束时在lock下回调
+	 */
+	private static final class SheetBatcher<T> implements Consumer<T> {
+		private final String name;
+		private final int batchSize;
+		private final BiConsumer<String, List<T>> batchSink;
+		private final Object lock;
+		private final AtomicBoolean failed;
+		private List<T> batch;
+
+		SheetBatcher(String name, int batchSize, BiConsumer<String, List<T>> batchSink, Object lock, AtomicBoolean failed) {
+			if (batchSize <= 0) {
+				throw new IllegalArgumentException("batchSize必须大于0");
+			}
+			this.name = name;
+			this.batchSize = batchSize;
+			this.batchSink = batchSink;
+			this.lock = lock;
+			this.failed = failed;
+			this.batch = new ArrayList<>(Math.min(batchSize, BatchPipe.DEFAULT_BATCH_SIZE));
+		}
+
+		@Override
+		public void accept(T t) {
+			if (failed != null && failed.get()) {
+				throw new Workers.Cancelled();
+			}
+			batch.add(t);
+			if (batch.size() >= batchSize) {
+				flush();
+			}
+		}
+
+		void flush() {
+			if (!batch.isEmpty()) {
+				synchronized (lock) {
+					batchSink.accept(name, batch);
+				}
+				batch = new ArrayList<>(Math.min(batchSize, BatchPipe.DEFAULT_BATCH_SIZE));
+			}
+		}
+	}
+
+	/**
+	 * 整个sheet作为一个批次收集
+	 */
+	private static final class SheetCollector<T> implements BiConsumer<String, List<T>> {
+		private final Map<String, List<T>> bySheet = new HashMap<>();
+		private List<String> names;
+
+		@Override
+		public void accept(String name, List<T> rows) {
+			bySheet.merge(name, rows, (a, b) -> {
+				a.addAll(b);
+				return a;
+			});
+		}
+
+		Map<String, List<T>> result() {
+			Map<String, List<T>> result = new LinkedHashMap<>();
+			if (names != null) {
+				for (String name : names) {
+					List<T> rows = bySheet.get(name);
+					result.put(name, rows != null ? rows : new ArrayList<>());
+				}
+			}
+			return result;
+		}
+	}
 
 	public static <T> void write(Class<T> clazz, List<T> data, Map<String, String> alias, String tplPath, String filepath) {
-		FileInputStream fis = null;
-		FileOutputStream fos = null;
+		write(clazz, data, alias, tplPath, filepath, DEFAULT_WINDOW_SIZE);
+	}
 
+	public static <T> int write(Class<T> clazz, List<T> data, Map<String, String> alias, String tplPath, String filepath, int windowSize) {
+		return write(clazz, data, alias, tplPath, filepath, new ExcelWriteOptions().setWindowSize(windowSize));
+	}
+
+	/**
+	 * 模板按options.templateCache缓存，重复导出时不再读取模板文件
+	 */
+	public static <T> int write(Class<T> clazz, List<T> data, Map<String, String> alias, String tplPath, String filepath, ExcelWriteOptions options) {
+		InputStream fis = null;
+		FileOutputStream fos = null;
+		int rows = 0;
 		try {
-			fis = new FileInputStream(tplPath);
+			fis = ExcelTplWriter.openTemplate(tplPath, options);
 			fos = new FileOutputStream(filepath);
-			write(clazz, data, alias, filepath, fis, fos);
-		} catch (FileNotFoundException e) {
+			rows = write(clazz, data, alias, filepath, fis, fos, options);
+		} catch (IOException e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
 		} finally {
@@ -274,12 +801,28 @@ public class ExcelClassHelper {
 				}
 			}
 		}
+		return rows;
 	}
 
-
 	public static <T> void write(Class<T> clazz, List<T> data, Map<String, String> alias, String filename, InputStream tplis, OutputStream os) {
+		write(clazz, data, alias, filename, tplis, os, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * xlsx通过SXSSF流式写出，内存中只保留最近windowSize行，其余行刷到临时文件
+	 *
+	 * @param windowSize SXSSF行访问窗口
+	 * @return 写出的数据行数
+	 */
+	public static <T> int write(Class<T> clazz, List<T> data, Map<String, String> alias, String filename, InputStream tplis, OutputStream os, int windowSize) {
+		return write(clazz, data, alias, filename, tplis, os, new ExcelWriteOptions().setWindowSize(windowSize));
+	}
+
+	public static <T> int write(Class<T> clazz, List<T> data, Map<String, String> alias, String filename, InputStream tplis, OutputStream os, ExcelWriteOptions options) {
 		String ext = filename.substring(filename.lastIndexOf("."));
 		Workbook wb = null;
+		XSSFWorkbook wbEg = null;
+		int rows = 0;
 
 		if (tplis == null) {
 			throw new RuntimeException("模板不可为null");
@@ -287,68 +830,38 @@ public class ExcelClassHelper {
 		if (os == null) {
 			throw new RuntimeException("输出流不可为空");
 		}
+		Meter meter = Meter.of(options.getMetrics());
+		ExcelTempStorage.Session temp = ExcelTempStorage.open(options);
 		try {
-			if (".xls".equals(ext)) {
+			if (CsvReader.isCsv(filename)) {
+				return writeCsv(clazz, data, alias, filename, tplis, os, meter);
+			} else if (".xls".equals(ext)) {
 				wb = new HSSFWorkbook(tplis);
+				meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
+				rows = fillInPlace(clazz, data, alias, wb, meter.stats());
+				meter.phase(ExcelMetrics.Phase.ROW_FILL);
+			} else if (".xlsx".equals(ext) && options.getEngine() == WriteEngine.DIRECT) {
+				return writeDirect(clazz, data, alias, tplis, os, options, meter);
 			} else if (".xlsx".equals(ext)) {
-				wb = new XSSFWorkbook(tplis);
+				wbEg = CompiledTemplate.of(tplis).workbook();
+				wb = ExcelTplWriter.newStreamingWorkbook(wbEg, options);
+				meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
+				rows = fillStreaming(clazz, data, alias, wbEg, (SXSSFWorkbook) wb, meter, temp);
 			} else {
-				throw new RuntimeException("上次文件格式不正确（只支持xls和xlsx）");
-			}
-
-			Sheet sheet = wb.getSheetAt(0);
-			Map<String, Integer> nameToC = new HashMap<>();
-			Row row = sheet.getRow(sheet.getFirstRowNum());
-			int r = sheet.getFirstRowNum() + 1;
-			Row example = sheet.getRow(r++);
-			Map<Integer, Cell> egCell = new HashMap<>();
-			for (int c = row.getFirstCellNum(); c <= row.getLastCellNum(); c++) {
-				Cell cell = row.getCell(c);
-				if (cell != null) {
-					nameToC.put(cell.getStringCellValue(), c);
-					egCell.put(c, example.getCell(c));
-				}
-
+				throw new RuntimeException("上次文件格式不正确（只支持xls、xlsx、csv和tsv）");
 			}
-			Map<Field, Integer> fieldToIndex = build(clazz, alias, nameToC);
-			boolean isEg = true;
-			for (T obj : data) {
-				if (isEg) {
-					row = example;
-				} else {
-					row = sheet.createRow(r++);
-				}
-				for (Map.Entry<Field, Integer> entry : fieldToIndex.entrySet()) {
-					Cell eg = egCell.get(entry.getValue());
-					Field field = entry.getKey();
-					if (eg == null || field == null) continue;
-					Cell cell = null;
-					if(!isEg) {
-						cell = row.createCell(entry.getValue());
-						cell.setCellStyle(eg.getCellStyle());
-						cell.setCellType(eg.getCellType());
-						Comment cc = eg.getCellComment();
-						if (cc != null) {
-							cell.setCellComment(cc);
-						}
-					} else {
-						cell = row.getCell(entry.getValue());
-					}
-					Object val = field.get(obj);
-					if (val == null) continue;
-					fillCellValue(cell, val);
-				}
-
-				isEg = false;
-			}
-			wb.write(os);
-		} catch (IllegalAccessException | IOException e) {
+			ExcelTplWriter.write(wb, os, meter);
+			meter.written(rows);
+		} catch (IOException e) {
 			e.printStackTrace();
 			LOGGER.error("Exception", e);
 		} catch (IllegalStateException e) {
 			e.printStackTrace();
 			LOGGER.error("Exception", e);
 		} finally {
+			if (wb instanceof SXSSFWorkbook) {
+				((SXSSFWorkbook) wb).dispose();
+			}
 			if (wb != null) {
 				try {
 					wb.close();
@@ -357,107 +870,195 @@ public class ExcelClassHelper {
 					LOGGER.error(e.getMessage());
 				}
 			}
+			if (wbEg != null) {
+				try {
+					wbEg.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+					LOGGER.error(e.getMessage());
+				}
+			}
+			temp.close();
 		}
+		return rows;
 	}
 
-	public static void fillCellValue(Cell cell, Object val) {
-		switch (cell.getCellType()) {
-			case Cell.CELL_TYPE_NUMERIC:
-				if (val instanceof Date) {
-					cell.setCellValue((Date) val);
-				} else if (val instanceof Long) {
-					cell.setCellValue(Double.parseDouble(val.toString()));
+	/**
+	 * 在模板sheet上原地填充，第一条数据写入示例行
+	 */
+	private static <T> int fillInPlace(Class<T> clazz, List<T> data, Map<String, String> alias, Workbook wb, CellStats stats) {
+		Sheet sheet = wb.getSheetAt(0);
+		Map<String, Integer> nameToC = new HashMap<>();
+		Row row = sheet.getRow(sheet.getFirstRowNum());
+		int r = sheet.getFirstRowNum() + 1;
+		Row example = sheet.getRow(r++);
+		Map<Integer, Cell> egCell = new HashMap<>();
+		for (int c = row.getFirstCellNum(); c <= row.getLastCellNum(); c++) {
+			Cell cell = row.getCell(c);
+			if (cell != null) {
+				nameToC.put(cell.getStringCellValue(), c);
+				egCell.put(c, example.getCell(c));
+			}
+
+		}
+		ClassMapper<T> mapper = ClassMapper.of(clazz, alias, nameToC);
+		boolean isEg = true;
+		for (T obj : data) {
+			if (isEg) {
+				row = example;
+			} else {
+				row = sheet.createRow(r++);
+			}
+			for (ClassMapper.Column column : mapper.columns()) {
+				Cell eg = egCell.get(column.index);
+				if (eg == null) continue;
+				Cell cell = null;
+				if(!isEg) {
+					cell = row.createCell(column.index);
+					cell.setCellStyle(eg.getCellStyle());
+					cell.setCellType(eg.getCellType());
+					Comment cc = eg.getCellComment();
+					if (cc != null) {
+						cell.setCellComment(cc);
+					}
 				} else {
-					cell.setCellValue(Double.parseDouble(val.toString()));
+					cell = row.getCell(column.index);
 				}
-				break;
-			case Cell.CELL_TYPE_STRING:
-				cell.setCellValue(val.toString());
-				break;
-			case Cell.CELL_TYPE_BOOLEAN:
-				cell.setCellValue(Boolean.parseBoolean(val.toString()));
-				break;
-			case Cell.CELL_TYPE_FORMULA:
-				cell.setCellFormula(val.toString());
-				break;
-			case Cell.CELL_TYPE_BLANK:
-				if (val instanceof String) {
-					cell.setCellValue((String) val);
-				} else if (val instanceof Boolean) {
-					cell.setCellValue((Boolean) val);
-				} else if (val instanceof BigDecimal
-						|| val instanceof Integer
-						|| val instanceof Short
-						|| val instanceof Float
-						|| val instanceof Double
-						|| val instanceof Long) {
-					cell.setCellValue(Double.parseDouble(val.toString()));
-				} else if (val instanceof Date) {
-					cell.setCellValue((Date) val);
-				} else {
-					cell.setCellValue(val.toString());
+				Object val = column.get(obj);
+				if (val == null) continue;
+				if (stats != null) {
+					stats.cell(cell.getCellType());
+				}
+				try {
+					fillCellValue(cell, val);
+				} catch (RuntimeException e) {
+					if (stats != null) {
+						stats.failures++;
+					}
+					throw e;
 				}
-				break;
-			case Cell.CELL_TYPE_ERROR:
-				//cell.setCellErrorValue(val);
-				break;
-			default:
-				LOGGER.info("unresolve : ", cell.getCellType());
-		}
-	}
-
-	private static Object parseNumber(double val, Class<?> type) {
-		if (type.equals(long.class) || type.equals(Long.class)) {
-			return (long) val;
-		} else if (type.equals(int.class) || type.equals(Integer.class)) {
-			return (int) val;
-		} else if (type.equals(short.class) || type.equals(Short.class)) {
-			return (long) val;
-		} else if (type.equals(double.class) || type.equals(Double.class)) {
-			return val;
-		} else if (type.equals(float.class) || type.equals(Float.class)) {
-			return (float) val;
-		} else if (type.equals(byte.class) || type.equals(Byte.class)) {
-			return (byte) val;
-		} else if (type.equals(BigDecimal.class)) {
-			return new BigDecimal(val + "");
-		} else if (type.equals(String.class)) {
-			if (val - (long) val == 0.0) {
-				return (long) val + "";
-			} else {
-				return val + "";
 			}
+
+			isEg = false;
 		}
+		return data.size();
+	}
 
-		return null;
+	/**
+	 * 复制模板表头到新sheet，示例行的样式应用到每个数据行，最后删除模板sheet
+	 */
+	private static <T> int fillStreaming(Class<T> clazz, List<T> data, Map<String, String> alias, XSSFWorkbook wbEg, SXSSFWorkbook wb,
+										 Meter meter, ExcelTempStorage.Session temp) {
+		Sheet sheetEg = wbEg.getSheetAt(0);
+		int headRow = sheetEg.getFirstRowNum();
+		Row head = sheetEg.getRow(headRow);
+		RowPlan plan = RowPlan.compile(sheetEg.getRow(headRow + 1));
+		Map<String, Integer> nameToC = new HashMap<>();
+		for (int c = head.getFirstCellNum(); c <= head.getLastCellNum(); c++) {
+			Cell cell = head.getCell(c);
+			if (cell != null) {
+				nameToC.put(cell.getStringCellValue(), c);
+			}
+		}
+		ClassMapper<T> mapper = ClassMapper.of(clazz, alias, nameToC);
+		List<ClassMapper.Column> planned = new ArrayList<>();
+		for (ClassMapper.Column column : mapper.columns()) {
+			if (plan.has(column.index)) {
+				planned.add(column);
+			}
+		}
+		ClassMapper.Column[] columns = planned.toArray(new ClassMapper.Column[planned.size()]);
+		String sheetName = sheetEg.getSheetName();
+		Sheet sheet = wb.createSheet();
+		ExcelTplWriter.copyHead(sheetEg, sheet, headRow + 1);
+		meter.phase(ExcelMetrics.Phase.HEADER_COPY);
+		plan.stats = meter.stats();
+
+		int r = headRow + 1;
+		for (T obj : data) {
+			Row row = sheet.createRow(r++);
+			for (ClassMapper.Column column : columns) {
+				plan.write(row, column.index, column.get(obj));
+			}
+			if ((r - headRow - 1) % temp.interval == 0) {
+				temp.check();
+			}
+		}
+		meter.phase(ExcelMetrics.Phase.ROW_FILL);
+		wb.removeSheetAt(0);
+		wb.setSheetName(0, sheetName);
+		return r - headRow - 1;
 	}
 
-	@SuppressWarnings("unchecked")
-	private static <T> T strToBaseType(Class<T> type, String val) {
-		if (val != null) {
-			if (type.equals(String.class)) {
-				return (T) val;
-			} else if (val.trim().equals("")) {
-				return null;
-			} else if (type.equals(int.class) || type.equals(Integer.class)) {
-				return (T) Integer.valueOf(val);
-			} else if (type.equals(long.class) || type.equals(Long.class)) {
-				return (T) Long.valueOf(val);
-			} else if (type.equals(boolean.class) || type.equals(Boolean.class)) {
-				return (T) Boolean.valueOf(val);
-			} else if (type.equals(byte.class) || type.equals(Byte.class)) {
-				return (T) Byte.valueOf(val);
-			} else if (type.equals(short.class) || type.equals(Short.class)) {
-				return (T) Short.valueOf(val);
-			} else if (type.equals(double.class) || type.equals(Double.class)) {
-				return (T) Double.valueOf(val);
-			} else if (type.equals(float.class) || type.equals(Float.class)) {
-				return (T) Float.valueOf(val);
-			} else if (type.equals(BigDecimal.class)) {
-				return (T) BigDecimal.valueOf(Double.valueOf(val));
+	/**
+	 * 第一行为表头，第二行为示例行，数据行不经POI对象直接写出
+	 */
+	private static <T> int writeDirect(Class<T> clazz, List<T> data, Map<String, String> alias, InputStream tplis, OutputStream os,
+										  ExcelWriteOptions options, Meter meter) throws IOException {
+		CompiledTemplate compiled = CompiledTemplate.of(tplis);
+		XlsxTemplate tpl = compiled.xlsx(XlsxTemplate.AFTER_FIRST_ROW);
+		meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
+		ClassMapper<T> mapper = ClassMapper.of(clazz, alias, tpl.header());
+		List<ClassMapper.Column> planned = new ArrayList<>();
+		for (ClassMapper.Column column : mapper.columns()) {
+			if (tpl.has(column.index)) {
+				planned.add(column);
 			}
 		}
-		return null;
+		XlsxDirectWriter writer = new XlsxDirectWriter(tpl, meter.count(os), options.getStringStrategy(), options.getSharedStringsLimit(),
+				ExcelTplWriter.sheetRows(options, XlsxDirectWriter.MAX_ROWS - tpl.firstRow));
+		writer.stats = meter.stats();
+		try {
+			for (T obj : data) {
+				writer.startRow();
+				for (ClassMapper.Column column : planned) {
+					writer.write(column.index, column.get(obj));
+				}
+				writer.endRow();
+			}
+			meter.phase(ExcelMetrics.Phase.ROW_FILL);
+			writer.finish();
+			meter.phase(ExcelMetrics.Phase.ZIP_WRITE);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		meter.written(data.size());
+		return data.size();
+	}
+
+	/**
+	 * 模板(CSV文本或xlsx/xls)的第一个非空行及之前的行原样作为表头，数据行按表头列号写出
+	 */
+	private static <T> int writeCsv(Class<T> clazz, List<T> data, Map<String, String> alias, String filename, InputStream tplis,
+									OutputStream os, Meter meter) throws IOException {
+		CsvTemplate tpl = CompiledTemplate.of(tplis).csv(XlsxTemplate.AFTER_FIRST_ROW);
+		ClassMapper.Column[] columns = ClassMapper.of(clazz, alias, tpl.header()).columns();
+		meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
+		CsvWriter writer = new CsvWriter(meter.count(os), CsvReader.delimiter(filename));
+		try {
+			for (String[] head : tpl.rows) {
+				writer.writeRow(head);
+			}
+			meter.phase(ExcelMetrics.Phase.HEADER_COPY);
+			writer.stats = meter.stats();
+			for (T obj : data) {
+				for (ClassMapper.Column column : columns) {
+					writer.write(column.index, column.get(obj));
+				}
+				writer.endRow();
+			}
+			meter.phase(ExcelMetrics.Phase.ROW_FILL);
+			writer.finish();
+			meter.phase(ExcelMetrics.Phase.FLUSH);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		meter.written(data.size());
+		return data.size();
+	}
+
+	public static void fillCellValue(Cell cell, Object val) {
+		RowPlan.write(cell, val);
 	}
 
 }
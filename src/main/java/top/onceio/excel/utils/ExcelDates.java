@@ -0,0 +1,132 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.LocaleUtil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * 日期到Excel序列值的换算，不创建Calendar，结果与DateUtil.getExcelDate一致；
+ * 以及文本日期的解析
+ */
+final class ExcelDates {
+	private static final long DAY_MILLIS = DateUtil.DAY_MILLISECONDS;
+	private static final double DAY_NANOS = DAY_MILLIS * 1000000.0;
+	/**
+	 * 1970-01-01 在1900日期系统中的序列值
+	 */
+	private static final int EPOCH_1900 = 25569;
+	/**
+	 * 1900与1904日期系统相差的天数
+	 */
+	private static final int OFFSET_1904 = 1462;
+
+	private ExcelDates() {
+	}
+
+	/**
+	 * 按POI的用户时区(LocaleUtil)换算
+	 */
+	static double serial(long epochMillis, boolean date1904) {
+		long local = epochMillis + LocaleUtil.getUserTimeZone().getOffset(epochMillis);
+		return serial(Math.floorDiv(local, DAY_MILLIS), Math.floorMod(local, DAY_MILLIS) / (double) DAY_MILLIS, date1904);
+	}
+
+	static double serial(LocalDate date, boolean date1904) {
+		return serial(date.toEpochDay(), 0.0, date1904);
+	}
+
+	static double serial(LocalDateTime dateTime, boolean date1904) {
+		return serial(dateTime.toLocalDate().toEpochDay(), dateTime.toLocalTime().toNanoOfDay() / DAY_NANOS, date1904);
+	}
+
+	private static double serial(long epochDay, double fraction, boolean date1904) {
+		long day = epochDay + EPOCH_1900;
+		if (date1904) {
+			day -= OFFSET_1904;
+			if (day < 0) {
+				return -1;
+			}
+		} else {
+			// Excel把1900-02-29当作存在的日期，之前的日期序列值少1
+			if (day < 61) {
+				day--;
+			}
+			if (day < 1) {
+				return -1;
+			}
+		}
+		return fraction + day;
+	}
+
+	/**
+	 * {@link #serial(long, boolean)}的逆换算，结果与DateUtil.getJavaDate(serial, date1904).getTime()一致，不创建Date
+	 */
+	static long epochMillis(double serial, boolean date1904) {
+		long wholeDays = (long) Math.floor(serial);
+		long millisInDay = (long) ((serial - wholeDays) * DAY_MILLIS + 0.5);
+		long epochDay;
+		if (date1904) {
+			epochDay = wholeDays - (EPOCH_1900 - OFFSET_1904);
+		} else {
+			epochDay = wholeDays - EPOCH_1900 + (wholeDays < 61 ? 1 : 0);
+		}
+		long local = epochDay * DAY_MILLIS + millisInDay;
+		TimeZone tz = LocaleUtil.getUserTimeZone();
+		return local - tz.getOffset(local - tz.getOffset(local));
+	}
+
+	/**
+	 * 解析yyyy-MM-dd[ HH:mm[:ss[.SSS]]]，日期分隔符可为'-'或'/'，日期与时间之间可为空格或'T'，按POI的用户时区
+	 *
+	 * @return 格式不符时返回null
+	 */
+	static Date parse(String text) {
+		// 依次为年、月、日、时、分、秒、毫秒
+		int[] parts = new int[7];
+		int n = 0;
+		int i = 0;
+		int len = text.length();
+		while (n < parts.length) {
+			int start = i;
+			int v = 0;
+			while (i < len && i - start < 9 && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+				v = v * 10 + text.charAt(i++) - '0';
+			}
+			if (i == start) {
+				return null;
+			}
+			if (n == 6) {
+				for (int digits = i - start; digits < 3; digits++) {
+					v *= 10;
+				}
+				for (int digits = i - start; digits > 3; digits--) {
+					v /= 10;
+				}
+			}
+			parts[n++] = v;
+			if (i == len) {
+				break;
+			}
+			char sep = text.charAt(i++);
+			if (n <= 2 ? sep != '-' && sep != '/' : n == 3 ? sep != ' ' && sep != 'T' : n <= 5 ? sep != ':' : sep != '.') {
+				return null;
+			}
+		}
+		if (i != len || n < 3 || n == 4) {
+			return null;
+		}
+		Calendar calendar = LocaleUtil.getLocaleCalendar(parts[0], parts[1] - 1, parts[2], parts[3], parts[4], parts[5]);
+		calendar.set(Calendar.MILLISECOND, parts[6]);
+		calendar.setLenient(false);
+		try {
+			return calendar.getTime();
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
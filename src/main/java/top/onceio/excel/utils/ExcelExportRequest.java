@@ -0,0 +1,97 @@
+package top.onceio.excel.utils;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * 提交给{@link ExcelExportService}的一次导出，参数同{@link ExcelTplWriter#write}
+ */
+public class ExcelExportRequest {
+	private String tplPath;
+	private int exampleRow;
+	private List<String> heads;
+	private Iterator<Object[]> data;
+	private String filepath;
+	private ExcelWriteOptions options = new ExcelWriteOptions();
+	/**
+	 * 预计占用的堆内存(字节)，0表示使用服务的默认值
+	 */
+	private long memory;
+	/**
+	 * 进度回调，参数为已写出的行数，在导出线程中调用
+	 */
+	private LongConsumer progress;
+	/**
+	 * 每写出多少行回调一次进度，结束时总会回调一次
+	 */
+	private int progressInterval = 1000;
+
+	public ExcelExportRequest(String tplPath, int exampleRow, Iterator<Object[]> data, String filepath) {
+		this.tplPath = tplPath;
+		this.exampleRow = exampleRow;
+		this.data = data;
+		this.filepath = filepath;
+	}
+
+	public String getTplPath() {
+		return tplPath;
+	}
+
+	public int getExampleRow() {
+		return exampleRow;
+	}
+
+	public Iterator<Object[]> getData() {
+		return data;
+	}
+
+	public String getFilepath() {
+		return filepath;
+	}
+
+	public List<String> getHeads() {
+		return heads;
+	}
+
+	public ExcelExportRequest setHeads(List<String> heads) {
+		this.heads = heads;
+		return this;
+	}
+
+	public ExcelWriteOptions getOptions() {
+		return options;
+	}
+
+	public ExcelExportRequest setOptions(ExcelWriteOptions options) {
+		this.options = options;
+		return this;
+	}
+
+	public long getMemory() {
+		return memory;
+	}
+
+	public ExcelExportRequest setMemory(long memory) {
+		this.memory = memory;
+		return this;
+	}
+
+	public LongConsumer getProgress() {
+		return progress;
+	}
+
+	public ExcelExportRequest setProgress(LongConsumer progress) {
+		this.progress = progress;
+		return this;
+	}
+
+	public int getProgressInterval() {
+		return progressInterval;
+	}
+
+	public ExcelExportRequest setProgressInterval(int progressInterval) {
+		this.progressInterval = progressInterval;
+		return this;
+	}
+}
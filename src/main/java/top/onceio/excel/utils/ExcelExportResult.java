@@ -0,0 +1,43 @@
+package top.onceio.excel.utils;
+
+/**
+ * 异步导出的结果
+ */
+public class ExcelExportResult {
+	private final String filepath;
+	private final int rows;
+	private final long queuedMillis;
+	private final long elapsedMillis;
+
+	ExcelExportResult(String filepath, int rows, long queuedMillis, long elapsedMillis) {
+		this.filepath = filepath;
+		this.rows = rows;
+		this.queuedMillis = queuedMillis;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public String getFilepath() {
+		return filepath;
+	}
+
+	/**
+	 * 写出的数据行数
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * 提交后等待线程和内存配额的时间
+	 */
+	public long getQueuedMillis() {
+		return queuedMillis;
+	}
+
+	/**
+	 * 开始导出到写完文件的时间
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+}
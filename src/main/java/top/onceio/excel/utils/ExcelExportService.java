@@ -0,0 +1,223 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.util.LocaleUtil;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步导出：同时执行的导出数受线程数和内存预算共同限制，超出的排队，队列满时提交直接拒绝。
+ * Java 21+每个导出一个虚拟线程，否则使用固定大小的线程池。
+ * 取消返回的future或关闭服务时，导出在写下一行之前停止并删除未写完的文件
+ */
+public class ExcelExportService implements Closeable {
+	/**
+	 * 未指定{@link ExcelExportRequest#setMemory}时每个导出预计占用的内存
+	 */
+	public static final long DEFAULT_TASK_MEMORY = 64L << 20;
+
+	private final ExecutorService executor;
+	private final Semaphore running;
+	/**
+	 * 内存预算，以KB为单位
+	 */
+	private final Semaphore memory;
+	private final int memoryPermits;
+	private final long taskMemory;
+	private final int capacity;
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final Set<CompletableFuture<ExcelExportResult>> futures = ConcurrentHashMap.newKeySet();
+	private volatile boolean closed;
+
+	public ExcelExportService(int threads, int queueCapacity, long memoryBudget) {
+		this(threads, queueCapacity, memoryBudget, DEFAULT_TASK_MEMORY);
+	}
+
+	/**
+	 * @param threads       同时执行的导出数上限
+	 * @param queueCapacity 等待执行的导出数上限
+	 * @param memoryBudget  同时执行的导出预计占用内存之和的上限(字节)，单个导出超过预算时独占全部预算
+	 * @param taskMemory    未指定时每个导出预计占用的内存(字节)
+	 */
+	public ExcelExportService(int threads, int queueCapacity, long memoryBudget, long taskMemory) {
+		if (threads < 1 || queueCapacity < 0 || memoryBudget < 1024 || taskMemory < 0) {
+			throw new RuntimeException("线程数至少为1，队列长度不能为负，内存预算至少为1KB");
+		}
+		this.executor = Workers.newExecutor("onceio-excel-export", threads);
+		this.running = new Semaphore(threads, true);
+		this.memoryPermits = (int) Math.min(memoryBudget >> 10, Integer.MAX_VALUE);
+		this.memory = new Semaphore(memoryPermits, true);
+		this.taskMemory = taskMemory;
+		this.capacity = threads + queueCapacity;
+	}
+
+	/**
+	 * @throws RejectedExecutionException 排队的导出已满或服务已关闭
+	 */
+	public CompletableFuture<ExcelExportResult> submit(ExcelExportRequest request) {
+		if (closed) {
+			throw new RejectedExecutionException("导出服务已关闭");
+		}
+		if (outstanding.incrementAndGet() > capacity) {
+			outstanding.decrementAndGet();
+			throw new RejectedExecutionException("导出队列已满");
+		}
+		CompletableFuture<ExcelExportResult> future = new CompletableFuture<>();
+		futures.add(future);
+		long submitted = System.nanoTime();
+		TimeZone tz = LocaleUtil.getUserTimeZone();
+		try {
+			executor.execute(() -> run(request, future, submitted, tz));
+		} catch (RejectedExecutionException e) {
+			futures.remove(future);
+			outstanding.decrementAndGet();
+			throw e;
+		}
+		return future;
+	}
+
+	/**
+	 * 正在执行和排队的导出数
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * 取消全部未完成的导出，不再接受新的提交
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (CompletableFuture<ExcelExportResult> future : futures) {
+			future.cancel(false);
+		}
+		executor.shutdownNow();
+	}
+
+	private void run(ExcelExportRequest request, CompletableFuture<ExcelExportResult> future, long submitted, TimeZone tz) {
+		TimeZone prev = LocaleUtil.getUserTimeZone();
+		LocaleUtil.setUserTimeZone(tz);
+		int permits = permits(request);
+		boolean slot = false;
+		boolean reserved = false;
+		try {
+			if (future.isDone()) {
+				return;
+			}
+			running.acquire();
+			slot = true;
+			memory.acquire(permits);
+			reserved = true;
+			if (future.isDone()) {
+				return;
+			}
+			long start = System.nanoTime();
+			int rows = export(request, future);
+			long end = System.nanoTime();
+			ExcelExportResult result = new ExcelExportResult(request.getFilepath(), rows,
+					TimeUnit.NANOSECONDS.toMillis(start - submitted), TimeUnit.NANOSECONDS.toMillis(end - start));
+			if (!future.complete(result)) {
+				// 写完之前已被取消
+				new File(request.getFilepath()).delete();
+			}
+		} catch (InterruptedException e) {
+			future.cancel(false);
+		} catch (Aborted e) {
+			future.cancel(false);
+			new File(request.getFilepath()).delete();
+		} catch (IOException | RuntimeException | Error e) {
+			new File(request.getFilepath()).delete();
+			future.completeExceptionally(e);
+		} finally {
+			if (reserved) {
+				memory.release(permits);
+			}
+			if (slot) {
+				running.release();
+			}
+			futures.remove(future);
+			outstanding.decrementAndGet();
+			LocaleUtil.setUserTimeZone(prev);
+		}
+	}
+
+	private int export(ExcelExportRequest request, CompletableFuture<ExcelExportResult> future) throws IOException {
+		ExcelWriteOptions options = request.getOptions();
+		Tracked data = new Tracked(request, future);
+		int rows;
+		try (InputStream tplis = ExcelTplWriter.openTemplate(request.getTplPath(), options);
+			 OutputStream os = new FileOutputStream(request.getFilepath())) {
+			// 写出失败时抛出，由调用方删除不完整的文件
+			rows = ExcelTplWriter.writeChecked(tplis, request.getExampleRow(), request.getHeads(), RowSource.of(data), request.getFilepath(), os, options);
+		}
+		if (request.getProgress() != null) {
+			request.getProgress().accept(data.rows);
+		}
+		return rows;
+	}
+
+	/**
+	 * 预计内存换算为KB，不超过全部预算
+	 */
+	private int permits(ExcelExportRequest request) {
+		long bytes = request.getMemory() > 0 ? request.getMemory() : taskMemory;
+		return (int) Math.max(1, Math.min(bytes >> 10, memoryPermits));
+	}
+
+	/**
+	 * 每取一行前检查取消，按间隔回调进度
+	 */
+	private static final class Tracked implements Iterator<Object[]> {
+		private final Iterator<Object[]> data;
+		private final CompletableFuture<?> future;
+		private final ExcelExportRequest request;
+		private final int interval;
+		private long rows;
+
+		Tracked(ExcelExportRequest request, CompletableFuture<?> future) {
+			this.data = request.getData();
+			this.future = future;
+			this.request = request;
+			this.interval = Math.max(request.getProgressInterval(), 1);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (future.isDone() || Thread.currentThread().isInterrupted()) {
+				throw new Aborted();
+			}
+			return data.hasNext();
+		}
+
+		@Override
+		public Object[] next() {
+			Object[] row = data.next();
+			rows++;
+			if (rows % interval == 0 && request.getProgress() != null) {
+				request.getProgress().accept(rows);
+			}
+			return row;
+		}
+	}
+
+	private static final class Aborted extends RuntimeException {
+		Aborted() {
+			super("导出已取消", null, false, false);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package top.onceio.excel.utils;
+
+/**
+ * 导入导出的指标回调，通过{@link ExcelWriteOptions#setMetrics}和{@link ExcelReadOptions#setMetrics}启用，
+ * 未设置时除一次判空外没有额外开销。单元格和行在解析、填充时先在本地计数，每次导入导出结束时汇总回调一次；
+ * 多线程导入导出时回调可能并发，实现需线程安全。默认实现为{@link ExcelMetricsRecorder}
+ */
+public interface ExcelMetrics {
+
+	enum Phase {
+		/**
+		 * 读取并解析模板
+		 */
+		TEMPLATE_LOAD,
+		/**
+		 * 替换标题、复制表头和编译示例行
+		 */
+		HEADER_COPY,
+		/**
+		 * 填充数据行，SXSSF超出窗口的行在此阶段刷到临时文件
+		 */
+		ROW_FILL,
+		/**
+		 * 剩余的行刷到临时文件，CSV为写出缓冲区
+		 */
+		FLUSH,
+		/**
+		 * 写出文件，xlsx为打包zip，xls为序列化
+		 */
+		ZIP_WRITE,
+		/**
+		 * 导入时打开文件，包括输入流落盘和读取共享字符串表
+		 */
+		OPEN,
+		/**
+		 * 导入时解析数据行
+		 */
+		PARSE
+	}
+
+	default void phase(Phase phase, long nanos) {
+	}
+
+	/**
+	 * @param nanos 整个导出的耗时
+	 */
+	default void rowsWritten(long rows, long nanos) {
+	}
+
+	/**
+	 * @param nanos 整个导入的耗时
+	 */
+	default void rowsRead(long rows, long nanos) {
+	}
+
+	/**
+	 * @param cellType Cell.CELL_TYPE_*，CSV的字段都计为字符串
+	 */
+	default void cells(int cellType, long count) {
+	}
+
+	default void bytesWritten(long bytes) {
+	}
+
+	/**
+	 * SXSSF临时文件的大小
+	 */
+	default void tempFileBytes(long bytes) {
+	}
+
+	/**
+	 * 值无法转换为单元格或字段类型的次数，转换失败仍会中止导入导出
+	 */
+	default void conversionFailures(long count) {
+	}
+}
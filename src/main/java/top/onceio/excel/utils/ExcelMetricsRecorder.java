@@ -0,0 +1,199 @@
+package top.onceio.excel.utils;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link ExcelMetrics}的默认实现，计数用LongAdder，阶段耗时记入无锁的直方图，可在多个导入导出间共享。
+ * 通过{@link #forEach}以扁平的名称和数值桥接到其它指标系统
+ */
+public class ExcelMetricsRecorder implements ExcelMetrics {
+	private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+	private final LongAdder rowsWritten = new LongAdder();
+	private final LongAdder writeNanos = new LongAdder();
+	private final LongAdder rowsRead = new LongAdder();
+	private final LongAdder readNanos = new LongAdder();
+	private final LongAdder[] cells = new LongAdder[CellStats.TYPES];
+	private final LongAdder bytesWritten = new LongAdder();
+	private final LongAdder tempFileBytes = new LongAdder();
+	private final LongAdder conversionFailures = new LongAdder();
+
+	public ExcelMetricsRecorder() {
+		for (Phase phase : Phase.values()) {
+			phases.put(phase, new Histogram());
+		}
+		for (int t = 0; t < cells.length; t++) {
+			cells[t] = new LongAdder();
+		}
+	}
+
+	@Override
+	public void phase(Phase phase, long nanos) {
+		phases.get(phase).record(nanos);
+	}
+
+	@Override
+	public void rowsWritten(long rows, long nanos) {
+		rowsWritten.add(rows);
+		writeNanos.add(nanos);
+	}
+
+	@Override
+	public void rowsRead(long rows, long nanos) {
+		rowsRead.add(rows);
+		readNanos.add(nanos);
+	}
+
+	@Override
+	public void cells(int cellType, long count) {
+		if (cellType >= 0 && cellType < cells.length) {
+			cells[cellType].add(count);
+		}
+	}
+
+	@Override
+	public void bytesWritten(long bytes) {
+		bytesWritten.add(bytes);
+	}
+
+	@Override
+	public void tempFileBytes(long bytes) {
+		tempFileBytes.add(bytes);
+	}
+
+	@Override
+	public void conversionFailures(long count) {
+		conversionFailures.add(count);
+	}
+
+	public Histogram getPhase(Phase phase) {
+		return phases.get(phase);
+	}
+
+	public long getRowsWritten() {
+		return rowsWritten.sum();
+	}
+
+	/**
+	 * 按导出总耗时计算的每秒写出行数
+	 */
+	public double getRowsWrittenPerSecond() {
+		return rate(rowsWritten.sum(), writeNanos.sum());
+	}
+
+	public long getRowsRead() {
+		return rowsRead.sum();
+	}
+
+	public double getRowsReadPerSecond() {
+		return rate(rowsRead.sum(), readNanos.sum());
+	}
+
+	/**
+	 * @param cellType Cell.CELL_TYPE_*
+	 */
+	public long getCells(int cellType) {
+		return cellType >= 0 && cellType < cells.length ? cells[cellType].sum() : 0;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	public long getTempFileBytes() {
+		return tempFileBytes.sum();
+	}
+
+	public long getConversionFailures() {
+		return conversionFailures.sum();
+	}
+
+	private static double rate(long rows, long nanos) {
+		return nanos > 0 ? rows * 1e9 / nanos : 0;
+	}
+
+	/**
+	 * 依次给出所有指标，如rows.written、phase.row_fill.p99_ms、cells.string
+	 */
+	public void forEach(BiConsumer<String, Number> consumer) {
+		for (Map.Entry<Phase, Histogram> entry : phases.entrySet()) {
+			Histogram h = entry.getValue();
+			String name = "phase." + entry.getKey().name().toLowerCase(Locale.ROOT);
+			consumer.accept(name + ".count", h.getCount());
+			consumer.accept(name + ".sum_ms", h.getSum() / 1e6);
+			consumer.accept(name + ".max_ms", h.getMax() / 1e6);
+			consumer.accept(name + ".p50_ms", h.getPercentile(0.5) / 1e6);
+			consumer.accept(name + ".p99_ms", h.getPercentile(0.99) / 1e6);
+		}
+		consumer.accept("rows.written", getRowsWritten());
+		consumer.accept("rows.written.per_second", getRowsWrittenPerSecond());
+		consumer.accept("rows.read", getRowsRead());
+		consumer.accept("rows.read.per_second", getRowsReadPerSecond());
+		String[] types = {"numeric", "string", "formula", "blank", "boolean", "error"};
+		for (int t = 0; t < types.length; t++) {
+			consumer.accept("cells." + types[t], getCells(t));
+		}
+		consumer.accept("bytes.written", getBytesWritten());
+		consumer.accept("tempfile.bytes", getTempFileBytes());
+		consumer.accept("conversion.failures", getConversionFailures());
+	}
+
+	/**
+	 * 按2的幂分桶的纳秒直方图，百分位取所在桶的上界，误差在2倍以内
+	 */
+	public static final class Histogram {
+		private final AtomicLongArray buckets = new AtomicLongArray(64);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		void record(long nanos) {
+			long v = Math.max(nanos, 0);
+			buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(v) - (v == 0 ? 0 : 1));
+			count.increment();
+			sum.add(v);
+			long m;
+			while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+			}
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getSum() {
+			return sum.sum();
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		/**
+		 * @param p 0到1之间
+		 */
+		public long getPercentile(double p) {
+			long total = 0;
+			for (int i = 0; i < buckets.length(); i++) {
+				total += buckets.get(i);
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(p * total);
+			long seen = 0;
+			for (int i = 0; i < buckets.length(); i++) {
+				seen += buckets.get(i);
+				if (seen >= rank && seen > 0) {
+					return Math.min(i >= 62 ? Long.MAX_VALUE : (2L << i) - 1, getMax());
+				}
+			}
+			return getMax();
+		}
+	}
+}
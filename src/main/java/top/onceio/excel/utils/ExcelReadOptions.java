@@ -0,0 +1,155 @@
+package top.onceio.excel.utils;
+
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+/**
+ * 读取参数
+ */
+public class ExcelReadOptions {
+	/**
+	 * 字符串单元格是否去除首尾空白
+	 */
+	private boolean trim = true;
+	/**
+	 * 是否按事件模型流式读取，xlsx使用SAX，xls使用HSSF事件API（内存占用与行数无关）
+	 */
+	private boolean streaming = true;
+	/**
+	 * 多sheet读取时要读的sheet名称，null表示全部
+	 */
+	private Collection<String> sheets;
+	/**
+	 * 多sheet读取时并行解析的线程数，未指定executor时使用
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	/**
+	 * 多sheet读取时执行解析的线程池，由调用方管理生命周期
+	 */
+	private Executor executor;
+	/**
+	 * 指标回调，null表示不采集
+	 */
+	private ExcelMetrics metrics;
+	/**
+	 * 是否重新计算公式单元格，否则使用文件中缓存的计算结果。
+	 * 计算需要对象模型，启用时不按流式读取；每个工作簿使用一个FormulaEvaluator，已计算的单元格结果被缓存复用
+	 */
+	private boolean evaluateFormulas;
+	/**
+	 * 只读取的列，表头名称或别名对应的字段名，null表示全部；其余列解析时不解码
+	 */
+	private Collection<String> columns;
+	/**
+	 * 跳过表头之后的前offset行
+	 */
+	private int offset;
+	/**
+	 * 每个sheet最多读取的对象数，达到后停止解析该sheet
+	 */
+	private int limit = Integer.MAX_VALUE;
+	/**
+	 * 参数为映射后的对象，返回true时该行不返回并停止解析该sheet
+	 */
+	private Predicate<Object> stopWhen;
+
+	public boolean isTrim() {
+		return trim;
+	}
+
+	public ExcelReadOptions setTrim(boolean trim) {
+		this.trim = trim;
+		return this;
+	}
+
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	public ExcelReadOptions setStreaming(boolean streaming) {
+		this.streaming = streaming;
+		return this;
+	}
+
+	public Collection<String> getSheets() {
+		return sheets;
+	}
+
+	public ExcelReadOptions setSheets(Collection<String> sheets) {
+		this.sheets = sheets;
+		return this;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public ExcelReadOptions setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public ExcelReadOptions setExecutor(Executor executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	public ExcelMetrics getMetrics() {
+		return metrics;
+	}
+
+	public ExcelReadOptions setMetrics(ExcelMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	public boolean isEvaluateFormulas() {
+		return evaluateFormulas;
+	}
+
+	public ExcelReadOptions setEvaluateFormulas(boolean evaluateFormulas) {
+		this.evaluateFormulas = evaluateFormulas;
+		return this;
+	}
+
+	public Collection<String> getColumns() {
+		return columns;
+	}
+
+	public ExcelReadOptions setColumns(Collection<String> columns) {
+		this.columns = columns;
+		return this;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public ExcelReadOptions setOffset(int offset) {
+		this.offset = offset;
+		return this;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public ExcelReadOptions setLimit(int limit) {
+		this.limit = limit;
+		return this;
+	}
+
+	public Predicate<Object> getStopWhen() {
+		return stopWhen;
+	}
+
+	public ExcelReadOptions setStopWhen(Predicate<Object> stopWhen) {
+		this.stopWhen = stopWhen;
+		return this;
+	}
+}
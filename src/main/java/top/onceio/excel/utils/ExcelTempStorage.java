@@ -0,0 +1,185 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.util.TempFile;
+import org.apache.poi.util.TempFileCreationStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SXSSF流式写出的临时文件存储：指定目录，单次导出和全部导出的磁盘配额，导出结束时删除全部临时文件。
+ * 通过{@link ExcelWriteOptions#setTempStorage}启用；启用后会替换POI全局的{@link TempFileCreationStrategy}，
+ * 导出线程之外创建的临时文件仍按POI默认方式创建在java.io.tmpdir中
+ */
+public class ExcelTempStorage {
+	private static final ThreadLocal<Session> CURRENT = new ThreadLocal<>();
+	private static volatile boolean installed;
+
+	private final File dir;
+	private final long exportQuota;
+	private final long totalQuota;
+	private final AtomicLong used = new AtomicLong();
+	private final AtomicLong peak = new AtomicLong();
+
+	public ExcelTempStorage(File dir) {
+		this(dir, Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param exportQuota 单次导出临时文件大小上限(字节)
+	 * @param totalQuota  同时进行的导出临时文件大小之和的上限(字节)
+	 */
+	public ExcelTempStorage(File dir, long exportQuota, long totalQuota) {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new RuntimeException("无法创建临时目录:" + dir);
+		}
+		this.dir = dir;
+		this.exportQuota = exportQuota;
+		this.totalQuota = totalQuota;
+	}
+
+	public File getDir() {
+		return dir;
+	}
+
+	/**
+	 * 正在进行的导出占用的临时文件大小，在检查配额时更新
+	 */
+	public long getUsedBytes() {
+		return used.get();
+	}
+
+	public long getPeakBytes() {
+		return peak.get();
+	}
+
+	/**
+	 * 删除目录中进程异常退出后遗留的SXSSF临时文件
+	 *
+	 * @param olderThanMillis 只删除修改时间早于此时长的文件，避免删除其它进程正在使用的文件
+	 * @return 删除的文件数
+	 */
+	public int purge(long olderThanMillis) {
+		File[] files = dir.listFiles((d, name) -> name.startsWith("poi-sxssf-"));
+		int deleted = 0;
+		long before = System.currentTimeMillis() - olderThanMillis;
+		if (files != null) {
+			for (File file : files) {
+				if (file.lastModified() < before && file.delete()) {
+					deleted++;
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * 开始一次导出，当前线程此后创建的POI临时文件都归入返回的Session，直到关闭
+	 */
+	static Session open(ExcelWriteOptions options) {
+		ExcelTempStorage storage = options.getTempStorage();
+		if (storage == null) {
+			return Session.NONE;
+		}
+		install();
+		Session session = new Session(storage, options.getWindowSize());
+		CURRENT.set(session);
+		return session;
+	}
+
+	private static void install() {
+		if (!installed) {
+			synchronized (ExcelTempStorage.class) {
+				if (!installed) {
+					TempFile.setTempFileCreationStrategy(new Routing());
+					installed = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 导出中的线程创建在所属存储的目录中，其它线程同POI默认方式
+	 */
+	private static final class Routing implements TempFileCreationStrategy {
+		private final TempFileCreationStrategy fallback = new TempFile.DefaultTempFileCreationStrategy();
+
+		@Override
+		public File createTempFile(String prefix, String suffix) throws IOException {
+			Session session = CURRENT.get();
+			if (session == null) {
+				return fallback.createTempFile(prefix, suffix);
+			}
+			File file = File.createTempFile(prefix, suffix, session.storage.dir);
+			session.files.add(file);
+			return file;
+		}
+	}
+
+	/**
+	 * 一次导出的临时文件，关闭时删除，可跨线程检查配额
+	 */
+	static class Session {
+		static final Session NONE = new Session(null, Integer.MAX_VALUE);
+
+		private final ExcelTempStorage storage;
+		/**
+		 * 每写出多少行检查一次配额，与SXSSF的刷出间隔一致
+		 */
+		final int interval;
+		private final Queue<File> files = new ConcurrentLinkedQueue<>();
+		private long bytes;
+
+		private Session(ExcelTempStorage storage, int interval) {
+			this.storage = storage;
+			this.interval = Math.max(interval, 1);
+		}
+
+		/**
+		 * 按文件实际大小更新占用，超出配额时抛出异常终止导出
+		 */
+		void check() {
+			if (storage == null) {
+				return;
+			}
+			long total;
+			long current;
+			synchronized (this) {
+				current = 0;
+				for (File file : files) {
+					current += file.length();
+				}
+				total = storage.used.addAndGet(current - bytes);
+				bytes = current;
+			}
+			storage.peak.accumulateAndGet(total, Math::max);
+			if (current > storage.exportQuota) {
+				throw new RuntimeException("临时文件超出单次导出配额:" + current + ">" + storage.exportQuota);
+			} else if (total > storage.totalQuota) {
+				throw new RuntimeException("临时文件超出总配额:" + total + ">" + storage.totalQuota);
+			}
+		}
+
+		/**
+		 * 在工作簿dispose之后调用，删除残留的文件并释放占用
+		 */
+		void close() {
+			if (storage == null) {
+				return;
+			}
+			if (CURRENT.get() == this) {
+				CURRENT.remove();
+			}
+			for (File file : files) {
+				file.delete();
+			}
+			synchronized (this) {
+				storage.used.addAndGet(-bytes);
+				bytes = 0;
+			}
+		}
+	}
+}
@@ -3,6 +3,7 @@ package top.onceio.excel.utils;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
@@ -10,21 +11,32 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.math.BigDecimal;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class ExcelTplWriter {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ExcelTplWriter.class);
-	public static void  write(String tplPath, int exampleRow, List<Object[]> data, String filepath) {
-		FileInputStream fis = null;
+	private static final String TPL_SHEET = "~onceio-template";
+	public static void write(String tplPath, int exampleRow, List<Object[]> data, String filepath) {
+		write(tplPath, exampleRow, data.iterator(), filepath, new ExcelWriteOptions());
+	}
+
+	public static int write(String tplPath, int exampleRow, Iterator<Object[]> data, String filepath, ExcelWriteOptions options) {
+		InputStream fis = null;
 		FileOutputStream fos = null;
+		int rows = 0;
 		try {
-			fis = new  FileInputStream(tplPath);
+			fis = openTemplate(tplPath, options);
 			fos = new  FileOutputStream(filepath);
-			write(fis, exampleRow,data, filepath,fos);
-		} catch (FileNotFoundException e) {
+			rows = write(fis, exampleRow, null, data, filepath, fos, options);
+		} catch (IOException e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
 		}finally {
@@ -45,56 +57,67 @@ public class ExcelTplWriter {
 				}
 			}
 		}
+		return rows;
 	}
 
-	public static void  write(InputStream tplis, int exampleRow, List<Object[]> data, String filename, OutputStream os) {
+	/**
+	 * 向按同一模板导出的xlsx文件第一个sheet末尾追加数据行，新行按模板示例行的样式和类型写出，字符串内联。
+	 * 不加载工作簿：其余zip条目逐个复制，只顺序改写sheet XML，先写到同目录的临时文件再替换原文件，
+	 * 失败时原文件不变。文件不存在时按模板导出
+	 *
+	 * @return 追加的行数
+	 */
+	public static int append(String tplPath, int exampleRow, Iterator<Object[]> data, String filepath, ExcelWriteOptions options) {
+		File file = new File(filepath);
+		if (!file.exists()) {
+			return write(tplPath, exampleRow, data, filepath, options);
+		}
+		if (!filepath.toLowerCase().endsWith(".xlsx")) {
+			throw new RuntimeException("只支持向xlsx文件追加:" + filepath);
+		}
+		Meter meter = Meter.of(options.getMetrics());
+		int rows = 0;
+		File tmp = null;
+		try (InputStream fis = openTemplate(tplPath, options)) {
+			XlsxTemplate tpl = CompiledTemplate.of(fis).xlsx(exampleRow);
+			meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
+			tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+			int appended;
+			try (OutputStream fos = new FileOutputStream(tmp)) {
+				appended = XlsxAppender.append(file, tpl, RowSource.of(data), meter.count(fos), meter.stats());
+			}
+			meter.phase(ExcelMetrics.Phase.ROW_FILL);
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			rows = appended;
+			meter.written(rows);
+		} catch (IOException | UncheckedIOException e) {
+			e.printStackTrace();
+			LOGGER.error("Exception", e);
+		} finally {
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * 按options.templateCache读取模板，未配置缓存时直接打开文件
+	 */
+	static InputStream openTemplate(String tplPath, ExcelWriteOptions options) throws IOException {
+		TemplateCache cache = options.getTemplateCache();
+		if (cache != null) {
+			return cache.get(tplPath).open();
+		}
+		return new FileInputStream(tplPath);
+	}
+
+	public static void write(InputStream tplis, int exampleRow, List<Object[]> data, String filename, OutputStream os) {
 		write(tplis,exampleRow,null,data,filename,os);
 	}
 
 	public static void fillCellValue(Cell cell, Object val, String comment) {
-		switch(cell.getCellType()) {
-			case Cell.CELL_TYPE_NUMERIC:
-				if(val instanceof Date) {
-					cell.setCellValue((Date)val);
-				} else if(val instanceof Long) {
-					cell.setCellValue(Double.parseDouble(val.toString()));
-				} else {
-					cell.setCellValue(Double.parseDouble(val.toString()));
-				}
-				break;
-			case Cell.CELL_TYPE_STRING:
-				cell.setCellValue(val.toString());
-				break;
-			case Cell.CELL_TYPE_BOOLEAN:
-				cell.setCellValue(Boolean.parseBoolean(val.toString()));
-				break;
-			case Cell.CELL_TYPE_FORMULA:
-				cell.setCellFormula(val.toString());
-				break;
-			case Cell.CELL_TYPE_BLANK:
-				if(val instanceof String) {
-					cell.setCellValue((String)val);
-				}else if(val instanceof Boolean) {
-					cell.setCellValue((Boolean) val);
-				}else if(val instanceof BigDecimal
-						|| val instanceof Integer
-						|| val instanceof Short
-						|| val instanceof Float
-						|| val instanceof Double
-						|| val instanceof Long) {
-					cell.setCellValue(Double.parseDouble(val.toString()));
-				}else if(val instanceof Date) {
-					cell.setCellValue((Date)val);
-				} else {
-					cell.setCellValue(val.toString());
-				}
-				break;
-			case Cell.CELL_TYPE_ERROR:
-				//cell.setCellErrorValue(val);
-				break;
-			default:
-				LOGGER.info("unresolve : ", cell.getCellType());
-		}
+		RowPlan.write(cell, val);
 	}
 
 
@@ -125,6 +148,23 @@ public class ExcelTplWriter {
 		}
 	}
 
+	/**
+	 * 复制模板前rows行(含样式、行高)及列宽
+	 */
+	static void copyHead(Sheet sheetEg, Sheet sheet, int rows) {
+		for(int i = 0; i < rows; i++) {
+			Row rowEg = sheetEg.getRow(i);
+			if(rowEg == null || rowEg.getFirstCellNum() < 0) continue;
+			Row rowDes = sheet.createRow(i);
+			rowDes.setHeight(rowEg.getHeight());
+			for(int c = rowEg.getFirstCellNum(); c <= rowEg.getLastCellNum(); c++) {
+				Cell cell = rowEg.getCell(c);
+				copyCell(cell, c, rowDes);
+				sheet.setColumnWidth(c, sheetEg.getColumnWidth(c));
+			}
+		}
+	}
+
 	/**
 	 *
 	 * @param tplis
@@ -134,79 +174,462 @@ public class ExcelTplWriter {
 	 * @param filename
 	 * @param os
 	 */
-	public static void  write(InputStream tplis, int exampleRow,List<String> heads, List<Object[]> data, String filename, OutputStream os) {
+	public static void write(InputStream tplis, int exampleRow,List<String> heads, List<Object[]> data, String filename, OutputStream os) {
+		write(tplis, exampleRow, heads, data.iterator(), filename, os, new ExcelWriteOptions());
+	}
+
+	public static int write(InputStream tplis, int exampleRow, List<String> heads, Stream<Object[]> data, String filename, OutputStream os, ExcelWriteOptions options) {
+		return write(tplis, exampleRow, heads, data.iterator(), filename, os, options);
+	}
+
+	/**
+	 * SXSSF只能整个工作簿选择共享字符串表，AUTO按INLINE处理
+	 */
+	static SXSSFWorkbook newStreamingWorkbook(XSSFWorkbook wbEg, ExcelWriteOptions options) {
+		return new SXSSFWorkbook(wbEg, options.getWindowSize(), options.isCompressTempFiles(),
+				options.getStringStrategy() == StringStrategy.SHARED);
+	}
+
+	/**
+	 * 从表头行尾部开始替换标题
+	 */
+	static void replaceHeads(Sheet sheetEg, int exampleRow, List<String> heads) {
+		Row headRow = sheetEg.getRow(exampleRow-1);
+		int offset = headRow.getLastCellNum() - heads.size();
+		for(int i=0; i < heads.size(); i++) {
+			Cell cell = headRow.getCell(i+offset);
+			cell.setCellValue(heads.get(i));
+		}
+	}
+
+	/**
+	 * 逐行从data拉取数据，xlsx时内存中只保留options.windowSize行；
+	 * options.engine为DIRECT时xlsx数据行直接写出，见{@link WriteEngine#DIRECT}；
+	 * 文件名为.csv/.tsv时写出CSV/TSV，模板只提供表头。
+	 * 一个sheet写满options.sheetRowLimit(默认为文件格式的最大行数)后在新sheet中继续；
+	 * 设置了options.fileRowLimit或fileByteLimit时分成多个文件，打包为zip写入os
+	 *
+	 * @param heads 从模板尾部开始替换的头部标题
+	 * @param data 按需拉取的数据行，如JDBC游标
+	 * @return 写出的数据行数
+	 */
+	public static int write(InputStream tplis, int exampleRow, List<String> heads, Iterator<Object[]> data, String filename, OutputStream os, ExcelWriteOptions options) {
+		return write(tplis, exampleRow, heads, RowSource.of(data), filename, os, options);
+	}
+
+	public static int write(String tplPath, int exampleRow, ColumnarData data, String filepath, ExcelWriteOptions options) {
+		int rows = 0;
+		try (InputStream fis = openTemplate(tplPath, options);
+			 FileOutputStream fos = new FileOutputStream(filepath)) {
+			rows = write(fis, exampleRow, null, data, filepath, fos, options);
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+		return rows;
+	}
+
+	/**
+	 * 同{@link #write(InputStream, int, List, Iterator, String, OutputStream, ExcelWriteOptions)}，
+	 * 数据按列提供，各单元格直接从基本类型数组写出
+	 *
+	 * @return 写出的数据行数
+	 */
+	public static int write(InputStream tplis, int exampleRow, List<String> heads, ColumnarData data, String filename, OutputStream os, ExcelWriteOptions options) {
+		return write(tplis, exampleRow, heads, data.rows(), filename, os, options);
+	}
+
+	private static int write(InputStream tplis, int exampleRow, List<String> heads, RowSource data, String filename, OutputStream os, ExcelWriteOptions options) {
+		try {
+			return writeChecked(tplis, exampleRow, heads, data, filename, os, options);
+		} catch (IOException | UncheckedIOException e) {
+			e.printStackTrace();
+			LOGGER.error("Exception", e);
+		}
+		return 0;
+	}
+
+	/**
+	 * 同{@link #write(InputStream, int, List, Iterator, String, OutputStream, ExcelWriteOptions)}，写出失败时抛出异常，不返回部分行数
+	 */
+	static int writeChecked(InputStream tplis, int exampleRow, List<String> heads, RowSource data, String filename, OutputStream os,
+									ExcelWriteOptions options) throws IOException {
+		if (options.getFileRowLimit() > 0 || options.getFileByteLimit() > 0) {
+			return writeParts(tplis, exampleRow, heads, data, filename, os, options);
+		}
+		return writeFile(tplis, exampleRow, heads, data, filename, os, options);
+	}
+
+	private static int writeFile(InputStream tplis, int exampleRow, List<String> heads, RowSource data, String filename, OutputStream os,
+								 ExcelWriteOptions options) throws IOException {
 		String ext = filename.substring(filename.lastIndexOf("."));
+		Meter meter = Meter.of(options.getMetrics());
+		if (CsvReader.isCsv(filename)) {
+			return writeCsv(tplis, exampleRow, heads, data, filename, os, meter);
+		} else if (".xlsx".equals(ext) && options.getEngine() == WriteEngine.DIRECT) {
+			return writeDirect(tplis, exampleRow, heads, data, os, options, meter);
+		}
 		Workbook wb = null;
 		XSSFWorkbook wbEg = null;
+		ExcelTempStorage.Session temp = ExcelTempStorage.open(options);
+		int rows = 0;
 		try {
+			Sheet sheetEg;
 			if (".xls".equals(ext)) {
 				wb = new HSSFWorkbook(tplis);
+				sheetEg = wb.getSheetAt(0);
 			} else if (".xlsx".equals(ext)) {
-				wbEg = new XSSFWorkbook(tplis);
-				wb = new SXSSFWorkbook(wbEg,100);
+				wbEg = CompiledTemplate.of(tplis).workbook();
+				wb = newStreamingWorkbook(wbEg, options);
+				// SXSSF无法访问模板中已有的行，从XSSF读取模板
+				sheetEg = wbEg.getSheetAt(0);
 			} else {
-				throw new RuntimeException("上次文件格式不正确（只支持xls和xlsx）");
+				throw new RuntimeException("上次文件格式不正确（只支持xls、xlsx、csv和tsv）");
 			}
-			Sheet sheetEg = wb.getSheetAt(0);
+			meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
 			int r = exampleRow;
 			if(heads != null) {
-				Row headRow = sheetEg.getRow(exampleRow-1);
-				int offset = headRow.getLastCellNum() - heads.size();
-				for(int i=0; i < heads.size(); i++) {
-					Cell cell = headRow.getCell(i+offset);
-					cell.setCellValue(heads.get(i));
+				replaceHeads(sheetEg, exampleRow, heads);
+			}
+			RowPlan plan = RowPlan.compile(sheetEg.getRow(r));
+			plan.stats = meter.stats();
+
+			String sheetName = sheetEg.getSheetName();
+			Sheet sheet = wb.createSheet();
+			copyHead(sheetEg, sheet, r);
+			meter.phase(ExcelMetrics.Phase.HEADER_COPY);
+			SegmentedRows sheets = new SegmentedRows(data, sheetRows(options, wb, r));
+			rows = fill(sheet, r, plan, sheets, null, temp);
+			while(sheets.hasMore()) {
+				// 当前sheet已满，在复制了表头和列宽的新sheet中继续
+				if(sheet instanceof SXSSFSheet) {
+					((SXSSFSheet) sheet).flushRows(0);
 				}
+				sheets.reset();
+				sheet = wb.createSheet();
+				copyHead(sheetEg, sheet, r);
+				rows += fill(sheet, r, plan, sheets, null, temp);
 			}
-			Row example = sheetEg.getRow(r);
-			Map<Integer,Cell> egCell = new HashMap<>();
-			for(int c = example.getFirstCellNum(); c <= example.getLastCellNum(); c++) {
-				Cell cell = example.getCell(c);
-				if(cell != null) {
-					egCell.put(c,example.getCell(c));
+			meter.phase(ExcelMetrics.Phase.ROW_FILL);
+			wb.removeSheetAt(0);
+			for(int i = 0; i < wb.getNumberOfSheets(); i++) {
+				wb.setSheetName(i, partName(sheetName, i, 31));
+			}
+			write(wb, os, meter);
+			meter.written(rows);
+		} finally {
+			if(wb instanceof SXSSFWorkbook) {
+				((SXSSFWorkbook) wb).dispose();
+			}
+			if(wb != null) {
+				try {
+					wb.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+					LOGGER.error(e.getMessage());
 				}
 			}
+			if(wbEg != null) {
+				try {
+					wbEg.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+					LOGGER.error(e.getMessage());
+				}
+			}
+			temp.close();
+		}
+		return rows;
+	}
 
-			Sheet sheet = wb.createSheet();
+	private static int sheetRows(ExcelWriteOptions options, Workbook wb, int firstRow) {
+		return sheetRows(options, wb.getSpreadsheetVersion().getMaxRows() - firstRow);
+	}
 
-			for(int i = 0; i < r; i++) {
-				Row rowEg = sheetEg.getRow(i);
-				Row rowDes = sheet.createRow(i);
+	/**
+	 * 每个sheet的数据行数，不超过文件格式的最大行数max
+	 */
+	static int sheetRows(ExcelWriteOptions options, int max) {
+		return options.getSheetRowLimit() > 0 ? Math.min(options.getSheetRowLimit(), max) : max;
+	}
 
-				for(int c = rowEg.getFirstCellNum(); c <= rowEg.getLastCellNum(); c++) {
-					Cell cell = rowEg.getCell(c);
-					copyCell(cell, c, rowDes);
-					sheet.setColumnWidth(c, sheetEg.getColumnWidth(c));
+	/**
+	 * 第index个(从0开始)sheet或文件的名称，第一个不变，之后的加序号，如"明细(2)"
+	 *
+	 * @param maxLength 名称长度上限，超出时截短原名称
+	 */
+	static String partName(String name, int index, int maxLength) {
+		if (index == 0) {
+			return name;
+		}
+		String suffix = "(" + (index + 1) + ")";
+		return name.substring(0, Math.min(name.length(), maxLength - suffix.length())) + suffix;
+	}
+
+	/**
+	 * 按options.fileRowLimit和fileByteLimit把数据写成多个文件，依次打包为zip写入os。
+	 * 每个文件写完并释放工作簿后才开始下一个；文件名由filename去掉目录和.zip后缀得到，第二个起加序号，如"明细(2).xlsx"。
+	 * fileByteLimit按已写出的字节数判断，只对边写边输出的DIRECT引擎和CSV有效，SXSSF和xls在文件最后才写出。
+	 * 任一文件写出失败时放弃整个zip并抛出异常
+	 */
+	private static int writeParts(InputStream tplis, int exampleRow, List<String> heads, RowSource data, String filename, OutputStream os,
+								  ExcelWriteOptions options) throws IOException {
+		String name = new File(filename).getName();
+		if (name.endsWith(".zip")) {
+			name = name.substring(0, name.length() - ".zip".length());
+		}
+		int dot = name.lastIndexOf(".");
+		if (dot < 0) {
+			throw new RuntimeException("上次文件格式不正确（只支持xls、xlsx、csv和tsv）");
+		}
+		String base = name.substring(0, dot);
+		String ext = name.substring(dot);
+		int rows = 0;
+		CompiledTemplate tpl = CompiledTemplate.of(tplis);
+		ZipOutputStream zos = new ZipOutputStream(os);
+		PartOutput part = new PartOutput(zos);
+		SegmentedRows parts = new SegmentedRows(data, options.getFileRowLimit()).setByteLimit(() -> part.bytes, options.getFileByteLimit());
+		for(int i = 0; i == 0 || parts.hasMore(); i++) {
+			parts.reset();
+			part.bytes = 0;
+			String partFile = partName(base, i, Integer.MAX_VALUE) + ext;
+			zos.putNextEntry(new ZipEntry(partFile));
+			rows += writeFile(tpl.open(), exampleRow, heads, parts, partFile, part, options);
+			zos.closeEntry();
+		}
+		zos.finish();
+		return rows;
+	}
+
+	/**
+	 * 写入zip条目的单个文件：计数，忽略close以免关闭zip流
+	 */
+	private static final class PartOutput extends FilterOutputStream {
+		private long bytes;
+
+		PartOutput(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			bytes++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			bytes += len;
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+	/**
+	 * SXSSF先刷出剩余行，以便分别计量刷出和打包的耗时
+	 */
+	static void write(Workbook wb, OutputStream os, Meter meter) throws IOException {
+		if (wb instanceof SXSSFWorkbook) {
+			meter.flush((SXSSFWorkbook) wb);
+		}
+		wb.write(meter.count(os));
+		meter.phase(ExcelMetrics.Phase.ZIP_WRITE);
+	}
+
+	private static int writeDirect(InputStream tplis, int exampleRow, List<String> heads, RowSource data, OutputStream os,
+								   ExcelWriteOptions options, Meter meter) throws IOException {
+		int rows = 0;
+		CompiledTemplate compiled = CompiledTemplate.of(tplis);
+		XlsxTemplate tpl = heads == null ? compiled.xlsx(exampleRow) : XlsxTemplate.compile(compiled.open(), exampleRow, heads);
+		meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
+		XlsxDirectWriter writer = new XlsxDirectWriter(tpl, meter.count(os), options.getStringStrategy(), options.getSharedStringsLimit(),
+				sheetRows(options, XlsxDirectWriter.MAX_ROWS - tpl.firstRow));
+		writer.stats = meter.stats();
+		while(data.next()) {
+			data.write(writer);
+			rows++;
+		}
+		meter.phase(ExcelMetrics.Phase.ROW_FILL);
+		writer.finish();
+		meter.phase(ExcelMetrics.Phase.ZIP_WRITE);
+		meter.written(rows);
+		return rows;
+	}
+
+	/**
+	 * 模板(CSV文本或xlsx/xls)示例行之前的行作为表头，数据行的每个值按下标写出
+	 */
+	private static int writeCsv(InputStream tplis, int exampleRow, List<String> heads, RowSource data, String filename,
+								OutputStream os, Meter meter) throws IOException {
+		int rows = 0;
+		CsvTemplate tpl = CompiledTemplate.of(tplis).csv(exampleRow);
+		if (heads != null) {
+			tpl = tpl.withHeads(heads);
+		}
+		meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
+		CsvWriter writer = new CsvWriter(meter.count(os), CsvReader.delimiter(filename));
+		for (String[] head : tpl.rows) {
+			writer.writeRow(head);
+		}
+		meter.phase(ExcelMetrics.Phase.HEADER_COPY);
+		writer.stats = meter.stats();
+		while(data.next()) {
+			data.write(writer);
+			rows++;
+		}
+		meter.phase(ExcelMetrics.Phase.ROW_FILL);
+		writer.finish();
+		meter.phase(ExcelMetrics.Phase.FLUSH);
+		meter.written(rows);
+		return rows;
+	}
+
+	/**
+	 * @param temp 每写出temp.interval行检查一次临时文件配额
+	 */
+	private static int fill(Sheet sheet, int firstRow, RowPlan plan, RowSource data, AtomicBoolean failed,
+							ExcelTempStorage.Session temp) {
+		int r = firstRow;
+		while((failed == null || !failed.get()) && data.next()) {
+			data.write(sheet.createRow(r), plan);
+			r++;
+			if((r - firstRow) % temp.interval == 0) {
+				temp.check();
+			}
+		}
+		return r - firstRow;
+	}
+
+	public static int writePartitions(String tplPath, int exampleRow, Map<String, Iterator<Object[]>> partitions, String filepath, ExcelWriteOptions options) {
+		InputStream fis = null;
+		FileOutputStream fos = null;
+		int rows = 0;
+		try {
+			fis = openTemplate(tplPath, options);
+			fos = new  FileOutputStream(filepath);
+			rows = writePartitions(fis, exampleRow, null, partitions, filepath, fos, options);
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}finally {
+			if(fis != null) {
+				try {
+					fis.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+					LOGGER.error(e.getMessage());
 				}
 			}
-			Row row = null;
-			for(Object[] objs : data) {
-				row = sheet.createRow(r);
-				for(int i = 0; i < objs.length; i++) {
-					Cell eg = egCell.get(i);
-					Cell cell = row.createCell(i);
-					Object val = objs[i];
-					String comment = null;
-					int cellType = Cell.CELL_TYPE_STRING;
-					if(eg != null) {
-						cell.setCellType(eg.getCellType());
-						cell.setCellStyle(eg.getCellStyle());
-						Comment cc = eg.getCellComment();
-						cellType = cell.getCellType();
-						if(cc != null) {
-							comment = cc.getString().getString();
+			if(fos != null) {
+				try {
+					fos.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+					LOGGER.error(e.getMessage());
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * 按模板导出多个sheet，每个分区一个sheet，共用模板的样式表。
+	 * xlsx时各sheet在options.parallelism个线程上并行填充；xls(HSSF非线程安全)时依次填充。
+	 * 共享字符串表非线程安全，xlsx字符串总是内联写出，忽略options.stringStrategy。
+	 *
+	 * @param heads 从模板尾部开始替换的头部标题
+	 * @param partitions sheet名称到数据行，按迭代顺序生成sheet，各迭代器在各自的线程中读取
+	 * @return 所有sheet写出的数据行数
+	 */
+	public static int writePartitions(InputStream tplis, int exampleRow, List<String> heads, Map<String, Iterator<Object[]>> partitions, String filename, OutputStream os, ExcelWriteOptions options) {
+		String ext = filename.substring(filename.lastIndexOf("."));
+		Workbook wb = null;
+		XSSFWorkbook wbEg = null;
+		ExecutorService pool = null;
+		Meter meter = Meter.of(options.getMetrics());
+		ExcelTempStorage.Session temp = ExcelTempStorage.open(options);
+		int rows = 0;
+		try {
+			Sheet sheetEg;
+			if (".xls".equals(ext)) {
+				wb = new HSSFWorkbook(tplis);
+				sheetEg = wb.getSheetAt(0);
+			} else if (".xlsx".equals(ext)) {
+				wbEg = CompiledTemplate.of(tplis).workbook();
+				wb = new SXSSFWorkbook(wbEg, options.getWindowSize(), options.isCompressTempFiles());
+				sheetEg = wbEg.getSheetAt(0);
+			} else {
+				throw new RuntimeException("上次文件格式不正确（只支持xls和xlsx）");
+			}
+			meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
+			if(heads != null) {
+				replaceHeads(sheetEg, exampleRow, heads);
+			}
+			// 模板sheet最后删除，先改名避免与分区名冲突
+			wb.setSheetName(0, TPL_SHEET);
+			// 创建sheet和编译写出计划都会修改或读取共享的工作簿，只在当前线程进行
+			List<Sheet> sheets = new ArrayList<>();
+			List<RowPlan> plans = new ArrayList<>();
+			List<Iterator<Object[]>> iterators = new ArrayList<>();
+			for(Map.Entry<String, Iterator<Object[]>> entry : partitions.entrySet()) {
+				if(entry.getKey() == null) {
+					throw new RuntimeException("sheet名称不能为空");
+				}
+				Sheet sheet = wb.createSheet(entry.getKey());
+				copyHead(sheetEg, sheet, exampleRow);
+				sheets.add(sheet);
+				RowPlan plan = RowPlan.compile(sheetEg.getRow(exampleRow));
+				plan.stats = meter.stats();
+				plans.add(plan);
+				iterators.add(entry.getValue());
+			}
+			meter.phase(ExcelMetrics.Phase.HEADER_COPY);
+			int threads = Math.min(Math.max(options.getParallelism(), 1), sheets.size());
+			if(wbEg == null || threads <= 1) {
+				for(int i = 0; i < sheets.size(); i++) {
+					rows += fill(sheets.get(i), exampleRow, plans.get(i), RowSource.of(iterators.get(i)), null, temp);
+				}
+			} else {
+				pool = Workers.newPool("onceio-excel-writer", threads);
+				AtomicBoolean failed = new AtomicBoolean();
+				List<Future<Integer>> futures = new ArrayList<>();
+				for(int i = 0; i < sheets.size(); i++) {
+					Sheet sheet = sheets.get(i);
+					RowPlan plan = plans.get(i);
+					RowSource data = RowSource.of(iterators.get(i));
+					futures.add(Workers.submit(pool, () -> {
+						try {
+							return fill(sheet, exampleRow, plan, data, failed, temp);
+						} catch (RuntimeException | Error e) {
+							failed.set(true);
+							throw e;
 						}
-					}
-					if(eg == null || val == null) continue;
-					fillCellValue(cell,val,comment);
+					}));
+				}
+				List<Integer> counts = new ArrayList<>();
+				Workers.awaitAll(futures, counts);
+				for(int count : counts) {
+					rows += count;
 				}
-				r++;
 			}
+			meter.phase(ExcelMetrics.Phase.ROW_FILL);
 			wb.removeSheetAt(0);
-			wb.write(os);
+			write(wb, os, meter);
+			meter.written(rows);
 		} catch (IOException  e) {
 			e.printStackTrace();
 			LOGGER.error("Exception", e);
 		} finally {
+			if(pool != null) {
+				pool.shutdownNow();
+			}
+			if(wb instanceof SXSSFWorkbook) {
+				((SXSSFWorkbook) wb).dispose();
+			}
 			if(wb != null) {
 				try {
 					wb.close();
@@ -223,83 +646,124 @@ public class ExcelTplWriter {
 					LOGGER.error(e.getMessage());
 				}
 			}
+			temp.close();
 		}
+		return rows;
 	}
 
 	public static void  writeByColumn(InputStream tplis,final int startRow, final int exampleCol, List<Object[]> data, String filename, OutputStream os) {
+		writeByColumn(tplis, startRow, exampleCol, data.iterator(), filename, os, new ExcelWriteOptions());
+	}
+
+	/**
+	 * 按列写出：模板第startRow行起每行在exampleCol列有示例单元格，第j列数据的第i个值按第startRow+i行的示例单元格
+	 * 写到exampleCol+j列，startRow之前的行和exampleCol左侧的单元格从模板复制。
+	 * 各列先编码后按块转置写入临时文件，再逐行顺序写出，内存占用只与模板行数和options.columnBufferSize有关，与列数无关；
+	 * xlsx每写完一行即刷出。超出文件格式的最大列数(xlsx为16384，xls为256)时，其余列在复制了表头行和左侧单元格的新sheet中继续，
+	 * 新sheet名称如"明细(2)"
+	 *
+	 * @param columns 逐列拉取，每个元素为一列自startRow起各行的值，超出模板行数的值忽略，null表示空列
+	 * @return 写出的列数
+	 */
+	public static int writeByColumn(InputStream tplis, int startRow, int exampleCol, Iterator<Object[]> columns, String filename, OutputStream os, ExcelWriteOptions options) {
 		String ext = filename.substring(filename.lastIndexOf("."));
 		Workbook wb = null;
-		Workbook wbEg = null;
+		XSSFWorkbook wbEg = null;
+		ColumnSpill spill = null;
+		Meter meter = Meter.of(options.getMetrics());
+		ExcelTempStorage.Session temp = ExcelTempStorage.open(options);
+		int written = 0;
 		try {
+			Sheet sheetEg;
 			if (".xls".equals(ext)) {
 				wb = new HSSFWorkbook(tplis);
+				sheetEg = wb.getSheetAt(0);
 			} else if (".xlsx".equals(ext)) {
-				wbEg = new XSSFWorkbook(tplis);
-				wb = new SXSSFWorkbook((XSSFWorkbook)wbEg,100);
+				wbEg = CompiledTemplate.of(tplis).workbook();
+				wb = newStreamingWorkbook(wbEg, options);
+				sheetEg = wbEg.getSheetAt(0);
 			} else {
 				throw new RuntimeException("上次文件格式不正确（只支持xls和xlsx）");
 			}
-			Sheet sheetEg = wbEg.getSheetAt(0);
-			int r = startRow;
-			Map<Integer,Cell> egCell = new HashMap<>();
-			for(int c = startRow; c <= sheetEg.getLastRowNum(); c++) {
-				Row example = sheetEg.getRow(c);
-				Cell cell = example.getCell(exampleCol);
-				if(cell != null) {
-					egCell.put(c, cell);
+			meter.phase(ExcelMetrics.Phase.TEMPLATE_LOAD);
+			int rows = Math.max(sheetEg.getLastRowNum() - startRow + 1, 0);
+			int[] types = new int[rows];
+			CellStyle[] styles = new CellStyle[rows];
+			for(int i = 0; i < rows; i++) {
+				Row example = sheetEg.getRow(startRow + i);
+				Cell eg = example != null ? example.getCell(exampleCol) : null;
+				types[i] = eg != null ? eg.getCellType() : -1;
+				styles[i] = eg != null ? eg.getCellStyle() : null;
+			}
+			String sheetName = sheetEg.getSheetName();
+			int sheetColumns = wb.getSpreadsheetVersion().getMaxColumns() - exampleCol;
+			if(sheetColumns <= 0) {
+				throw new RuntimeException("示例列超出最大列数" + wb.getSpreadsheetVersion().getMaxColumns());
+			}
+
+			spill = new ColumnSpill(types, ExcelClassHelper.isDate1904(sheetEg.getWorkbook()), options.getColumnBufferSize());
+			while(columns.hasNext()) {
+				spill.add(columns.next());
+				if(spill.columns() % temp.interval == 0) {
+					temp.check();
 				}
 			}
-			Sheet sheet = wb.createSheet();
-			for(int i = 0; i < startRow; i++) {
-				Row rowEg = sheetEg.getRow(i);
-				if(rowEg != null) {
-					Row rowDes = sheet.createRow(i);
-					for(int c = rowEg.getFirstCellNum(); c <= rowEg.getLastCellNum(); c++) {
-						Cell cell = rowEg.getCell(c);
-						copyCell(cell,c,rowDes);
+			spill.finish();
+			// 每个sheet至多sheetColumns列，各sheet同时逐行写出
+			Sheet[] sheets = new Sheet[Math.max((spill.columns() + sheetColumns - 1) / sheetColumns, 1)];
+			for(int s = 0; s < sheets.length; s++) {
+				sheets[s] = wb.createSheet();
+				copyHead(sheetEg, sheets[s], startRow);
+			}
+			meter.phase(ExcelMetrics.Phase.HEADER_COPY);
+			Row[] targets = new Row[sheets.length];
+			for(int i = 0; i < rows; i++) {
+				Row example = sheetEg.getRow(startRow + i);
+				for(int s = 0; s < sheets.length; s++) {
+					Row row = sheets[s].createRow(startRow + i);
+					if(example != null) {
+						row.setHeight(example.getHeight());
+						//复制左侧
+						for(int c = 0; c < exampleCol; c++) {
+							copyCell(example.getCell(c), c, row);
+						}
 					}
+					targets[s] = row;
 				}
-			}
-			//复制左侧
-			for(int i = startRow; i <= sheetEg.getLastRowNum(); i++) {
-				Row example = sheetEg.getRow(i);
-				Row rowDes = sheet.createRow(i);
-				for(int c = 0; c < exampleCol; c++) {
-					Cell cell = example.getCell(c);
-					copyCell(cell, c, rowDes);
+				if(types[i] >= 0) {
+					spill.replay(i, targets, exampleCol, sheetColumns, types[i], styles[i]);
 				}
-			}
-			Row row = null;
-			for(int colNum = 0; colNum < data.size(); colNum++) {
-				Object[] objs = data.get(colNum);
-				if(objs == null) continue;
-				for (int i = 0; i < objs.length; i++) {
-					Cell eg = egCell.get(startRow + i);
-					row = sheet.getRow(startRow + i);
-					Cell cell = row.createCell(colNum + exampleCol);
-					cell.setCellStyle(eg.getCellStyle());
-					cell.setCellType(eg.getCellType());
-					Comment cc = eg.getCellComment();
-					String comment = null;
-					if (cc != null) {
-						comment = cc.getString().getString();
+				for(Sheet sheet : sheets) {
+					if(sheet instanceof SXSSFSheet) {
+						// 每行有全部列，不在内存中保留
+						((SXSSFSheet) sheet).flushRows(0);
 					}
-					Object val = objs[i];
-					if (val == null) continue;
-					fillCellValue(cell,val,comment);
 				}
-				r++;
+				temp.check();
 			}
+			written = spill.columns();
+			meter.phase(ExcelMetrics.Phase.ROW_FILL);
 			wb.removeSheetAt(0);
-			wb.write(os);
+			for(int s = 0; s < wb.getNumberOfSheets(); s++) {
+				wb.setSheetName(s, partName(sheetName, s, 31));
+			}
+			write(wb, os, meter);
+			meter.written(written);
 		} catch (IOException  e) {
 			e.printStackTrace();
 			LOGGER.error("Exception", e);
 		} finally {
+			if(spill != null) {
+				spill.close();
+			}
+			if(wb instanceof SXSSFWorkbook) {
+				((SXSSFWorkbook) wb).dispose();
+			}
 			if(wb != null) {
 				try {
 					wb.close();
 				} catch (IOException e) {
+					e.printStackTrace();
 					LOGGER.error(e.getMessage());
 				}
 			}
@@ -307,10 +771,13 @@ public class ExcelTplWriter {
 				try {
 					wbEg.close();
 				} catch (IOException e) {
+					e.printStackTrace();
 					LOGGER.error(e.getMessage());
 				}
 			}
+			temp.close();
 		}
+		return written;
 	}
 
 	private static Object parseNumber(double val, Class<?> type) {
@@ -0,0 +1,176 @@
+package top.onceio.excel.utils;
+
+/**
+ * 写出参数
+ */
+public class ExcelWriteOptions {
+	/**
+	 * SXSSF内存中保留的行数，超出的行刷到临时文件
+	 */
+	private int windowSize = ExcelClassHelper.DEFAULT_WINDOW_SIZE;
+	/**
+	 * SXSSF临时文件是否gzip压缩
+	 */
+	private boolean compressTempFiles;
+	/**
+	 * 多sheet导出时并行填充的线程数
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	/**
+	 * 按路径指定模板时使用的缓存，命中时复用编译后的模板，不再读取和解析模板文件；null表示每次读取模板文件
+	 */
+	private TemplateCache templateCache = TemplateCache.shared();
+	/**
+	 * xlsx数据行的写出方式
+	 */
+	private WriteEngine engine = WriteEngine.SXSSF;
+	/**
+	 * 字符串单元格的写出方式
+	 */
+	private StringStrategy stringStrategy = StringStrategy.INLINE;
+	/**
+	 * AUTO时每列写入共享字符串表的不同取值上限
+	 */
+	private int sharedStringsLimit = 256;
+	/**
+	 * 指标回调，null表示不采集
+	 */
+	private ExcelMetrics metrics;
+	/**
+	 * SXSSF临时文件的存储，null表示使用POI默认的临时目录且不限大小
+	 */
+	private ExcelTempStorage tempStorage;
+	/**
+	 * 按列写出时内存中累积的列数据大小(字节)，超出后转置写入临时文件
+	 */
+	private int columnBufferSize = 4 << 20;
+	/**
+	 * 每个sheet的数据行数上限，超出后在新sheet中继续，0表示到文件格式的最大行数为止
+	 */
+	private int sheetRowLimit;
+	/**
+	 * 每个文件的数据行数上限，超出后开始新文件，各文件打包为zip写出，0表示不限
+	 */
+	private long fileRowLimit;
+	/**
+	 * 每个文件的大小上限(字节)，达到后开始新文件，0表示不限
+	 */
+	private long fileByteLimit;
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public ExcelWriteOptions setWindowSize(int windowSize) {
+		this.windowSize = windowSize;
+		return this;
+	}
+
+	public boolean isCompressTempFiles() {
+		return compressTempFiles;
+	}
+
+	public ExcelWriteOptions setCompressTempFiles(boolean compressTempFiles) {
+		this.compressTempFiles = compressTempFiles;
+		return this;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public ExcelWriteOptions setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	public TemplateCache getTemplateCache() {
+		return templateCache;
+	}
+
+	public ExcelWriteOptions setTemplateCache(TemplateCache templateCache) {
+		this.templateCache = templateCache;
+		return this;
+	}
+
+	public WriteEngine getEngine() {
+		return engine;
+	}
+
+	public ExcelWriteOptions setEngine(WriteEngine engine) {
+		this.engine = engine;
+		return this;
+	}
+
+	public StringStrategy getStringStrategy() {
+		return stringStrategy;
+	}
+
+	public ExcelWriteOptions setStringStrategy(StringStrategy stringStrategy) {
+		this.stringStrategy = stringStrategy;
+		return this;
+	}
+
+	public int getSharedStringsLimit() {
+		return sharedStringsLimit;
+	}
+
+	public ExcelWriteOptions setSharedStringsLimit(int sharedStringsLimit) {
+		this.sharedStringsLimit = sharedStringsLimit;
+		return this;
+	}
+
+	public ExcelMetrics getMetrics() {
+		return metrics;
+	}
+
+	public ExcelWriteOptions setMetrics(ExcelMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	public ExcelTempStorage getTempStorage() {
+		return tempStorage;
+	}
+
+	public ExcelWriteOptions setTempStorage(ExcelTempStorage tempStorage) {
+		this.tempStorage = tempStorage;
+		return this;
+	}
+
+	public int getColumnBufferSize() {
+		return columnBufferSize;
+	}
+
+	public ExcelWriteOptions setColumnBufferSize(int columnBufferSize) {
+		this.columnBufferSize = columnBufferSize;
+		return this;
+	}
+
+	public int getSheetRowLimit() {
+		return sheetRowLimit;
+	}
+
+	public ExcelWriteOptions setSheetRowLimit(int sheetRowLimit) {
+		this.sheetRowLimit = sheetRowLimit;
+		return this;
+	}
+
+	public long getFileRowLimit() {
+		return fileRowLimit;
+	}
+
+	public ExcelWriteOptions setFileRowLimit(long fileRowLimit) {
+		this.fileRowLimit = fileRowLimit;
+		return this;
+	}
+
+	public long getFileByteLimit() {
+		return fileByteLimit;
+	}
+
+	public ExcelWriteOptions setFileByteLimit(long fileByteLimit) {
+		this.fileByteLimit = fileByteLimit;
+		return this;
+	}
+}
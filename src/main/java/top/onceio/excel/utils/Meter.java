@@ -0,0 +1,184 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.streaming.SheetDataWriter;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次导入或导出的计量，把各阶段耗时和汇总的计数交给{@link ExcelMetrics}；
+ * 未配置指标时使用{@link #DISABLED}，各方法直接返回
+ */
+final class Meter {
+	static final Meter DISABLED = new Meter(null);
+
+	private final ExcelMetrics metrics;
+	private final long start = System.nanoTime();
+	private long mark = start;
+	private final List<CellStats> stats = new ArrayList<>();
+	private Counting counting;
+
+	private Meter(ExcelMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	static Meter of(ExcelMetrics metrics) {
+		return metrics != null ? new Meter(metrics) : DISABLED;
+	}
+
+	boolean enabled() {
+		return metrics != null;
+	}
+
+	/**
+	 * 记录上一阶段结束以来的耗时
+	 */
+	void phase(ExcelMetrics.Phase phase) {
+		if (metrics != null) {
+			long now = System.nanoTime();
+			metrics.phase(phase, now - mark);
+			mark = now;
+		}
+	}
+
+	/**
+	 * 跳过不计入任何阶段的耗时
+	 */
+	void skip() {
+		if (metrics != null) {
+			mark = System.nanoTime();
+		}
+	}
+
+	/**
+	 * 新的线程本地计数，未启用时返回null
+	 */
+	CellStats stats() {
+		if (metrics == null) {
+			return null;
+		}
+		CellStats s = new CellStats();
+		synchronized (stats) {
+			stats.add(s);
+		}
+		return s;
+	}
+
+	/**
+	 * 启用时包装为计数的输出流，写出结束时汇报字节数
+	 */
+	OutputStream count(OutputStream os) {
+		if (metrics == null) {
+			return os;
+		}
+		counting = new Counting(os);
+		return counting;
+	}
+
+	/**
+	 * SXSSF的各sheet刷出剩余行并汇报临时文件大小
+	 */
+	void flush(SXSSFWorkbook wb) throws IOException {
+		if (metrics == null) {
+			return;
+		}
+		long bytes = 0;
+		for (Sheet sheet : wb) {
+			SXSSFSheet sx = (SXSSFSheet) sheet;
+			sx.flushRows();
+			bytes += tempFile(sx);
+		}
+		phase(ExcelMetrics.Phase.FLUSH);
+		metrics.tempFileBytes(bytes);
+	}
+
+	/**
+	 * 导出结束时汇报，行数以返回给调用方的为准
+	 */
+	void written(long rows) {
+		if (metrics != null) {
+			report();
+			metrics.rowsWritten(rows, System.nanoTime() - start);
+			if (counting != null) {
+				metrics.bytesWritten(counting.bytes);
+			}
+		}
+	}
+
+	/**
+	 * 导入结束时汇报，行数为各{@link CellStats}之和
+	 */
+	void read() {
+		if (metrics != null) {
+			metrics.rowsRead(report(), System.nanoTime() - start);
+		}
+	}
+
+	private long report() {
+		long rows = 0;
+		long failures = 0;
+		long[] cells = new long[CellStats.TYPES];
+		synchronized (stats) {
+			for (CellStats s : stats) {
+				rows += s.rows;
+				failures += s.failures;
+				for (int t = 0; t < cells.length; t++) {
+					cells[t] += s.cells[t];
+				}
+			}
+		}
+		for (int t = 0; t < cells.length; t++) {
+			if (cells[t] > 0) {
+				metrics.cells(t, cells[t]);
+			}
+		}
+		if (failures > 0) {
+			metrics.conversionFailures(failures);
+		}
+		return rows;
+	}
+
+	/**
+	 * SXSSF不公开临时文件，通过反射读取，POI版本不兼容时计为0
+	 */
+	private static long tempFile(SXSSFSheet sheet) {
+		try {
+			Field writerField = SXSSFSheet.class.getDeclaredField("_writer");
+			writerField.setAccessible(true);
+			Object writer = writerField.get(sheet);
+			Field fileField = SheetDataWriter.class.getDeclaredField("_fd");
+			fileField.setAccessible(true);
+			return ((File) fileField.get(writer)).length();
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return 0;
+		}
+	}
+
+	private static final class Counting extends FilterOutputStream {
+		private long bytes;
+
+		Counting(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			bytes++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			bytes += len;
+		}
+	}
+}
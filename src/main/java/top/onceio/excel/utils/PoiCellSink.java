@@ -0,0 +1,40 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * 写入POI单元格，逐单元格复用同一实例，非线程安全
+ */
+final class PoiCellSink implements CellSink {
+	private final boolean date1904;
+	Cell cell;
+
+	PoiCellSink(boolean date1904) {
+		this.date1904 = date1904;
+	}
+
+	@Override
+	public void setNumber(double val) {
+		cell.setCellValue(val);
+	}
+
+	@Override
+	public void setString(String val) {
+		cell.setCellValue(val);
+	}
+
+	@Override
+	public void setBoolean(boolean val) {
+		cell.setCellValue(val);
+	}
+
+	@Override
+	public void setFormula(String formula) {
+		cell.setCellFormula(formula);
+	}
+
+	@Override
+	public boolean isDate1904() {
+		return date1904;
+	}
+}
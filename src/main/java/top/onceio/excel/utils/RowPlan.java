@@ -0,0 +1,170 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * 示例行编译后的写出计划：按列号下标存放样式、单元格类型和选定的写值函数，
+ * 逐单元格写出时只需数组下标访问和一次类型确定的写入
+ */
+final class RowPlan {
+	private final CellStyle[] styles;
+	private final int[] types;
+	private final Writer[] writers;
+	private final PoiCellSink sink;
+	/**
+	 * 启用指标时的单元格计数
+	 */
+	CellStats stats;
+
+	private RowPlan(int width, boolean date1904) {
+		this.styles = new CellStyle[width];
+		this.types = new int[width];
+		this.writers = new Writer[width];
+		this.sink = new PoiCellSink(date1904);
+	}
+
+	/**
+	 * 返回的计划持有可复用的写入状态，非线程安全
+	 */
+	static RowPlan compile(Row example) {
+		int width = example != null ? Math.max(example.getLastCellNum(), 0) : 0;
+		boolean date1904 = example != null && ExcelClassHelper.isDate1904(example.getSheet().getWorkbook());
+		RowPlan plan = new RowPlan(width, date1904);
+		for (int c = 0; c < width; c++) {
+			Cell eg = example.getCell(c);
+			if (eg != null) {
+				plan.styles[c] = eg.getCellStyle();
+				plan.types[c] = eg.getCellType();
+				plan.writers[c] = writer(eg.getCellType());
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * 列数，即示例行最后一个单元格列号+1
+	 */
+	int width() {
+		return writers.length;
+	}
+
+	/**
+	 * 该列在示例行中是否有单元格
+	 */
+	boolean has(int col) {
+		return col < writers.length && writers[col] != null;
+	}
+
+	/**
+	 * 按示例单元格的类型和样式创建单元格并写入值，调用前需确认{@link #has(int)}
+	 */
+	void write(Row row, int col, Object val) {
+		Cell cell = create(row, col);
+		if (val != null) {
+			sink.cell = cell;
+			try {
+				writers[col].write(sink, val);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * 写入按列数据的第r行，不装箱，调用前需确认{@link #has(int)}
+	 */
+	void write(Row row, int col, ColumnarData.Vector vector, int r) {
+		Cell cell = create(row, col);
+		if (!vector.isNull(r)) {
+			sink.cell = cell;
+			try {
+				vector.write(sink, types[col], r);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+	}
+
+	private Cell create(Row row, int col) {
+		Cell cell = row.createCell(col, types[col]);
+		cell.setCellStyle(styles[col]);
+		if (stats != null) {
+			stats.cell(types[col]);
+		}
+		return cell;
+	}
+
+	private void failed() {
+		if (stats != null) {
+			stats.failures++;
+		}
+	}
+
+	/**
+	 * 单次写入单元格，用于未编译计划的场景
+	 */
+	static void write(Cell cell, Object val) {
+		PoiCellSink sink = new PoiCellSink(ExcelClassHelper.isDate1904(cell.getSheet().getWorkbook()));
+		sink.cell = cell;
+		writer(cell.getCellType()).write(sink, val);
+	}
+
+	interface Writer {
+		void write(CellSink sink, Object val);
+	}
+
+	/**
+	 * 字符串仍按数字解析；其它类型交给{@link CellValueWriters}，未注册的按toString解析
+	 */
+	private static final Writer NUMERIC = (sink, val) -> {
+		CellValueWriter<Object> writer = val instanceof String ? null : CellValueWriters.get(val.getClass());
+		if (writer != null) {
+			writer.write(sink, val);
+		} else {
+			sink.setNumber(Double.parseDouble(val.toString()));
+		}
+	};
+
+	private static final Writer STRING = (sink, val) -> sink.setString(val.toString());
+
+	private static final Writer BOOLEAN = (sink, val) -> sink.setBoolean(Boolean.parseBoolean(val.toString()));
+
+	private static final Writer FORMULA = (sink, val) -> sink.setFormula(val.toString());
+
+	private static final Writer BLANK = (sink, val) -> {
+		CellValueWriter<Object> writer = CellValueWriters.get(val.getClass());
+		if (writer != null) {
+			writer.write(sink, val);
+		} else {
+			sink.setString(val.toString());
+		}
+	};
+
+	private static final Writer IGNORE = (sink, val) -> {
+		//cell.setCellErrorValue(val);
+	};
+
+	/**
+	 * 按目标单元格类型选择写值函数
+	 */
+	static Writer writer(int cellType) {
+		switch (cellType) {
+			case Cell.CELL_TYPE_NUMERIC:
+				return NUMERIC;
+			case Cell.CELL_TYPE_STRING:
+				return STRING;
+			case Cell.CELL_TYPE_BOOLEAN:
+				return BOOLEAN;
+			case Cell.CELL_TYPE_FORMULA:
+				return FORMULA;
+			case Cell.CELL_TYPE_BLANK:
+				return BLANK;
+			default:
+				return IGNORE;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Row;
+
+import java.util.Iterator;
+
+/**
+ * 导出数据的行游标，由数据来源决定如何把当前行写入各种输出，非线程安全
+ */
+interface RowSource {
+
+	/**
+	 * 移到下一行
+	 *
+	 * @return 没有更多行时返回false
+	 */
+	boolean next();
+
+	/**
+	 * 按写出计划把当前行写入已创建的行
+	 */
+	void write(Row row, RowPlan plan);
+
+	void write(XlsxDirectWriter writer);
+
+	void write(CsvWriter writer);
+
+	static RowSource of(Iterator<Object[]> data) {
+		return new RowSource() {
+			private Object[] current;
+
+			@Override
+			public boolean next() {
+				if (!data.hasNext()) {
+					return false;
+				}
+				current = data.next();
+				return true;
+			}
+
+			@Override
+			public void write(Row row, RowPlan plan) {
+				int width = Math.min(current.length, plan.width());
+				for (int i = 0; i < width; i++) {
+					if (plan.has(i)) {
+						plan.write(row, i, current[i]);
+					}
+				}
+			}
+
+			@Override
+			public void write(XlsxDirectWriter writer) {
+				writer.writeRow(current);
+			}
+
+			@Override
+			public void write(CsvWriter writer) {
+				writer.writeRow(current);
+			}
+		};
+	}
+}
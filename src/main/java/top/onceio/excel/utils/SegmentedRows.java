@@ -0,0 +1,78 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Row;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 把数据行分段写出，用于sheet和文件的滚动：每段至多limit行，或在bytes达到byteLimit后结束，
+ * 此后{@link #next()}返回false，{@link #hasMore()}预读一行判断是否需要下一段，{@link #reset()}开始下一段
+ */
+final class SegmentedRows implements RowSource {
+	private final RowSource source;
+	private final long limit;
+	private LongSupplier bytes;
+	private long byteLimit = Long.MAX_VALUE;
+	private long count;
+	/**
+	 * 已预读但未写出的行
+	 */
+	private boolean pending;
+	private boolean exhausted;
+
+	SegmentedRows(RowSource source, long limit) {
+		this.source = source;
+		this.limit = limit > 0 ? limit : Long.MAX_VALUE;
+	}
+
+	/**
+	 * 已写出的字节数达到byteLimit后结束当前段，在每行写出前检查
+	 */
+	SegmentedRows setByteLimit(LongSupplier bytes, long byteLimit) {
+		this.bytes = bytes;
+		this.byteLimit = byteLimit > 0 ? byteLimit : Long.MAX_VALUE;
+		return this;
+	}
+
+	boolean hasMore() {
+		if (!pending && !exhausted) {
+			pending = source.next();
+			exhausted = !pending;
+		}
+		return pending;
+	}
+
+	void reset() {
+		count = 0;
+	}
+
+	@Override
+	public boolean next() {
+		if (count >= limit || (bytes != null && bytes.getAsLong() >= byteLimit)) {
+			return false;
+		}
+		if (pending) {
+			pending = false;
+		} else if (exhausted || !source.next()) {
+			exhausted = true;
+			return false;
+		}
+		count++;
+		return true;
+	}
+
+	@Override
+	public void write(Row row, RowPlan plan) {
+		source.write(row, plan);
+	}
+
+	@Override
+	public void write(XlsxDirectWriter writer) {
+		source.write(writer);
+	}
+
+	@Override
+	public void write(CsvWriter writer) {
+		source.write(writer);
+	}
+}
@@ -0,0 +1,31 @@
+package top.onceio.excel.utils;
+
+/**
+ * 流式解析回调，按行依次推送单元格的值，列号从0开始
+ */
+interface SheetRowHandler {
+
+	void startRow(int rowNum);
+
+	void numericCell(int col, double val);
+
+	void stringCell(int col, String val);
+
+	void booleanCell(int col, boolean val);
+
+	void endRow(int rowNum);
+
+	/**
+	 * 该列的值是否需要，不需要的列解析器可不构造其值
+	 */
+	default boolean accepts(int col) {
+		return true;
+	}
+
+	/**
+	 * 在endRow之后检查，返回true时不再需要该sheet余下的行，解析器可提前结束
+	 */
+	default boolean done() {
+		return false;
+	}
+}
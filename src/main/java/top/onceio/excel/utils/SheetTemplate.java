@@ -0,0 +1,336 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FontCharset;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFDataFormat;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbookPr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SXSSF导出用的预编译模板：第一个sheet的各行单元格、行高、列宽，以及这些单元格用到的样式和字体，
+ * 编译后不可变，可在多个线程间共享。每次导出由{@link #build()}经POI API重建出只含这个sheet的工作簿，不再解析模板文件；
+ * 导出只读取模板sheet的表头、示例行和列宽，再删除模板sheet，其余内容不影响结果
+ */
+final class SheetTemplate {
+	private final String sheetName;
+	private final boolean date1904;
+	private final RowSpec[] rows;
+	private final int[] widths;
+	private final boolean[] hidden;
+	private final StyleSpec[] styles;
+
+	private SheetTemplate(String sheetName, boolean date1904, RowSpec[] rows, int[] widths, boolean[] hidden, StyleSpec[] styles) {
+		this.sheetName = sheetName;
+		this.date1904 = date1904;
+		this.rows = rows;
+		this.widths = widths;
+		this.hidden = hidden;
+		this.styles = styles;
+	}
+
+	/**
+	 * 模板有多个sheet时其余sheet会保留在导出结果中，无法重建，返回null
+	 */
+	static SheetTemplate compile(XSSFWorkbook wb) {
+		if (wb.getNumberOfSheets() != 1) {
+			return null;
+		}
+		XSSFSheet sheet = wb.getSheetAt(0);
+		Map<Short, Integer> styleIndex = new HashMap<>();
+		List<StyleSpec> styles = new ArrayList<>();
+		// 样式0为默认样式，重建时修改新工作簿的样式0
+		styles.add(new StyleSpec(wb.getCellStyleAt((short) 0)));
+		styleIndex.put((short) 0, 0);
+		List<RowSpec> rows = new ArrayList<>();
+		int width = 0;
+		for (Row row : sheet) {
+			int last = Math.max(row.getLastCellNum(), 0);
+			width = Math.max(width, last);
+			List<CellSpec> cells = new ArrayList<>();
+			for (Cell cell : row) {
+				XSSFCellStyle style = (XSSFCellStyle) cell.getCellStyle();
+				Integer index = styleIndex.get(style.getIndex());
+				if (index == null) {
+					index = styles.size();
+					styles.add(new StyleSpec(style));
+					styleIndex.put(style.getIndex(), index);
+				}
+				cells.add(new CellSpec(cell, index));
+			}
+			rows.add(new RowSpec(row.getRowNum(), row.getHeight(), cells.toArray(new CellSpec[cells.size()])));
+		}
+		int[] widths = new int[width];
+		boolean[] hidden = new boolean[width];
+		for (int c = 0; c < width; c++) {
+			widths[c] = sheet.getColumnWidth(c);
+			hidden[c] = sheet.isColumnHidden(c);
+		}
+		return new SheetTemplate(sheet.getSheetName(), wb.isDate1904(), rows.toArray(new RowSpec[rows.size()]), widths, hidden,
+				styles.toArray(new StyleSpec[styles.size()]));
+	}
+
+	/**
+	 * 新建工作簿并按模板创建样式、行、单元格和列宽，返回的工作簿由调用方关闭
+	 */
+	XSSFWorkbook build() {
+		XSSFWorkbook wb = new XSSFWorkbook();
+		if (date1904) {
+			CTWorkbookPr pr = wb.getCTWorkbook().isSetWorkbookPr() ? wb.getCTWorkbook().getWorkbookPr() : wb.getCTWorkbook().addNewWorkbookPr();
+			pr.setDate1904(true);
+		}
+		XSSFDataFormat format = wb.createDataFormat();
+		XSSFCellStyle[] created = new XSSFCellStyle[styles.length];
+		for (int i = 0; i < styles.length; i++) {
+			if (i == 0) {
+				created[i] = wb.getCellStyleAt((short) 0);
+				styles[i].apply(created[i], wb.getFontAt((short) 0), format);
+			} else {
+				created[i] = wb.createCellStyle();
+				styles[i].apply(created[i], wb.createFont(), format);
+			}
+		}
+		XSSFSheet sheet = wb.createSheet(sheetName);
+		for (int c = 0; c < widths.length; c++) {
+			sheet.setColumnWidth(c, widths[c]);
+			if (hidden[c]) {
+				sheet.setColumnHidden(c, true);
+			}
+		}
+		for (RowSpec spec : rows) {
+			XSSFRow row = sheet.createRow(spec.index);
+			row.setHeight(spec.height);
+			for (CellSpec cell : spec.cells) {
+				cell.create(row, created[cell.style]);
+			}
+		}
+		return wb;
+	}
+
+	private static final class RowSpec {
+		final int index;
+		final short height;
+		final CellSpec[] cells;
+
+		RowSpec(int index, short height, CellSpec[] cells) {
+			this.index = index;
+			this.height = height;
+			this.cells = cells;
+		}
+	}
+
+	/**
+	 * 单元格的类型和值，值的处理与{@link ExcelTplWriter#copyCell(Cell, int, Row)}一致
+	 */
+	private static final class CellSpec {
+		final int col;
+		final int type;
+		final int style;
+		final Object value;
+
+		CellSpec(Cell cell, int style) {
+			this.col = cell.getColumnIndex();
+			this.type = cell.getCellType();
+			this.style = style;
+			switch (type) {
+				case Cell.CELL_TYPE_BOOLEAN:
+					value = cell.getBooleanCellValue();
+					break;
+				case Cell.CELL_TYPE_STRING:
+					value = cell.getStringCellValue();
+					break;
+				case Cell.CELL_TYPE_NUMERIC:
+					value = cell.getNumericCellValue();
+					break;
+				case Cell.CELL_TYPE_FORMULA:
+					value = cell.getCellFormula();
+					break;
+				case Cell.CELL_TYPE_ERROR:
+					value = cell.getErrorCellValue();
+					break;
+				default:
+					value = null;
+			}
+		}
+
+		void create(Row row, XSSFCellStyle cellStyle) {
+			Cell cell = row.createCell(col);
+			cell.setCellStyle(cellStyle);
+			switch (type) {
+				case Cell.CELL_TYPE_BOOLEAN:
+					cell.setCellValue((Boolean) value);
+					break;
+				case Cell.CELL_TYPE_STRING:
+					cell.setCellValue((String) value);
+					break;
+				case Cell.CELL_TYPE_NUMERIC:
+					cell.setCellValue((Double) value);
+					break;
+				case Cell.CELL_TYPE_FORMULA:
+					cell.setCellFormula((String) value);
+					break;
+				case Cell.CELL_TYPE_ERROR:
+					cell.setCellErrorValue((Byte) value);
+					break;
+				default:
+					cell.setCellType(type);
+			}
+		}
+	}
+
+	/**
+	 * 样式和字体的各项属性。主题颜色取解析后的RGB和色调，重建的工作簿没有主题，字体也不再引用主题字体
+	 */
+	private static final class StyleSpec {
+		final short alignment;
+		final short verticalAlignment;
+		final boolean wrapText;
+		final boolean shrinkToFit;
+		final short rotation;
+		final short indention;
+		final boolean locked;
+		final boolean hidden;
+		final String dataFormat;
+		final short fillPattern;
+		final ColorSpec fillForeground;
+		final ColorSpec fillBackground;
+		final short[] borders;
+		final ColorSpec[] borderColors;
+		final String fontName;
+		final short fontHeight;
+		final boolean bold;
+		final boolean italic;
+		final byte underline;
+		final boolean strikeout;
+		final short typeOffset;
+		final int charSet;
+		final int family;
+		final ColorSpec fontColor;
+
+		StyleSpec(XSSFCellStyle style) {
+			alignment = style.getAlignment();
+			verticalAlignment = style.getVerticalAlignment();
+			wrapText = style.getWrapText();
+			shrinkToFit = style.getShrinkToFit();
+			rotation = style.getRotation();
+			indention = style.getIndention();
+			locked = style.getLocked();
+			hidden = style.getHidden();
+			dataFormat = style.getDataFormatString();
+			fillPattern = style.getFillPattern();
+			fillForeground = ColorSpec.of(style.getFillForegroundXSSFColor());
+			fillBackground = ColorSpec.of(style.getFillBackgroundXSSFColor());
+			borders = new short[]{style.getBorderLeft(), style.getBorderRight(), style.getBorderTop(), style.getBorderBottom()};
+			borderColors = new ColorSpec[]{ColorSpec.of(style.getLeftBorderXSSFColor()), ColorSpec.of(style.getRightBorderXSSFColor()),
+					ColorSpec.of(style.getTopBorderXSSFColor()), ColorSpec.of(style.getBottomBorderXSSFColor())};
+			XSSFFont font = style.getFont();
+			fontName = font.getFontName();
+			fontHeight = font.getFontHeight();
+			bold = font.getBold();
+			italic = font.getItalic();
+			underline = font.getUnderline();
+			strikeout = font.getStrikeout();
+			typeOffset = font.getTypeOffset();
+			charSet = font.getCharSet();
+			family = font.getFamily();
+			fontColor = ColorSpec.of(font.getXSSFColor());
+		}
+
+		void apply(XSSFCellStyle style, XSSFFont font, XSSFDataFormat format) {
+			style.setAlignment(alignment);
+			style.setVerticalAlignment(verticalAlignment);
+			style.setWrapText(wrapText);
+			style.setShrinkToFit(shrinkToFit);
+			style.setRotation(rotation);
+			style.setIndention(indention);
+			style.setLocked(locked);
+			style.setHidden(hidden);
+			style.setDataFormat(format.getFormat(dataFormat));
+			style.setFillPattern(fillPattern);
+			if (fillForeground != null) {
+				style.setFillForegroundColor(fillForeground.create());
+			}
+			if (fillBackground != null) {
+				style.setFillBackgroundColor(fillBackground.create());
+			}
+			style.setBorderLeft(borders[0]);
+			style.setBorderRight(borders[1]);
+			style.setBorderTop(borders[2]);
+			style.setBorderBottom(borders[3]);
+			if (borderColors[0] != null) {
+				style.setLeftBorderColor(borderColors[0].create());
+			}
+			if (borderColors[1] != null) {
+				style.setRightBorderColor(borderColors[1].create());
+			}
+			if (borderColors[2] != null) {
+				style.setTopBorderColor(borderColors[2].create());
+			}
+			if (borderColors[3] != null) {
+				style.setBottomBorderColor(borderColors[3].create());
+			}
+			font.setFontName(fontName);
+			font.setFontHeight(fontHeight);
+			font.setBold(bold);
+			font.setItalic(italic);
+			font.setUnderline(underline);
+			font.setStrikeout(strikeout);
+			font.setTypeOffset(typeOffset);
+			if (FontCharset.valueOf(charSet) != null) {
+				font.setCharSet(charSet);
+			}
+			font.setFamily(family);
+			if (fontColor != null) {
+				font.setColor(fontColor.create());
+			}
+			style.setFont(font);
+		}
+	}
+
+	private static final class ColorSpec {
+		final byte[] argb;
+		final short indexed;
+		final double tint;
+
+		private ColorSpec(byte[] argb, short indexed, double tint) {
+			this.argb = argb;
+			this.indexed = indexed;
+			this.tint = tint;
+		}
+
+		static ColorSpec of(XSSFColor color) {
+			if (color == null || color.isAuto()) {
+				return null;
+			}
+			byte[] argb = color.getARGB();
+			if (argb == null && !color.isIndexed()) {
+				return null;
+			}
+			return new ColorSpec(argb, color.getIndexed(), color.hasTint() ? color.getTint() : 0);
+		}
+
+		XSSFColor create() {
+			XSSFColor color;
+			if (argb != null) {
+				color = new XSSFColor(argb.clone());
+			} else {
+				color = new XSSFColor();
+				color.setIndexed(indexed);
+			}
+			if (tint != 0) {
+				color.setTint(tint);
+			}
+			return color;
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package top.onceio.excel.utils;
+
+/**
+ * 字符串单元格的写出方式
+ */
+public enum StringStrategy {
+	/**
+	 * 内联字符串，不占用共享字符串表的内存，适合取值很多的列
+	 */
+	INLINE,
+	/**
+	 * 写入共享字符串表并去重，适合取值很少的列，如性别、状态码
+	 */
+	SHARED,
+	/**
+	 * 每列先写入共享字符串表，该列新增的不同取值超过{@link ExcelWriteOptions#getSharedStringsLimit()}后改为内联。
+	 * 仅{@link WriteEngine#DIRECT}支持，SXSSF按INLINE处理
+	 */
+	AUTO
+}
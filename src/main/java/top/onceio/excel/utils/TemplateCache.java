@@ -0,0 +1,100 @@
+package top.onceio.excel.utils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按路径缓存模板，文件修改时间或大小变化时重新读取，超出容量时淘汰最久未使用的模板，线程安全
+ */
+public final class TemplateCache {
+	public static final int DEFAULT_MAX_SIZE = 64;
+	private static final TemplateCache SHARED = new TemplateCache(DEFAULT_MAX_SIZE);
+
+	private final int maxSize;
+	private final Map<String, CompiledTemplate> templates;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public TemplateCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize必须大于0");
+		}
+		this.maxSize = maxSize;
+		this.templates = new LinkedHashMap<String, CompiledTemplate>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest) {
+				if (size() > TemplateCache.this.maxSize) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 进程内共享的默认缓存，写出参数未指定时使用
+	 */
+	public static TemplateCache shared() {
+		return SHARED;
+	}
+
+	CompiledTemplate get(String path) throws IOException {
+		File file = new File(path);
+		if (!file.isFile()) {
+			throw new FileNotFoundException(path);
+		}
+		String key = file.getCanonicalPath();
+		CompiledTemplate tpl;
+		synchronized (templates) {
+			tpl = templates.get(key);
+		}
+		if (tpl != null && tpl.matches(file)) {
+			hits.increment();
+			return tpl;
+		}
+		misses.increment();
+		// 在锁外读取，同一模板并发未命中时可能重复读取，结果相同
+		tpl = CompiledTemplate.compile(file);
+		synchronized (templates) {
+			templates.put(key, tpl);
+		}
+		return tpl;
+	}
+
+	public void invalidate(String path) throws IOException {
+		String key = new File(path).getCanonicalPath();
+		synchronized (templates) {
+			templates.remove(key);
+		}
+	}
+
+	public void clear() {
+		synchronized (templates) {
+			templates.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (templates) {
+			return templates.size();
+		}
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+}
@@ -0,0 +1,119 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.util.LocaleUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多sheet并行读写的线程池与任务工具
+ */
+final class Workers {
+	private static final AtomicInteger SEQ = new AtomicInteger();
+
+	private Workers() {
+	}
+
+	/**
+	 * 守护线程组成的固定大小线程池，用完需shutdown
+	 */
+	static ExecutorService newPool(String name, int threads) {
+		return Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, name + "-" + SEQ.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Java 21+返回每个任务一个虚拟线程的executor，否则同{@link #newPool}；并发数由调用方限制
+	 */
+	static ExecutorService newExecutor(String name, int threads) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return newPool(name, threads);
+		}
+	}
+
+	/**
+	 * 在executor上执行task。
+	 * POI的日期换算按线程取用户时区(LocaleUtil)，任务执行期间沿用提交方的设置，结束后恢复
+	 */
+	static <V> Future<V> submit(Executor executor, Callable<V> task) {
+		TimeZone tz = LocaleUtil.getUserTimeZone();
+		FutureTask<V> future = new FutureTask<>(() -> {
+			TimeZone prev = LocaleUtil.getUserTimeZone();
+			LocaleUtil.setUserTimeZone(tz);
+			try {
+				return task.call();
+			} finally {
+				LocaleUtil.setUserTimeZone(prev);
+			}
+		});
+		executor.execute(future);
+		return future;
+	}
+
+	/**
+	 * 等待全部任务结束并按提交顺序收集结果，有失败时抛出第一个真正的失败而非随之取消的任务
+	 */
+	static <V> void awaitAll(List<Future<V>> futures, List<V> results) {
+		Throwable failure = null;
+		RuntimeException cancelled = null;
+		for (Future<V> future : futures) {
+			try {
+				V v = future.get();
+				if (results != null) {
+					results.add(v);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Future<V> f : futures) {
+					f.cancel(true);
+				}
+				throw new RuntimeException("任务被中断", e);
+			} catch (CancellationException e) {
+				cancelled = cancelled != null ? cancelled : e;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof Cancelled) {
+					cancelled = cancelled != null ? cancelled : (Cancelled) cause;
+				} else if (failure == null) {
+					failure = cause;
+				}
+			}
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure instanceof IOException) {
+			throw new UncheckedIOException((IOException) failure);
+		} else if (failure != null) {
+			throw new RuntimeException(failure);
+		} else if (cancelled != null) {
+			throw cancelled;
+		}
+	}
+
+	/**
+	 * 其它任务失败后用于提前结束当前任务
+	 */
+	static final class Cancelled extends RuntimeException {
+		Cancelled() {
+			super("其它任务失败，已取消", null, false, false);
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package top.onceio.excel.utils;
+
+/**
+ * xlsx数据行的写出方式
+ */
+public enum WriteEngine {
+	/**
+	 * 通过SXSSF的Row/Cell对象写出，超出窗口的行先刷到临时文件
+	 */
+	SXSSF,
+	/**
+	 * 模板只经POI解析一次，数据行的XML直接写入输出的zip流，不创建单元格对象和临时文件
+	 */
+	DIRECT
+}
@@ -0,0 +1,269 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.MissingRecordAwareHSSFListener;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 基于HSSF事件模型的xls流式读取，只保留共享字符串表，
+ * 单元格按记录顺序推送给{@link SheetRowHandler}，公式取缓存的计算结果
+ */
+final class XlsStreamReader implements Closeable {
+	private final NPOIFSFileSystem fs;
+	private boolean date1904;
+
+	XlsStreamReader(File file) throws IOException {
+		fs = new NPOIFSFileSystem(file, true);
+	}
+
+	/**
+	 * 工作簿全局记录在各sheet之前，sheet开始后即可取得
+	 */
+	boolean isDate1904() {
+		return date1904;
+	}
+
+	/**
+	 * 按文件中的顺序读取各sheet
+	 *
+	 * @param handlers sheet名称到处理器，返回null时跳过该sheet
+	 * @param limit 读完limit个sheet后停止解析
+	 * @return 已读取的sheet名称
+	 */
+	List<String> read(Function<String, SheetRowHandler> handlers, int limit) throws IOException {
+		Listener listener = new Listener(handlers, limit);
+		HSSFRequest request = new HSSFRequest();
+		request.addListenerForAllRecords(new MissingRecordAwareHSSFListener(listener));
+		try {
+			new HSSFEventFactory().processWorkbookEvents(request, fs.getRoot());
+		} catch (Stop e) {
+			// 已读完所需的sheet
+		}
+		return listener.read;
+	}
+
+	@Override
+	public void close() throws IOException {
+		fs.close();
+	}
+
+	/**
+	 * 处理器中途结束后，当前记录的单元格交给它丢弃
+	 */
+	private static final SheetRowHandler SKIP = new SheetRowHandler() {
+		@Override
+		public void startRow(int rowNum) {
+		}
+
+		@Override
+		public void numericCell(int col, double val) {
+		}
+
+		@Override
+		public void stringCell(int col, String val) {
+		}
+
+		@Override
+		public void booleanCell(int col, boolean val) {
+		}
+
+		@Override
+		public void endRow(int rowNum) {
+		}
+
+		@Override
+		public boolean accepts(int col) {
+			return false;
+		}
+	};
+
+	private static final class Stop extends RuntimeException {
+		Stop() {
+			super(null, null, false, false);
+		}
+	}
+
+	private final class Listener implements HSSFListener {
+		private final Function<String, SheetRowHandler> handlers;
+		private final int limit;
+		private final List<String> read = new ArrayList<>();
+		private final List<BoundSheetRecord> sheets = new ArrayList<>();
+		private SSTRecord sst;
+		private int depth;
+		private int sheetIndex = -1;
+		private SheetRowHandler handler;
+		private int rowNum = -1;
+		private boolean pendingString;
+		private int pendingRow;
+		private int pendingCol;
+
+		Listener(Function<String, SheetRowHandler> handlers, int limit) {
+			this.handlers = handlers;
+			this.limit = limit;
+		}
+
+		@Override
+		public void processRecord(Record record) {
+			switch (record.getSid()) {
+				case BOFRecord.sid:
+					depth++;
+					if (depth == 1 && ((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK) {
+						startSheet(((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET);
+					}
+					break;
+				case EOFRecord.sid:
+					depth--;
+					if (depth == 0 && handler != null) {
+						endSheet();
+					}
+					break;
+				case BoundSheetRecord.sid:
+					sheets.add((BoundSheetRecord) record);
+					break;
+				case DateWindow1904Record.sid:
+					date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+					break;
+				case SSTRecord.sid:
+					sst = (SSTRecord) record;
+					break;
+				default:
+					if (handler != null && depth == 1) {
+						cell(record);
+					}
+			}
+		}
+
+		private void startSheet(boolean worksheet) {
+			if (sheetIndex < 0) {
+				// 按BOF位置排序后与sheet出现的顺序一致
+				Collections.sort(sheets, Comparator.comparingInt(BoundSheetRecord::getPositionOfBof));
+			}
+			sheetIndex++;
+			String name = sheetIndex < sheets.size() ? sheets.get(sheetIndex).getSheetname() : null;
+			handler = worksheet && name != null ? handlers.apply(name) : null;
+			if (handler != null) {
+				read.add(name);
+			}
+			rowNum = -1;
+			pendingString = false;
+		}
+
+		private void endSheet() {
+			if (rowNum >= 0) {
+				handler.endRow(rowNum);
+			}
+			handler = null;
+			if (read.size() >= limit) {
+				throw new Stop();
+			}
+		}
+
+		/**
+		 * 处理器已不需要余下的行时跳过该sheet余下的记录，已是最后一个要读的sheet时停止解析
+		 */
+		private void endRow(int row) {
+			handler.endRow(row);
+			if (handler.done()) {
+				handler = null;
+				if (read.size() >= limit) {
+					throw new Stop();
+				}
+			}
+		}
+
+		private void cell(Record record) {
+			switch (record.getSid()) {
+				case NumberRecord.sid:
+					NumberRecord number = (NumberRecord) record;
+					row(number.getRow()).numericCell(number.getColumn(), number.getValue());
+					break;
+				case LabelSSTRecord.sid:
+					LabelSSTRecord label = (LabelSSTRecord) record;
+					if (row(label.getRow()).accepts(label.getColumn())) {
+						handler.stringCell(label.getColumn(), sst.getString(label.getSSTIndex()).getString());
+					}
+					break;
+				case LabelRecord.sid:
+					LabelRecord text = (LabelRecord) record;
+					row(text.getRow()).stringCell(text.getColumn(), text.getValue());
+					break;
+				case BoolErrRecord.sid:
+					BoolErrRecord bool = (BoolErrRecord) record;
+					// 错误值与DOM读取一致，忽略
+					if (bool.isBoolean()) {
+						row(bool.getRow()).booleanCell(bool.getColumn(), bool.getBooleanValue());
+					}
+					break;
+				case FormulaRecord.sid:
+					formula((FormulaRecord) record);
+					break;
+				case StringRecord.sid:
+					if (pendingString) {
+						pendingString = false;
+						row(pendingRow).stringCell(pendingCol, ((StringRecord) record).getString());
+					}
+					break;
+				default:
+					if (record instanceof LastCellOfRowDummyRecord && ((LastCellOfRowDummyRecord) record).getRow() == rowNum) {
+						int row = rowNum;
+						rowNum = -1;
+						endRow(row);
+					}
+			}
+		}
+
+		private void formula(FormulaRecord formula) {
+			switch (formula.getCachedResultType()) {
+				case Cell.CELL_TYPE_NUMERIC:
+					row(formula.getRow()).numericCell(formula.getColumn(), formula.getValue());
+					break;
+				case Cell.CELL_TYPE_STRING:
+					if (formula.hasCachedResultString()) {
+						// 字符串结果在随后的StringRecord中
+						pendingString = true;
+						pendingRow = formula.getRow();
+						pendingCol = formula.getColumn();
+					} else {
+						row(formula.getRow()).stringCell(formula.getColumn(), "");
+					}
+					break;
+				case Cell.CELL_TYPE_BOOLEAN:
+					row(formula.getRow()).booleanCell(formula.getColumn(), formula.getCachedBooleanValue());
+					break;
+				default:
+			}
+		}
+
+		/**
+		 * 单元格所在行与当前行不同时结束当前行并开始新行
+		 */
+		private SheetRowHandler row(int row) {
+			if (row != rowNum) {
+				if (rowNum >= 0) {
+					endRow(rowNum);
+				}
+				rowNum = row;
+				if (handler == null) {
+					return SKIP;
+				}
+				handler.startRow(row);
+			}
+			return handler;
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package top.onceio.excel.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 向已有xlsx第一个sheet的末尾追加数据行，不加载工作簿：其余zip条目逐个原样复制，
+ * sheet XML按标签顺序扫描复制，记录最后一行的行号，在sheetData结束处经{@link XlsxDirectWriter}插入新行并去掉dimension。
+ * 新行的字符串内联写出，共享字符串表不变；样式序号取自模板示例行，要求原文件由同一模板导出
+ */
+final class XlsxAppender {
+	private static final Pattern RELATIONSHIP = Pattern.compile("<(\\w+:)?Relationship\\b[^>]*>");
+	private static final Pattern SHEET = Pattern.compile("<(\\w+:)?sheet\\b[^>]*>");
+	private static final Pattern ID = Pattern.compile("\\s\\w+:id=\"([^\"]*)\"");
+
+	private XlsxAppender() {
+	}
+
+	/**
+	 * @return 追加的行数
+	 */
+	static int append(File file, XlsxTemplate tpl, RowSource data, OutputStream os, CellStats stats) throws IOException {
+		try (ZipFile zip = new ZipFile(file)) {
+			String sheetPart = firstSheet(zip);
+			ZipOutputStream zos = new ZipOutputStream(os);
+			byte[] buf = new byte[64 * 1024];
+			int rows = -1;
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				zos.putNextEntry(new ZipEntry(entry.getName()));
+				try (InputStream is = zip.getInputStream(entry)) {
+					if (entry.getName().equals(sheetPart)) {
+						rows = new SheetCopy(tpl, data, stats).copy(is, zos);
+					} else {
+						int len;
+						while ((len = is.read(buf)) != -1) {
+							zos.write(buf, 0, len);
+						}
+					}
+				}
+				zos.closeEntry();
+			}
+			if (rows < 0) {
+				throw new IOException("文件中找不到" + sheetPart);
+			}
+			zos.finish();
+			return rows;
+		}
+	}
+
+	/**
+	 * 按_rels/.rels、workbook.xml和它的rels找到第一个sheet的条目名
+	 */
+	private static String firstSheet(ZipFile zip) throws IOException {
+		String workbook = null;
+		for (String rel : tags(RELATIONSHIP, read(zip, "_rels/.rels"))) {
+			if (attr(rel, "Type").endsWith("/officeDocument")) {
+				workbook = resolve("", attr(rel, "Target"));
+				break;
+			}
+		}
+		if (workbook == null) {
+			throw new IOException("不是xlsx文件");
+		}
+		Matcher sheet = SHEET.matcher(read(zip, workbook));
+		Matcher id;
+		if (!sheet.find() || !(id = ID.matcher(sheet.group())).find()) {
+			throw new IOException("工作簿中没有sheet");
+		}
+		int slash = workbook.lastIndexOf('/');
+		String dir = workbook.substring(0, slash + 1);
+		String rels = dir + "_rels/" + workbook.substring(slash + 1) + ".rels";
+		for (String rel : tags(RELATIONSHIP, read(zip, rels))) {
+			if (id.group(1).equals(attr(rel, "Id"))) {
+				return resolve(dir, attr(rel, "Target"));
+			}
+		}
+		throw new IOException("工作簿中找不到sheet " + id.group(1));
+	}
+
+	private static String read(ZipFile zip, String name) throws IOException {
+		ZipEntry entry = zip.getEntry(name);
+		if (entry == null) {
+			throw new IOException("文件中找不到" + name);
+		}
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (InputStream is = zip.getInputStream(entry)) {
+			byte[] buf = new byte[8 * 1024];
+			int len;
+			while ((len = is.read(buf)) != -1) {
+				bos.write(buf, 0, len);
+			}
+		}
+		return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static List<String> tags(Pattern pattern, String xml) {
+		List<String> tags = new ArrayList<>();
+		Matcher m = pattern.matcher(xml);
+		while (m.find()) {
+			tags.add(m.group());
+		}
+		return tags;
+	}
+
+	private static String attr(String tag, String name) {
+		Matcher m = Pattern.compile("\\s" + name + "=\"([^\"]*)\"").matcher(tag);
+		return m.find() ? m.group(1) : "";
+	}
+
+	private static String resolve(String dir, String target) {
+		if (target.startsWith("/")) {
+			return target.substring(1);
+		}
+		String path = dir + target;
+		// 处理"../"
+		int up;
+		while ((up = path.indexOf("/../")) > 0) {
+			int parent = path.lastIndexOf('/', up - 1);
+			path = path.substring(0, parent + 1) + path.substring(up + 4);
+		}
+		return path;
+	}
+
+	/**
+	 * sheet XML的逐标签复制：整块读入缓冲区后按下标查找'<'和'>'，标签外的文本和无需改写的标签按区间直接写出。
+	 * 合法的XML中属性值和文本里的'<'、'>'已转义，只需跳过引号内的内容；跨越缓冲区末尾的标签移到开头后继续读入
+	 */
+	private static final class SheetCopy {
+		private final XlsxTemplate tpl;
+		private final RowSource data;
+		private final CellStats stats;
+		private byte[] buf = new byte[64 * 1024];
+		private int lastRow;
+		private boolean inSheetData;
+		private int rows = -1;
+
+		SheetCopy(XlsxTemplate tpl, RowSource data, CellStats stats) {
+			this.tpl = tpl;
+			this.data = data;
+			this.stats = stats;
+		}
+
+		int copy(InputStream is, ZipOutputStream zos) throws IOException {
+			// zos在插入新行前需要先写出已缓冲的内容，不能被关闭
+			OutputStream out = new BufferedOutputStream(new FilterOutputStream(zos) {
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					zos.write(b, off, len);
+				}
+
+				@Override
+				public void close() {
+				}
+			}, 64 * 1024);
+			int start = 0;
+			int end = 0;
+			boolean eof = false;
+			while (true) {
+				int lt = indexOf(buf, (byte) '<', start, end);
+				if (lt < 0) {
+					out.write(buf, start, end - start);
+					start = end;
+				} else {
+					out.write(buf, start, lt - start);
+					start = lt;
+					int gt = tagEnd(buf, lt, end);
+					if (gt >= 0) {
+						handle(buf, lt, gt + 1 - lt, out, zos);
+						start = gt + 1;
+						continue;
+					}
+				}
+				if (eof) {
+					// 未结束的标签原样写出
+					out.write(buf, start, end - start);
+					break;
+				}
+				// 剩余的不完整标签移到开头，占满缓冲区时扩容
+				int rest = end - start;
+				if (rest == buf.length) {
+					buf = Arrays.copyOf(buf, buf.length * 2);
+				} else {
+					System.arraycopy(buf, start, buf, 0, rest);
+				}
+				start = 0;
+				end = rest;
+				int n = is.read(buf, end, buf.length - end);
+				if (n < 0) {
+					eof = true;
+				} else {
+					end += n;
+				}
+			}
+			out.flush();
+			if (rows < 0) {
+				throw new IOException("sheet缺少sheetData");
+			}
+			return rows;
+		}
+
+		private static int indexOf(byte[] b, byte c, int from, int to) {
+			for (int i = from; i < to; i++) {
+				if (b[i] == c) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * 从'<'所在的lt起查找标签结束的'>'，缓冲区内未结束时返回-1
+		 */
+		private static int tagEnd(byte[] b, int lt, int to) {
+			int quote = 0;
+			for (int i = lt + 1; i < to; i++) {
+				byte c = b[i];
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					}
+				} else if (c == '"' || c == '\'') {
+					quote = c;
+				} else if (c == '>') {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * 处理b中off起长len的标签，只改写dimension和sheetData，其余原样写出
+		 */
+		private void handle(byte[] b, int off, int len, OutputStream out, ZipOutputStream zos) throws IOException {
+			if (len < 3) {
+				out.write(b, off, len);
+				return;
+			}
+			int end = off + len;
+			int name = nameStart(b, off, end);
+			if (!inSheetData && is(b, name, end, "dimension")) {
+				return;
+			}
+			if (b[off + 1] == '/') {
+				if (inSheetData && is(b, name, end, "sheetData")) {
+					inSheetData = false;
+					appendRows(out, zos);
+				}
+			} else if (is(b, name, end, "sheetData")) {
+				String prefix = new String(b, off + 1, name - off - 1, StandardCharsets.US_ASCII);
+				checkPrefix(prefix);
+				if (b[end - 2] != '/') {
+					inSheetData = true;
+				} else {
+					out.write(("<" + prefix + "sheetData>").getBytes(StandardCharsets.US_ASCII));
+					appendRows(out, zos);
+					out.write(("</" + prefix + "sheetData>").getBytes(StandardCharsets.US_ASCII));
+					return;
+				}
+			} else if (inSheetData && is(b, name, end, "row")) {
+				int r = rowNum(b, off, end);
+				lastRow = r > 0 ? r : lastRow + 1;
+			}
+			out.write(b, off, len);
+		}
+
+		private void checkPrefix(String prefix) throws IOException {
+			if (!prefix.equals(tpl.prefix)) {
+				throw new IOException("sheet的命名空间前缀\"" + prefix + "\"与模板\"" + tpl.prefix + "\"不一致");
+			}
+		}
+
+		private void appendRows(OutputStream out, ZipOutputStream zos) throws IOException {
+			out.flush();
+			XlsxDirectWriter writer = new XlsxDirectWriter(tpl, zos, lastRow);
+			writer.stats = stats;
+			rows = 0;
+			while (data.next()) {
+				data.write(writer);
+				rows++;
+			}
+			writer.flushRows();
+		}
+
+		/**
+		 * 元素名(去掉命名空间前缀)在标签[off, end)中的起始位置，结束标签跳过'/'
+		 */
+		private static int nameStart(byte[] t, int off, int end) {
+			int start = off + 1 < end && t[off + 1] == '/' ? off + 2 : off + 1;
+			for (int i = start; i < end; i++) {
+				byte c = t[i];
+				if (c == ':') {
+					return i + 1;
+				}
+				if (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '/' || c == '>') {
+					break;
+				}
+			}
+			return start;
+		}
+
+		private static boolean is(byte[] t, int start, int end, String name) {
+			int nameEnd = start + name.length();
+			if (nameEnd >= end) {
+				return false;
+			}
+			for (int i = 0; i < name.length(); i++) {
+				if (t[start + i] != name.charAt(i)) {
+					return false;
+				}
+			}
+			byte c = t[nameEnd];
+			return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '/' || c == '>';
+		}
+
+		/**
+		 * row标签的r属性，没有时返回0
+		 */
+		private static int rowNum(byte[] t, int off, int end) {
+			for (int i = off + 1; i + 3 < end; i++) {
+				byte c = t[i - 1];
+				if ((c == ' ' || c == '\t' || c == '\r' || c == '\n') && t[i] == 'r' && t[i + 1] == '=' && (t[i + 2] == '"' || t[i + 2] == '\'')) {
+					int n = 0;
+					for (int j = i + 3; j < end && t[j] >= '0' && t[j] <= '9'; j++) {
+						n = n * 10 + (t[j] - '0');
+					}
+					return n;
+				}
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,498 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 按{@link XlsxTemplate}直接写出xlsx：模板的zip条目原样写出，数据行的row/c元素经可复用的缓冲区
+ * 按UTF-8编码后写入zip流，逐单元格不创建对象(非整数的数值除外)，也不使用临时文件。
+ * 字符串按{@link StringStrategy}内联或追加到模板的共享字符串表，共享字符串表在最后写出。
+ * 一个sheet写满sheetRows行后在新sheet中继续，新sheet复制模板的表头和列宽，工作簿、关系和内容类型在最后按sheet数写出，非线程安全
+ */
+final class XlsxDirectWriter implements CellSink {
+	static final int MAX_ROWS = 1048576;
+
+	private final XlsxTemplate tpl;
+	private final ZipOutputStream zos;
+	private final byte[] buf = new byte[64 * 1024];
+	private final byte[] rowOpen;
+	private final byte[] rowClose;
+	private final byte[] cellOpen;
+	private final byte[] valueOpen;
+	private final byte[] valueClose;
+	private final byte[] inlineOpen;
+	private final byte[] inlinePreserveOpen;
+	private final byte[] inlineClose;
+	private final byte[] formulaOpen;
+	private final byte[] formulaClose;
+	private final StringStrategy strategy;
+	private final int sharedStringsLimit;
+	/**
+	 * 新增的共享字符串到序号，INLINE时为null
+	 */
+	private final Map<String, Integer> shared;
+	private final List<String> sharedNew = new ArrayList<>();
+	/**
+	 * AUTO时各列新增的共享字符串数，超出上限的列改为内联
+	 */
+	private final int[] sharedPerColumn;
+	private final boolean[] inlineColumns;
+	private int sharedRefs;
+	/**
+	 * 每个sheet的数据行数，0表示不续写新sheet
+	 */
+	private final int sheetRows;
+	/**
+	 * 续写的sheet条目名
+	 */
+	private final List<String> nextSheets = new ArrayList<>();
+	private int pos;
+	private int rowNum;
+	private int col;
+	private boolean written;
+	/**
+	 * 启用指标时的单元格计数
+	 */
+	CellStats stats;
+
+	/**
+	 * @param sharedStringsLimit AUTO时每列写入共享字符串表的不同取值上限
+	 * @param sheetRows 每个sheet的数据行数，不超过xlsx的最大行数
+	 */
+	XlsxDirectWriter(XlsxTemplate tpl, OutputStream os, StringStrategy strategy, int sharedStringsLimit, int sheetRows) throws IOException {
+		this(tpl, new ZipOutputStream(os), strategy, sharedStringsLimit, tpl.firstRow,
+				tpl.workbookEntries != null ? Math.min(sheetRows, MAX_ROWS - tpl.firstRow) : 0);
+		for (int i = 0; i < tpl.entries.length; i++) {
+			if (i != tpl.sheetEntry && i != tpl.sstEntry && !isWorkbookEntry(i)) {
+				zos.putNextEntry(new ZipEntry(tpl.entryNames[i]));
+				zos.write(tpl.entries[i]);
+				zos.closeEntry();
+			}
+		}
+		zos.putNextEntry(new ZipEntry(tpl.entryNames[tpl.sheetEntry]));
+		zos.write(tpl.sheetHead);
+	}
+
+	/**
+	 * 追加模式：数据行写入zos中已打开的sheet条目，从lastRow(从1开始)的下一行开始，字符串总是内联，
+	 * 写完后调用{@link #flushRows()}，不写出sheet结尾和共享字符串表
+	 */
+	XlsxDirectWriter(XlsxTemplate tpl, ZipOutputStream zos, int lastRow) {
+		this(tpl, zos, StringStrategy.INLINE, 0, lastRow, 0);
+	}
+
+	private XlsxDirectWriter(XlsxTemplate tpl, ZipOutputStream zos, StringStrategy strategy, int sharedStringsLimit, int rowNum, int sheetRows) {
+		this.tpl = tpl;
+		this.sheetRows = sheetRows;
+		// 模板没有共享字符串表时只能内联
+		this.strategy = tpl.sstEntry >= 0 ? strategy : StringStrategy.INLINE;
+		this.sharedStringsLimit = sharedStringsLimit;
+		this.shared = this.strategy != StringStrategy.INLINE ? new HashMap<>() : null;
+		this.sharedPerColumn = new int[tpl.width()];
+		this.inlineColumns = new boolean[tpl.width()];
+		this.zos = zos;
+		this.rowNum = rowNum;
+		this.rowOpen = ascii("<" + tpl.prefix + "row r=\"");
+		this.rowClose = ascii("</" + tpl.prefix + "row>");
+		String p = tpl.prefix;
+		this.cellOpen = ascii("<" + p + "c r=\"");
+		this.valueOpen = ascii("><" + p + "v>");
+		this.valueClose = ascii("</" + p + "v></" + p + "c>");
+		this.inlineOpen = ascii("><" + p + "is><" + p + "t>");
+		this.inlinePreserveOpen = ascii("><" + p + "is><" + p + "t xml:space=\"preserve\">");
+		this.inlineClose = ascii("</" + p + "t></" + p + "is></" + p + "c>");
+		this.formulaOpen = ascii("><" + p + "f>");
+		this.formulaClose = ascii("</" + p + "f></" + p + "c>");
+	}
+
+	/**
+	 * 写出一行，values[i]对应第i列，示例行中没有单元格的列忽略
+	 */
+	void writeRow(Object[] values) {
+		startRow();
+		int width = Math.min(values.length, tpl.width());
+		for (int i = 0; i < width; i++) {
+			if (tpl.has(i)) {
+				write(i, values[i]);
+			}
+		}
+		endRow();
+	}
+
+	private boolean isWorkbookEntry(int i) {
+		if (tpl.workbookEntries != null) {
+			for (int entry : tpl.workbookEntries) {
+				if (entry == i) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	void startRow() {
+		if (sheetRows > 0 && rowNum - tpl.firstRow >= sheetRows) {
+			nextSheet();
+		} else if (rowNum >= MAX_ROWS) {
+			throw new RuntimeException("超出xlsx最大行数" + MAX_ROWS);
+		}
+		rowNum++;
+		put(rowOpen);
+		putInt(rowNum);
+		putAscii("\">");
+	}
+
+	/**
+	 * 按示例单元格的样式和类型写入，调用前需确认{@link XlsxTemplate#has(int)}，列号需递增
+	 */
+	void write(int col, Object val) {
+		begin(col);
+		if (val != null) {
+			try {
+				tpl.writers[col].write(this, val);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+		end(col);
+	}
+
+	/**
+	 * 写出按列数据的一行，未绑定的列同null
+	 */
+	void writeRow(ColumnarData data, int row) {
+		startRow();
+		int width = tpl.width();
+		for (int c = 0; c < width; c++) {
+			if (tpl.has(c)) {
+				ColumnarData.Vector vector = data.column(c);
+				if (vector != null) {
+					write(c, vector, row);
+				} else {
+					write(c, null);
+				}
+			}
+		}
+		endRow();
+	}
+
+	/**
+	 * 写出按列数据的第row行，不装箱，调用前需确认{@link XlsxTemplate#has(int)}，列号需递增
+	 */
+	void write(int col, ColumnarData.Vector vector, int row) {
+		begin(col);
+		if (!vector.isNull(row)) {
+			try {
+				vector.write(this, tpl.types[col], row);
+			} catch (RuntimeException e) {
+				failed();
+				throw e;
+			}
+		}
+		end(col);
+	}
+
+	private void begin(int col) {
+		this.col = col;
+		this.written = false;
+		if (stats != null) {
+			stats.cell(tpl.types[col]);
+		}
+	}
+
+	private void failed() {
+		if (stats != null) {
+			stats.failures++;
+		}
+	}
+
+	/**
+	 * 没有写入值时写出空单元格
+	 */
+	private void end(int col) {
+		if (!written) {
+			if (tpl.types[col] == Cell.CELL_TYPE_STRING) {
+				// 与SXSSF一致，字符串单元格写出空串
+				setString("");
+			} else {
+				openCell(null);
+				putAscii("/>");
+			}
+		}
+	}
+
+	void endRow() {
+		put(rowClose);
+	}
+
+	/**
+	 * 追加模式下写出缓冲区中的行
+	 */
+	void flushRows() {
+		flush();
+	}
+
+	/**
+	 * 结束当前sheet，在复制了表头的新sheet中继续
+	 */
+	private void nextSheet() {
+		flush();
+		try {
+			zos.write(nextSheets.isEmpty() ? tpl.sheetTail : tpl.nextSheetTail);
+			zos.closeEntry();
+			String part = tpl.nextSheetPart(nextSheets.size() + 1);
+			nextSheets.add(part);
+			zos.putNextEntry(new ZipEntry(part));
+			zos.write(tpl.nextSheetHead);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		rowNum = tpl.firstRow;
+	}
+
+	/**
+	 * 写出sheet结尾并结束zip，不关闭底层输出流
+	 */
+	void finish() throws IOException {
+		flush();
+		zos.write(nextSheets.isEmpty() ? tpl.sheetTail : tpl.nextSheetTail);
+		zos.closeEntry();
+		if (tpl.sstEntry >= 0) {
+			writeSharedStrings();
+		}
+		if (tpl.workbookEntries != null) {
+			byte[][] workbook = nextSheets.isEmpty() ? null : tpl.withSheets(nextSheets);
+			for (int i = 0; i < tpl.workbookEntries.length; i++) {
+				int entry = tpl.workbookEntries[i];
+				zos.putNextEntry(new ZipEntry(tpl.entryNames[entry]));
+				zos.write(workbook != null ? workbook[i] : tpl.entries[entry]);
+				zos.closeEntry();
+			}
+		}
+		zos.finish();
+	}
+
+	private void writeSharedStrings() throws IOException {
+		zos.putNextEntry(new ZipEntry(tpl.entryNames[tpl.sstEntry]));
+		zos.write(tpl.sstHead);
+		putAscii(" count=\"");
+		putLong((long) tpl.sstCount + sharedRefs);
+		putAscii("\" uniqueCount=\"");
+		putInt(tpl.sstUniqueCount + sharedNew.size());
+		putAscii("\">");
+		flush();
+		zos.write(tpl.sstBody);
+		byte[] open = ascii("<" + tpl.prefix + "si><" + tpl.prefix + "t>");
+		byte[] preserveOpen = ascii("<" + tpl.prefix + "si><" + tpl.prefix + "t xml:space=\"preserve\">");
+		byte[] close = ascii("</" + tpl.prefix + "t></" + tpl.prefix + "si>");
+		for (String str : sharedNew) {
+			put(needsPreserve(str) ? preserveOpen : open);
+			putEscaped(str);
+			put(close);
+		}
+		flush();
+		zos.write(tpl.sstTail);
+		zos.closeEntry();
+	}
+
+	@Override
+	public void setNumber(double val) {
+		openCell(null);
+		put(valueOpen);
+		if (val == (long) val && Math.abs(val) < 1e15) {
+			putLong((long) val);
+		} else {
+			putAscii(Double.toString(val));
+		}
+		put(valueClose);
+	}
+
+	@Override
+	public void setString(String val) {
+		if (shared != null && !inlineColumns[col]) {
+			Integer idx = shared.get(val);
+			if (idx == null && strategy == StringStrategy.AUTO && ++sharedPerColumn[col] > sharedStringsLimit) {
+				inlineColumns[col] = true;
+			} else {
+				if (idx == null) {
+					idx = tpl.sstUniqueCount + sharedNew.size();
+					shared.put(val, idx);
+					sharedNew.add(val);
+				}
+				sharedRefs++;
+				openCell("s");
+				put(valueOpen);
+				putInt(idx);
+				put(valueClose);
+				return;
+			}
+		}
+		openCell("inlineStr");
+		put(needsPreserve(val) ? inlinePreserveOpen : inlineOpen);
+		putEscaped(val);
+		put(inlineClose);
+	}
+
+	private static boolean needsPreserve(String val) {
+		return !val.isEmpty() && (val.charAt(0) <= ' ' || val.charAt(val.length() - 1) <= ' ');
+	}
+
+	@Override
+	public void setBoolean(boolean val) {
+		openCell("b");
+		put(valueOpen);
+		putAscii(val ? "1" : "0");
+		put(valueClose);
+	}
+
+	@Override
+	public void setFormula(String formula) {
+		openCell(null);
+		put(formulaOpen);
+		putEscaped(formula);
+		put(formulaClose);
+	}
+
+	@Override
+	public boolean isDate1904() {
+		return tpl.date1904;
+	}
+
+	private void openCell(String type) {
+		written = true;
+		put(cellOpen);
+		put(tpl.columnRefs[col]);
+		putInt(rowNum);
+		putAscii("\"");
+		int style = tpl.styles[col];
+		if (style != 0) {
+			putAscii(" s=\"");
+			putInt(style);
+			putAscii("\"");
+		}
+		if (type != null) {
+			putAscii(" t=\"");
+			putAscii(type);
+			putAscii("\"");
+		}
+	}
+
+	static byte[] ascii(String s) {
+		byte[] b = new byte[s.length()];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = (byte) s.charAt(i);
+		}
+		return b;
+	}
+
+	private void ensure(int n) {
+		if (pos + n > buf.length) {
+			flush();
+		}
+	}
+
+	private void flush() {
+		try {
+			zos.write(buf, 0, pos);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		pos = 0;
+	}
+
+	private void put(byte[] b) {
+		ensure(b.length);
+		System.arraycopy(b, 0, buf, pos, b.length);
+		pos += b.length;
+	}
+
+	private void putAscii(String s) {
+		int len = s.length();
+		ensure(len);
+		for (int i = 0; i < len; i++) {
+			buf[pos++] = (byte) s.charAt(i);
+		}
+	}
+
+	private void putInt(int v) {
+		putLong(v);
+	}
+
+	private void putLong(long v) {
+		ensure(20);
+		if (v < 0) {
+			buf[pos++] = '-';
+			if (v == Long.MIN_VALUE) {
+				putAscii("9223372036854775808");
+				return;
+			}
+			v = -v;
+		}
+		int start = pos;
+		do {
+			buf[pos++] = (byte) ('0' + v % 10);
+			v /= 10;
+		} while (v > 0);
+		for (int i = start, j = pos - 1; i < j; i++, j--) {
+			byte t = buf[i];
+			buf[i] = buf[j];
+			buf[j] = t;
+		}
+	}
+
+	/**
+	 * XML转义并编码为UTF-8，XML 1.0不允许的控制字符丢弃
+	 */
+	private void putEscaped(String s) {
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char ch = s.charAt(i);
+			ensure(6);
+			if (ch < 0x80) {
+				switch (ch) {
+					case '<':
+						putAscii("&lt;");
+						break;
+					case '>':
+						putAscii("&gt;");
+						break;
+					case '&':
+						putAscii("&amp;");
+						break;
+					case '"':
+						putAscii("&quot;");
+						break;
+					default:
+						if (ch >= 0x20 || ch == '\t' || ch == '\n' || ch == '\r') {
+							buf[pos++] = (byte) ch;
+						}
+				}
+			} else if (ch < 0x800) {
+				buf[pos++] = (byte) (0xc0 | (ch >> 6));
+				buf[pos++] = (byte) (0x80 | (ch & 0x3f));
+			} else if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(ch, s.charAt(++i));
+				buf[pos++] = (byte) (0xf0 | (cp >> 18));
+				buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+			} else if (Character.isSurrogate(ch) || ch == 0xfffe || ch == 0xffff) {
+				// 不成对的代理字符和非字符丢弃
+			} else {
+				buf[pos++] = (byte) (0xe0 | (ch >> 12));
+				buf[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+				buf[pos++] = (byte) (0x80 | (ch & 0x3f));
+			}
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基于OPC包和XSSF事件模型的xlsx流式读取，
+ * 只保留只读的共享字符串表，sheet内容通过SAX逐行推送给{@link SheetRowHandler}
+ */
+final class XlsxStreamReader implements Closeable {
+	private final OPCPackage pkg;
+	private final XSSFReader reader;
+	private final ReadOnlySharedStringsTable sst;
+	private final boolean date1904;
+
+	XlsxStreamReader(File file) throws IOException {
+		try {
+			pkg = OPCPackage.open(file, PackageAccess.READ);
+		} catch (OpenXML4JException e) {
+			throw new IOException(e);
+		}
+		try {
+			reader = new XSSFReader(pkg);
+			sst = new ReadOnlySharedStringsTable(pkg);
+			date1904 = readDate1904(reader.getWorkbookData());
+		} catch (OpenXML4JException | SAXException | RuntimeException e) {
+			pkg.revert();
+			throw new IOException(e);
+		}
+	}
+
+	boolean isDate1904() {
+		return date1904;
+	}
+
+	/**
+	 * 读取第一个sheet
+	 * @return sheet名称，没有sheet时返回null
+	 */
+	String readFirstSheet(SheetRowHandler handler) throws IOException {
+		try {
+			XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+			if (!it.hasNext()) {
+				return null;
+			}
+			InputStream sheet = it.next();
+			try {
+				parse(sheet, handler);
+			} finally {
+				sheet.close();
+			}
+			return it.getSheetName();
+		} catch (OpenXML4JException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * 按工作簿中的顺序列出sheet名称及其包部件
+	 */
+	Map<String, PackagePart> sheetParts() throws IOException {
+		Map<String, PackagePart> parts = new LinkedHashMap<>();
+		try {
+			XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+			while (it.hasNext()) {
+				it.next().close();
+				parts.put(it.getSheetName(), it.getSheetPart());
+			}
+		} catch (OpenXML4JException e) {
+			throw new IOException(e);
+		}
+		return parts;
+	}
+
+	/**
+	 * 读取指定sheet，共享字符串表只读，不同sheet可在多个线程中同时读取
+	 */
+	void readSheet(PackagePart part, SheetRowHandler handler) throws IOException {
+		InputStream sheet = part.getInputStream();
+		try {
+			parse(sheet, handler);
+		} finally {
+			sheet.close();
+		}
+	}
+
+	private void parse(InputStream sheet, SheetRowHandler handler) throws IOException {
+		try {
+			XMLReader xr = SAXHelper.newXMLReader();
+			xr.setContentHandler(new SheetHandler(handler));
+			xr.parse(new InputSource(sheet));
+		} catch (Stop e) {
+			// 处理器已不需要余下的行
+		} catch (SAXException | ParserConfigurationException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		pkg.revert();
+	}
+
+	private static boolean readDate1904(InputStream workbook) throws IOException, SAXException {
+		final boolean[] date1904 = {false};
+		try {
+			XMLReader xr = SAXHelper.newXMLReader();
+			xr.setContentHandler(new DefaultHandler() {
+				@Override
+				public void startElement(String uri, String localName, String qName, Attributes attrs) {
+					if ("workbookPr".equals(localName)) {
+						String v = attrs.getValue("date1904");
+						date1904[0] = "1".equals(v) || "true".equals(v);
+					}
+				}
+			});
+			xr.parse(new InputSource(workbook));
+		} catch (ParserConfigurationException e) {
+			throw new IOException(e);
+		} finally {
+			workbook.close();
+		}
+		return date1904[0];
+	}
+
+	/**
+	 * 将输入流落地为临时文件，避免OPCPackage.open(InputStream)把整个包解压到内存
+	 */
+	static File spill(InputStream is, String suffix) throws IOException {
+		File tmp = File.createTempFile("onceio-excel-", suffix);
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(tmp);
+			byte[] buf = new byte[64 * 1024];
+			int len;
+			while ((len = is.read(buf)) != -1) {
+				os.write(buf, 0, len);
+			}
+		} catch (IOException e) {
+			if (os != null) {
+				os.close();
+				os = null;
+			}
+			tmp.delete();
+			throw e;
+		} finally {
+			if (os != null) {
+				os.close();
+			}
+		}
+		return tmp;
+	}
+
+	/**
+	 * "B12" -> 1
+	 */
+	static int columnIndex(String ref) {
+		int col = 0;
+		for (int i = 0; i < ref.length(); i++) {
+			char ch = ref.charAt(i);
+			if (ch >= 'A' && ch <= 'Z') {
+				col = col * 26 + (ch - 'A' + 1);
+			} else {
+				break;
+			}
+		}
+		return col - 1;
+	}
+
+	private static final class Stop extends SAXException {
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private final class SheetHandler extends DefaultHandler {
+		private final SheetRowHandler handler;
+		private final StringBuilder value = new StringBuilder(64);
+		private int rowNum = -1;
+		private int col = -1;
+		private String cellType;
+		private boolean hasValue;
+		/**
+		 * 处理器不需要的列不收集文本也不解码
+		 */
+		private boolean wanted;
+		private boolean collecting;
+		private boolean inInlineStr;
+		private boolean inPhonetic;
+
+		SheetHandler(SheetRowHandler handler) {
+			this.handler = handler;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attrs) {
+			switch (localName) {
+				case "row":
+					String r = attrs.getValue("r");
+					rowNum = r != null ? Integer.parseInt(r) - 1 : rowNum + 1;
+					col = -1;
+					handler.startRow(rowNum);
+					break;
+				case "c":
+					String ref = attrs.getValue("r");
+					col = ref != null ? columnIndex(ref) : col + 1;
+					cellType = attrs.getValue("t");
+					value.setLength(0);
+					hasValue = false;
+					wanted = handler.accepts(col);
+					break;
+				case "v":
+					collecting = wanted;
+					hasValue = true;
+					break;
+				case "is":
+					inInlineStr = true;
+					hasValue = true;
+					break;
+				case "rPh":
+					inPhonetic = true;
+					break;
+				case "t":
+					collecting = wanted && inInlineStr && !inPhonetic;
+					break;
+				default:
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (collecting) {
+				value.append(ch, start, length);
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			switch (localName) {
+				case "v":
+				case "t":
+					collecting = false;
+					break;
+				case "rPh":
+					inPhonetic = false;
+					break;
+				case "is":
+					inInlineStr = false;
+					break;
+				case "c":
+					if (hasValue && wanted) {
+						emit();
+					}
+					break;
+				case "row":
+					handler.endRow(rowNum);
+					if (handler.done()) {
+						throw new Stop();
+					}
+					break;
+				default:
+			}
+		}
+
+		private void emit() {
+			if (cellType == null || "n".equals(cellType)) {
+				if (value.length() > 0) {
+					handler.numericCell(col, Double.parseDouble(value.toString()));
+				}
+			} else if ("s".equals(cellType)) {
+				int idx = 0;
+				for (int i = 0; i < value.length(); i++) {
+					idx = idx * 10 + (value.charAt(i) - '0');
+				}
+				handler.stringCell(col, sst.getEntryAt(idx));
+			} else if ("inlineStr".equals(cellType) || "str".equals(cellType) || "d".equals(cellType)) {
+				handler.stringCell(col, value.toString());
+			} else if ("b".equals(cellType)) {
+				handler.booleanCell(col, value.length() > 0 && (value.charAt(0) == '1' || value.charAt(0) == 't'));
+			}
+			// "e" 错误值与DOM读取一致，忽略
+		}
+	}
+}
@@ -0,0 +1,373 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 供{@link XlsxDirectWriter}使用的已编译xlsx模板，不可变，可在多个线程的导出间共享。
+ * 编译时通过POI删除示例行及其后的行，之后第一个sheet的XML在sheetData结束处拆成头尾两段，
+ * 共享字符串表拆成可追加的三段，其余zip条目原样保存；示例行编译为按列号存放的样式序号和写值函数。
+ * 同时准备续写sheet的XML：与数据sheet相同，但去掉选中状态和依赖sheet关系文件的元素(图片、批注、表格、超链接等)
+ */
+final class XlsxTemplate {
+	/**
+	 * 示例行为第一个非空行的下一行，即第一个非空行为表头
+	 */
+	static final int AFTER_FIRST_ROW = -1;
+	private static final Pattern EMPTY_SHEET_DATA = Pattern.compile("<(\\w+:)?sheetData\\s*/>");
+	private static final Pattern SHEET_DATA_END = Pattern.compile("</(\\w+:)?sheetData>");
+	private static final Pattern DIMENSION = Pattern.compile("<(\\w+:)?dimension[^>]*/>");
+	private static final Pattern SST_START = Pattern.compile("<(\\w+:)?sst\\b([^>]*?)(/?)>");
+	private static final Pattern SST_COUNTS = Pattern.compile("\\s(count|uniqueCount)=\"(\\d*)\"");
+	private static final Pattern TAB_SELECTED = Pattern.compile("\\stabSelected=\"[^\"]*\"");
+	private static final Pattern RELATED_EMPTY = Pattern.compile("<(\\w+:)?(drawing|legacyDrawing|legacyDrawingHF|picture|tableParts)\\b[^>]*/>");
+	private static final Pattern RELATED = Pattern.compile("<(\\w+:)?(hyperlinks|oleObjects|controls|tableParts)\\b[^>]*>.*?</(\\w+:)?\\2>", Pattern.DOTALL);
+	private static final Pattern RELATION_ID = Pattern.compile("\\s\\w+:id=\"[^\"]*\"");
+	private static final Pattern FIRST_SHEET = Pattern.compile("<(\\w+:)?sheet\\b[^>]*/>");
+	private static final Pattern SHEET_ID = Pattern.compile("\\ssheetId=\"(\\d+)\"");
+	private static final Pattern SHEET_RELATION_PREFIX = Pattern.compile("\\s(\\w+):id=\"");
+	private static final Pattern RELATIONSHIP_ID = Pattern.compile("\\sId=\"rId(\\d+)\"");
+	private static final Pattern RELATIONSHIPS_END = Pattern.compile("</(\\w+:)?Relationships>");
+	private static final Pattern TYPES_END = Pattern.compile("</(\\w+:)?Types>");
+
+	final String[] entryNames;
+	final byte[][] entries;
+	/**
+	 * 数据sheet在entries中的下标
+	 */
+	final int sheetEntry;
+	/**
+	 * sheet XML 中表头行之后、数据行之前的部分
+	 */
+	final byte[] sheetHead;
+	final byte[] sheetTail;
+	/**
+	 * 续写sheet的XML头尾
+	 */
+	final byte[] nextSheetHead;
+	final byte[] nextSheetTail;
+	final String sheetName;
+	/**
+	 * 工作簿、工作簿关系和内容类型在entries中的下标，续写sheet时需要改写，缺少任一个时为null
+	 */
+	final int[] workbookEntries;
+	/**
+	 * sheet XML 元素的命名空间前缀，如"x:"，无前缀时为""
+	 */
+	final String prefix;
+	/**
+	 * 共享字符串表在entries中的下标，模板中没有时为-1
+	 */
+	final int sstEntry;
+	/**
+	 * 共享字符串表XML：根元素开始标签去掉计数属性和'>'之前的部分、已有的si元素、根元素结束标签起的部分
+	 */
+	final byte[] sstHead;
+	final byte[] sstBody;
+	final byte[] sstTail;
+	final int sstCount;
+	final int sstUniqueCount;
+	final int firstRow;
+	final boolean date1904;
+	final int[] styles;
+	final int[] types;
+	final RowPlan.Writer[] writers;
+	/**
+	 * 列号到列名的ASCII字节，如1 -> "B"
+	 */
+	final byte[][] columnRefs;
+	private final Map<String, Integer> header;
+
+	private XlsxTemplate(String[] entryNames, byte[][] entries, int sheetEntry, String sheetHead, String sheetTail, String sheetName,
+						 int[] workbookEntries, String prefix, int sstEntry, byte[][] sst, int sstCount, int sstUniqueCount, int firstRow,
+						 boolean date1904, int[] styles, int[] types, RowPlan.Writer[] writers, Map<String, Integer> header) {
+		this.entryNames = entryNames;
+		this.entries = entries;
+		this.sheetEntry = sheetEntry;
+		this.sheetHead = sheetHead.getBytes(StandardCharsets.UTF_8);
+		this.sheetTail = sheetTail.getBytes(StandardCharsets.UTF_8);
+		this.nextSheetHead = nextSheet(sheetHead).getBytes(StandardCharsets.UTF_8);
+		this.nextSheetTail = nextSheet(sheetTail).getBytes(StandardCharsets.UTF_8);
+		this.sheetName = sheetName;
+		this.workbookEntries = workbookEntries;
+		this.prefix = prefix;
+		this.sstEntry = sstEntry;
+		this.sstHead = sst != null ? sst[0] : null;
+		this.sstBody = sst != null ? sst[1] : null;
+		this.sstTail = sst != null ? sst[2] : null;
+		this.sstCount = sstCount;
+		this.sstUniqueCount = sstUniqueCount;
+		this.firstRow = firstRow;
+		this.date1904 = date1904;
+		this.styles = styles;
+		this.types = types;
+		this.writers = writers;
+		this.header = header;
+		this.columnRefs = new byte[writers.length][];
+		for (int c = 0; c < writers.length; c++) {
+			StringBuilder ref = new StringBuilder(3);
+			for (int n = c + 1; n > 0; n = (n - 1) / 26) {
+				ref.insert(0, (char) ('A' + (n - 1) % 26));
+			}
+			columnRefs[c] = XlsxDirectWriter.ascii(ref.toString());
+		}
+	}
+
+	/**
+	 * @param exampleRow 示例行行号，之前的行原样保留，或{@link #AFTER_FIRST_ROW}
+	 * @param heads 从表头行尾部开始替换的标题，可为null
+	 */
+	static XlsxTemplate compile(InputStream tpl, int exampleRow, List<String> heads) throws IOException {
+		XSSFWorkbook wb = new XSSFWorkbook(tpl);
+		String sheetPart;
+		String sheetName;
+		String workbookPart;
+		String sstPart = null;
+		int sstUniqueCount = 0;
+		boolean date1904;
+		int width;
+		int[] styles;
+		int[] types;
+		RowPlan.Writer[] writers;
+		Map<String, Integer> header = new HashMap<>();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try {
+			XSSFSheet sheet = wb.getSheetAt(0);
+			if (exampleRow == AFTER_FIRST_ROW) {
+				exampleRow = sheet.getFirstRowNum() + 1;
+			}
+			if (heads != null) {
+				ExcelTplWriter.replaceHeads(sheet, exampleRow, heads);
+			}
+			Row head = exampleRow > 0 ? sheet.getRow(exampleRow - 1) : null;
+			if (head != null) {
+				for (Cell cell : head) {
+					if (cell.getCellType() == Cell.CELL_TYPE_STRING) {
+						header.put(cell.getStringCellValue(), cell.getColumnIndex());
+					}
+				}
+			}
+			Row example = sheet.getRow(exampleRow);
+			width = example != null ? Math.max(example.getLastCellNum(), 0) : 0;
+			styles = new int[width];
+			types = new int[width];
+			writers = new RowPlan.Writer[width];
+			for (int c = 0; c < width; c++) {
+				Cell eg = example.getCell(c);
+				if (eg != null) {
+					styles[c] = eg.getCellStyle().getIndex() & 0xffff;
+					types[c] = eg.getCellType();
+					writers[c] = RowPlan.writer(eg.getCellType());
+				}
+			}
+			for (int r = sheet.getLastRowNum(); r >= exampleRow; r--) {
+				Row row = sheet.getRow(r);
+				if (row == null) continue;
+				for (Cell cell : row) {
+					cell.removeCellComment();
+					if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
+						// 同时从calcChain中移除
+						cell.setCellType(Cell.CELL_TYPE_BLANK);
+					}
+				}
+				sheet.removeRow(row);
+			}
+			date1904 = wb.isDate1904();
+			sheetPart = sheet.getPackagePart().getPartName().getName().substring(1);
+			sheetName = sheet.getSheetName();
+			workbookPart = wb.getPackagePart().getPartName().getName().substring(1);
+			if (wb.getSharedStringSource() != null) {
+				sstPart = wb.getSharedStringSource().getPackagePart().getPartName().getName().substring(1);
+				sstUniqueCount = wb.getSharedStringSource().getUniqueCount();
+			}
+			wb.write(bos);
+		} finally {
+			wb.close();
+		}
+
+		List<String> names = new ArrayList<>();
+		List<byte[]> contents = new ArrayList<>();
+		ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		try {
+			ZipEntry entry;
+			byte[] buf = new byte[64 * 1024];
+			while ((entry = zis.getNextEntry()) != null) {
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				int len;
+				while ((len = zis.read(buf)) != -1) {
+					content.write(buf, 0, len);
+				}
+				names.add(entry.getName());
+				contents.add(content.toByteArray());
+			}
+		} finally {
+			zis.close();
+		}
+		int sheetEntry = names.indexOf(sheetPart);
+		if (sheetEntry < 0) {
+			throw new IOException("模板中找不到" + sheetPart);
+		}
+		String xml = new String(contents.get(sheetEntry), StandardCharsets.UTF_8);
+		xml = DIMENSION.matcher(xml).replaceFirst("");
+		Matcher empty = EMPTY_SHEET_DATA.matcher(xml);
+		if (empty.find()) {
+			String p = empty.group(1) != null ? empty.group(1) : "";
+			xml = xml.substring(0, empty.start()) + "<" + p + "sheetData></" + p + "sheetData>" + xml.substring(empty.end());
+		}
+		Matcher end = SHEET_DATA_END.matcher(xml);
+		if (!end.find()) {
+			throw new IOException("模板sheet缺少sheetData");
+		}
+		String prefix = end.group(1) != null ? end.group(1) : "";
+		int sstEntry = sstPart != null ? names.indexOf(sstPart) : -1;
+		byte[][] sst = null;
+		int sstCount = sstUniqueCount;
+		if (sstEntry >= 0) {
+			String sstXml = new String(contents.get(sstEntry), StandardCharsets.UTF_8);
+			Matcher start = SST_START.matcher(sstXml);
+			if (!start.find()) {
+				throw new IOException("模板共享字符串表格式错误");
+			}
+			String p = start.group(1) != null ? start.group(1) : "";
+			String attrs = start.group(2);
+			Matcher counts = SST_COUNTS.matcher(attrs);
+			while (counts.find()) {
+				if ("count".equals(counts.group(1)) && !counts.group(2).isEmpty()) {
+					sstCount = Integer.parseInt(counts.group(2));
+				}
+			}
+			String head = sstXml.substring(0, start.start()) + "<" + p + "sst" + SST_COUNTS.matcher(attrs).replaceAll("");
+			String body;
+			String tail;
+			if (!start.group(3).isEmpty()) {
+				body = "";
+				tail = "</" + p + "sst>" + sstXml.substring(start.end());
+			} else {
+				int close = sstXml.lastIndexOf("</" + p + "sst>");
+				body = sstXml.substring(start.end(), close);
+				tail = sstXml.substring(close);
+			}
+			sst = new byte[][]{head.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8), tail.getBytes(StandardCharsets.UTF_8)};
+		}
+		int slash = workbookPart.lastIndexOf('/');
+		int[] workbookEntries = {names.indexOf(workbookPart),
+				names.indexOf(workbookPart.substring(0, slash + 1) + "_rels/" + workbookPart.substring(slash + 1) + ".rels"),
+				names.indexOf("[Content_Types].xml")};
+		if (workbookEntries[0] < 0 || workbookEntries[1] < 0 || workbookEntries[2] < 0) {
+			workbookEntries = null;
+		}
+		return new XlsxTemplate(names.toArray(new String[names.size()]), contents.toArray(new byte[contents.size()][]), sheetEntry,
+				xml.substring(0, end.start()), xml.substring(end.start()), sheetName, workbookEntries,
+				prefix, sstEntry, sst, sstCount, sstUniqueCount, exampleRow, date1904, styles, types, writers, Collections.unmodifiableMap(header));
+	}
+
+	private static String nextSheet(String xml) {
+		xml = TAB_SELECTED.matcher(xml).replaceAll("");
+		xml = RELATED_EMPTY.matcher(xml).replaceAll("");
+		xml = RELATED.matcher(xml).replaceAll("");
+		return RELATION_ID.matcher(xml).replaceAll("");
+	}
+
+	/**
+	 * 续写sheet时按parts(第二个sheet起的条目名)改写工作簿、工作簿关系和内容类型，
+	 * 新sheet紧跟在数据sheet之后，按{@link ExcelTplWriter#partName}命名
+	 *
+	 * @return 与{@link #workbookEntries}对应的新内容
+	 */
+	byte[][] withSheets(List<String> parts) throws IOException {
+		String workbook = new String(entries[workbookEntries[0]], StandardCharsets.UTF_8);
+		String rels = new String(entries[workbookEntries[1]], StandardCharsets.UTF_8);
+		String types = new String(entries[workbookEntries[2]], StandardCharsets.UTF_8);
+		Matcher first = FIRST_SHEET.matcher(workbook);
+		Matcher relsEnd = RELATIONSHIPS_END.matcher(rels);
+		Matcher typesEnd = TYPES_END.matcher(types);
+		Matcher relationPrefix;
+		if (!first.find() || !(relationPrefix = SHEET_RELATION_PREFIX.matcher(first.group())).find() || !relsEnd.find() || !typesEnd.find()) {
+			throw new IOException("模板工作簿格式错误");
+		}
+		String p = first.group(1) != null ? first.group(1) : "";
+		String relsPrefix = relsEnd.group(1) != null ? relsEnd.group(1) : "";
+		String typesPrefix = typesEnd.group(1) != null ? typesEnd.group(1) : "";
+		int sheetId = max(SHEET_ID, workbook);
+		int relId = max(RELATIONSHIP_ID, rels);
+		StringBuilder sheets = new StringBuilder();
+		StringBuilder relations = new StringBuilder();
+		StringBuilder overrides = new StringBuilder();
+		for (int i = 0; i < parts.size(); i++) {
+			String id = "rId" + (relId + i + 1);
+			sheets.append('<').append(p).append("sheet name=\"").append(escape(ExcelTplWriter.partName(sheetName, i + 1, 31)))
+					.append("\" sheetId=\"").append(sheetId + i + 1).append("\" ").append(relationPrefix.group(1)).append(":id=\"")
+					.append(id).append("\"/>");
+			relations.append('<').append(relsPrefix).append("Relationship Id=\"").append(id)
+					.append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"/")
+					.append(parts.get(i)).append("\"/>");
+			overrides.append('<').append(typesPrefix).append("Override PartName=\"/").append(parts.get(i))
+					.append("\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+		}
+		return new byte[][]{
+				(workbook.substring(0, first.end()) + sheets + workbook.substring(first.end())).getBytes(StandardCharsets.UTF_8),
+				(rels.substring(0, relsEnd.start()) + relations + rels.substring(relsEnd.start())).getBytes(StandardCharsets.UTF_8),
+				(types.substring(0, typesEnd.start()) + overrides + types.substring(typesEnd.start())).getBytes(StandardCharsets.UTF_8)};
+	}
+
+	/**
+	 * 第index个(从1开始)续写sheet的条目名，与数据sheet同目录且不与已有条目重名
+	 */
+	String nextSheetPart(int index) {
+		String dir = entryNames[sheetEntry].substring(0, entryNames[sheetEntry].lastIndexOf('/') + 1);
+		int max = 0;
+		for (String name : entryNames) {
+			if (name.startsWith(dir + "sheet") && name.endsWith(".xml")) {
+				String n = name.substring(dir.length() + "sheet".length(), name.length() - ".xml".length());
+				if (!n.isEmpty() && n.chars().allMatch(Character::isDigit)) {
+					max = Math.max(max, Integer.parseInt(n));
+				}
+			}
+		}
+		return dir + "sheet" + (max + index) + ".xml";
+	}
+
+	private static int max(Pattern pattern, String xml) {
+		int max = 0;
+		Matcher m = pattern.matcher(xml);
+		while (m.find()) {
+			max = Math.max(max, Integer.parseInt(m.group(1)));
+		}
+		return max;
+	}
+
+	private static String escape(String s) {
+		return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	/**
+	 * 列数，即示例行最后一个单元格列号+1
+	 */
+	int width() {
+		return writers.length;
+	}
+
+	boolean has(int col) {
+		return col < writers.length && writers[col] != null;
+	}
+
+	/**
+	 * 示例行上一行的字符串标题到列号
+	 */
+	Map<String, Integer> header() {
+		return header;
+	}
+}
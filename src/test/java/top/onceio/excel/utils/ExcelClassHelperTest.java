@@ -0,0 +1,337 @@
+package top.onceio.excel.utils;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.LocaleUtil;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.Stream;
+
+public class ExcelClassHelperTest {
+
+	private static final String FILE = "target/read-class-tpl.xlsx";
+	private static final String SHEETS_FILE = "target/read-class-sheets.xlsx";
+	private static final String XLS_FILE = "target/read-class.xls";
+	private static final int ROWS = 200;
+	private static Map<String, String> alias = new HashMap<>();
+
+	@BeforeClass
+	public static void prepare() {
+		alias.put("姓名", "name");
+		alias.put("生日", "birthday");
+		alias.put("性别", "gender");
+		alias.put("薪水", "salary");
+		List<UserInfo> data = new ArrayList<>();
+		for (int i = 0; i < ROWS; i++) {
+			UserInfo ui = new UserInfo();
+			ui.setName("name:" + i);
+			ui.setBirthday(new Date(1500000000000L - i * 86400000L));
+			ui.setGender(i % 2 == 0 ? "男" : "女");
+			ui.setSalary(new BigDecimal((i + 1) * 5000));
+			data.add(ui);
+		}
+		new File("target").mkdirs();
+		Assert.assertEquals(ROWS, ExcelClassHelper.write(UserInfo.class, data, alias, "src/test/resources/class-tpl.xlsx", FILE, 50));
+
+		Map<String, Iterator<Object[]>> partitions = new LinkedHashMap<>();
+		for (int m = 1; m <= 6; m++) {
+			List<Object[]> rows = new ArrayList<>();
+			for (int i = 0; i < ROWS; i++) {
+				rows.add(new Object[]{null, m + "月:" + i, "男", new Date(), i});
+			}
+			partitions.put(m + "月", rows.iterator());
+		}
+		writeXls();
+		Assert.assertEquals(6 * ROWS, ExcelTplWriter.writePartitions("src/test/resources/class-tpl.xlsx", 1, partitions, SHEETS_FILE,
+				new ExcelWriteOptions()));
+	}
+
+	private static void writeXls() {
+		try (HSSFWorkbook wb = new HSSFWorkbook(); OutputStream os = new FileOutputStream(XLS_FILE)) {
+			CellStyle dateStyle = wb.createCellStyle();
+			dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+			for (String name : Arrays.asList("一月", "二月")) {
+				Sheet sheet = wb.createSheet(name);
+				Row head = sheet.createRow(0);
+				head.createCell(0).setCellValue("姓名");
+				head.createCell(1).setCellValue("性别");
+				head.createCell(2).setCellValue("生日");
+				head.createCell(3).setCellValue("薪水");
+				for (int i = 1; i <= ROWS; i++) {
+					Row row = sheet.createRow(i);
+					row.createCell(0).setCellValue(name + ":" + i);
+					row.createCell(1).setCellFormula(i % 2 == 0 ? "\"男\"" : "\"女\"");
+					Cell birthday = row.createCell(2);
+					birthday.setCellValue(new Date(1500000000000L - i * 86400000L));
+					birthday.setCellStyle(dateStyle);
+					if (i % 10 != 0) {
+						row.createCell(3).setCellFormula(i + "*1000");
+					}
+				}
+			}
+			wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+			wb.write(os);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Test
+	public void streamingXlsReadMatchesWorkbookRead() {
+		List<UserInfo> events = ExcelClassHelper.read(UserInfo.class, alias, XLS_FILE);
+		List<UserInfo> dom = ExcelClassHelper.read(UserInfo.class, alias, XLS_FILE, new ExcelReadOptions().setStreaming(false));
+		Assert.assertEquals(ROWS, events.size());
+		Assert.assertEquals(ROWS, dom.size());
+		for (int i = 0; i < ROWS; i++) {
+			UserInfo a = events.get(i);
+			UserInfo b = dom.get(i);
+			Assert.assertEquals("一月:" + (i + 1), a.getName());
+			Assert.assertEquals(b.getGender(), a.getGender());
+			Assert.assertEquals(b.getBirthday(), a.getBirthday());
+			Assert.assertEquals(b.getSalary(), a.getSalary());
+		}
+		Assert.assertEquals("女", events.get(0).getGender());
+		Assert.assertNull(events.get(9).getSalary());
+
+		Map<String, List<UserInfo>> sheets = ExcelClassHelper.readSheets(UserInfo.class, alias, XLS_FILE,
+				new ExcelReadOptions().setSheets(Collections.singleton("二月")));
+		Assert.assertEquals(Collections.singleton("二月"), sheets.keySet());
+		Assert.assertEquals("二月:" + ROWS, sheets.get("二月").get(ROWS - 1).getName());
+	}
+
+	@Test
+	public void streamingReadMatchesWorkbookRead() {
+		List<UserInfo> sax = ExcelClassHelper.read(UserInfo.class, alias, FILE);
+		List<UserInfo> dom = ExcelClassHelper.read(UserInfo.class, alias, FILE, new ExcelReadOptions().setStreaming(false));
+		Assert.assertEquals(ROWS, sax.size());
+		Assert.assertEquals(ROWS, dom.size());
+		for (int i = 0; i < ROWS; i++) {
+			UserInfo a = sax.get(i);
+			UserInfo b = dom.get(i);
+			Assert.assertEquals("name:" + i, a.getName());
+			Assert.assertEquals(b.getName(), a.getName());
+			Assert.assertEquals(b.getGender(), a.getGender());
+			Assert.assertEquals(b.getBirthday(), a.getBirthday());
+			Assert.assertEquals(b.getSalary(), a.getSalary());
+		}
+	}
+
+	@Test
+	public void batchAndIteratorRead() throws IOException {
+		List<Integer> sizes = new ArrayList<>();
+		try (InputStream is = new FileInputStream(FILE)) {
+			ExcelClassHelper.read(UserInfo.class, alias, FILE, is, batch -> sizes.add(batch.size()), 64);
+		}
+		Assert.assertEquals(Arrays.asList(64, 64, 64, 8), sizes);
+
+		try (InputStream is = new FileInputStream(FILE);
+			 Stream<UserInfo> stream = ExcelClassHelper.stream(UserInfo.class, alias, FILE, is)) {
+			Assert.assertEquals(ROWS, stream.count());
+		}
+
+		try (InputStream is = new FileInputStream(FILE);
+			 CloseableIterator<UserInfo> it = ExcelClassHelper.iterator(UserInfo.class, alias, FILE, is,
+					 new ExcelReadOptions(), 10)) {
+			Assert.assertEquals("name:0", it.next().getName());
+			Assert.assertEquals("name:1", it.next().getName());
+		}
+
+		// 后台解析线程沿用调用方的POI用户时区
+		TimeZone prev = LocaleUtil.getUserTimeZone();
+		LocaleUtil.setUserTimeZone(TimeZone.getTimeZone("Pacific/Kiritimati"));
+		try (InputStream is = new FileInputStream(FILE);
+			 CloseableIterator<UserInfo> it = ExcelClassHelper.iterator(UserInfo.class, alias, FILE, is,
+					 new ExcelReadOptions(), 10)) {
+			Assert.assertEquals(ExcelClassHelper.read(UserInfo.class, alias, FILE).get(0).getBirthday(), it.next().getBirthday());
+		} finally {
+			LocaleUtil.setUserTimeZone(prev);
+		}
+	}
+
+	@Test
+	public void projectionAndRowRange() {
+		for (String file : Arrays.asList(FILE, XLS_FILE, "target/read-class-range.csv")) {
+			if (file.endsWith(".csv")) {
+				ExcelClassHelper.write(UserInfo.class, ExcelClassHelper.read(UserInfo.class, alias, FILE), alias,
+						"src/test/resources/class-tpl.xlsx", file);
+			}
+			String prefix = XLS_FILE.equals(file) ? "一月:" : "name:";
+			int first = XLS_FILE.equals(file) ? 1 : 0;
+			for (boolean streaming : Arrays.asList(true, false)) {
+				List<UserInfo> page = ExcelClassHelper.read(UserInfo.class, alias, file, new ExcelReadOptions().setStreaming(streaming)
+						.setColumns(Arrays.asList("name", "性别")).setOffset(10).setLimit(5));
+				Assert.assertEquals(5, page.size());
+				Assert.assertEquals(prefix + (first + 10), page.get(0).getName());
+				Assert.assertEquals(prefix + (first + 14), page.get(4).getName());
+				Assert.assertNotNull(page.get(0).getGender());
+				Assert.assertNull(page.get(0).getSalary());
+				Assert.assertNull(page.get(0).getBirthday());
+
+				List<UserInfo> head = ExcelClassHelper.read(UserInfo.class, alias, file, new ExcelReadOptions().setStreaming(streaming)
+						.setStopWhen(o -> ((UserInfo) o).getName().equals(prefix + (first + 20))));
+				Assert.assertEquals(20, head.size());
+			}
+		}
+		Map<String, List<UserInfo>> sheets = ExcelClassHelper.readSheets(UserInfo.class, alias, SHEETS_FILE,
+				new ExcelReadOptions().setLimit(3));
+		Assert.assertEquals(6, sheets.size());
+		Assert.assertEquals("6月:2", sheets.get("6月").get(2).getName());
+		Assert.assertEquals(3, ExcelClassHelper.readSheets(UserInfo.class, alias, XLS_FILE, new ExcelReadOptions().setLimit(3))
+				.get("二月").size());
+	}
+
+	@Test
+	public void columnarRead() throws IOException {
+		for (double serial : new double[]{1, 59.5, 60, 61, 25569.25, 42930.999994, 45000.123456}) {
+			for (boolean date1904 : new boolean[]{false, true}) {
+				Assert.assertEquals(DateUtil.getJavaDate(serial, date1904).getTime(), ExcelDates.epochMillis(serial, date1904));
+			}
+		}
+		for (String file : Arrays.asList(FILE, XLS_FILE)) {
+			List<UserInfo> beans = ExcelClassHelper.read(UserInfo.class, alias, file);
+			ColumnarSheet sheet = ExcelClassHelper.readColumnar(UserInfo.class, alias, file, new ExcelReadOptions());
+			Assert.assertEquals(beans.size(), sheet.getRowCount());
+			Assert.assertEquals(4, sheet.getColumns().size());
+			ColumnarSheet.StringColumn name = sheet.getStringColumn("name");
+			ColumnarSheet.StringColumn gender = sheet.getStringColumn("gender");
+			ColumnarSheet.DateColumn birthday = sheet.getDateColumn("birthday");
+			ColumnarSheet.DoubleColumn salary = sheet.getDoubleColumn("salary");
+			Assert.assertEquals(2, gender.dictionary().length);
+			for (int i = 0; i < beans.size(); i++) {
+				UserInfo ui = beans.get(i);
+				Assert.assertEquals(ui.getName(), name.get(i));
+				Assert.assertEquals(ui.getGender(), gender.get(i));
+				Assert.assertEquals(ui.getBirthday().getTime(), birthday.get(i));
+				if (ui.getSalary() == null) {
+					Assert.assertTrue(salary.isNull(i));
+				} else {
+					Assert.assertEquals(ui.getSalary().doubleValue(), salary.get(i), 0.0);
+				}
+			}
+		}
+		ColumnarSheet page = ExcelClassHelper.readColumnar(UserInfo.class, alias, FILE,
+				new ExcelReadOptions().setColumns(Arrays.asList("name", "薪水")).setOffset(10).setLimit(5));
+		Assert.assertEquals(5, page.getRowCount());
+		Assert.assertEquals(Arrays.asList("name", "salary"), new ArrayList<>(page.getColumns().keySet()));
+		Assert.assertEquals("name:14", page.getStringColumn("name").get(4));
+		Assert.assertEquals(5, page.getDoubleColumn("salary").values().length);
+
+		String blanks = "target/read-class-blanks.xlsx";
+		try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream os = new FileOutputStream(blanks)) {
+			Sheet sheet = wb.createSheet();
+			Row head = sheet.createRow(0);
+			head.createCell(0).setCellValue("姓名");
+			head.createCell(1).setCellValue("性别");
+			head.createCell(2).setCellValue("薪水");
+			for (int i = 1; i <= 3; i++) {
+				Row row = sheet.createRow(i);
+				if (i == 2) {
+					row.createCell(0).setCellValue("a");
+				}
+				row.createCell(2).setCellValue(i);
+			}
+			wb.write(os);
+		}
+		ColumnarSheet sparse = ExcelClassHelper.readColumnar(UserInfo.class, alias, blanks, new ExcelReadOptions());
+		Assert.assertEquals(3, sparse.getRowCount());
+		ColumnarSheet.StringColumn sparseName = sparse.getStringColumn("name");
+		Assert.assertNull(sparseName.get(0));
+		Assert.assertEquals("a", sparseName.get(1));
+		Assert.assertNull(sparseName.get(2));
+		Assert.assertArrayEquals(new int[]{-1, 0, -1}, sparseName.codes());
+		ColumnarSheet.StringColumn sparseGender = sparse.getStringColumn("gender");
+		Assert.assertEquals(0, sparseGender.dictionary().length);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertNull(sparseGender.get(i));
+		}
+	}
+
+	@Test
+	public void staleFormulas() throws IOException {
+		String file = "target/read-class-formulas.xlsx";
+		try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream os = new FileOutputStream(file)) {
+			Sheet sheet = wb.createSheet();
+			Row head = sheet.createRow(0);
+			head.createCell(0).setCellValue("姓名");
+			head.createCell(1).setCellValue("薪水");
+			head.createCell(2).setCellValue("性别");
+			for (int i = 1; i <= 10; i++) {
+				Row row = sheet.createRow(i);
+				row.createCell(0).setCellValue("name:" + i);
+				// 未计算，文件中没有缓存结果
+				row.createCell(1).setCellFormula(i + "*1000");
+				row.createCell(2).setCellFormula("IF(MOD(" + i + ",2)=0,\"男\",\"女\")");
+			}
+			wb.write(os);
+		}
+		List<UserInfo> cached = ExcelClassHelper.read(UserInfo.class, alias, file, new ExcelReadOptions().setStreaming(false));
+		Assert.assertEquals(0, BigDecimal.ZERO.compareTo(cached.get(0).getSalary()));
+		List<UserInfo> evaluated = ExcelClassHelper.read(UserInfo.class, alias, file, new ExcelReadOptions().setEvaluateFormulas(true));
+		Assert.assertEquals(10, evaluated.size());
+		Assert.assertEquals(0, new BigDecimal(10000).compareTo(evaluated.get(9).getSalary()));
+		Assert.assertEquals("女", evaluated.get(0).getGender());
+		Assert.assertEquals("男", evaluated.get(1).getGender());
+	}
+
+	@Test
+	public void csvRoundTrip() throws IOException {
+		List<UserInfo> xlsx = ExcelClassHelper.read(UserInfo.class, alias, FILE);
+		Assert.assertEquals(ROWS, ExcelClassHelper.write(UserInfo.class, xlsx, alias, "src/test/resources/class-tpl.xlsx",
+				"target/read-class.csv", new ExcelWriteOptions()));
+		List<UserInfo> csv = ExcelClassHelper.read(UserInfo.class, alias, "target/read-class.csv");
+		Assert.assertEquals(ROWS, csv.size());
+		for (int i = 0; i < ROWS; i++) {
+			Assert.assertEquals(xlsx.get(i).getName(), csv.get(i).getName());
+			Assert.assertEquals(xlsx.get(i).getGender(), csv.get(i).getGender());
+			Assert.assertEquals(xlsx.get(i).getBirthday(), csv.get(i).getBirthday());
+			Assert.assertEquals(0, xlsx.get(i).getSalary().compareTo(csv.get(i).getSalary()));
+		}
+
+		// 缓冲区小于一行时记录跨越多次读取
+		List<UserInfo> small = new ArrayList<>();
+		try (InputStream is = new FileInputStream("target/read-class.csv")) {
+			new CsvReader(CsvReader.channel(is), ',', 8).read(new BeanRowHandler<>(UserInfo.class, alias, true, false, small::add));
+		}
+		Assert.assertEquals(ROWS, small.size());
+		Assert.assertEquals(csv.get(ROWS - 1).getBirthday(), small.get(ROWS - 1).getBirthday());
+
+		Map<String, List<UserInfo>> sheets = ExcelClassHelper.readSheets(UserInfo.class, alias, "target/read-class.csv",
+				new ExcelReadOptions());
+		Assert.assertEquals(Collections.singleton("read-class"), sheets.keySet());
+		Assert.assertEquals(ROWS, sheets.get("read-class").size());
+	}
+
+	@Test
+	public void readSheetsInParallel() throws IOException {
+		Map<String, List<UserInfo>> sheets = ExcelClassHelper.readSheets(UserInfo.class, alias, SHEETS_FILE,
+				new ExcelReadOptions().setParallelism(4));
+		Assert.assertEquals(Arrays.asList("1月", "2月", "3月", "4月", "5月", "6月"), new ArrayList<>(sheets.keySet()));
+		for (Map.Entry<String, List<UserInfo>> entry : sheets.entrySet()) {
+			Assert.assertEquals(ROWS, entry.getValue().size());
+			Assert.assertEquals(entry.getKey() + ":" + (ROWS - 1), entry.getValue().get(ROWS - 1).getName());
+		}
+		Map<String, List<UserInfo>> dom = ExcelClassHelper.readSheets(UserInfo.class, alias, SHEETS_FILE,
+				new ExcelReadOptions().setStreaming(false).setSheets(Collections.singleton("2月")));
+		Assert.assertEquals(Collections.singleton("2月"), dom.keySet());
+		Assert.assertEquals(sheets.get("2月").get(7).getSalary(), dom.get("2月").get(7).getSalary());
+
+		Map<String, Integer> counts = new HashMap<>();
+		try (InputStream is = new FileInputStream(SHEETS_FILE)) {
+			ExcelClassHelper.readSheets(UserInfo.class, alias, SHEETS_FILE, is,
+					new ExcelReadOptions().setSheets(Arrays.asList("3月", "5月")),
+					(sheet, batch) -> counts.merge(sheet, batch.size(), Integer::sum), 64);
+		}
+		Assert.assertEquals(2, counts.size());
+		Assert.assertEquals(Integer.valueOf(ROWS), counts.get("5月"));
+	}
+}
@@ -1,9 +1,36 @@
 package top.onceio.excel.utils;
 
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.*;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 public class ExcelTplWriterTest {
 
@@ -35,6 +62,670 @@ public class ExcelTplWriterTest {
 		ExcelClassHelper.write(UserInfo.class,data,alias,"src/test/resources/class-tpl.xlsx","out-class-tpl.xlsx");
 	}
 
+	@Test
+	public void exportFromIterator() {
+		final int rows = 1000;
+		Iterator<Object[]> it = new Iterator<Object[]>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < rows;
+			}
+
+			@Override
+			public Object[] next() {
+				i++;
+				return new Object[]{null, "name:" + i, i % 2 == 0 ? "男" : "女", new Date(), new BigDecimal(i)};
+			}
+		};
+		new File("target").mkdirs();
+		int written = ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, it, "target/out-tpl-iterator.xlsx",
+				new ExcelWriteOptions().setWindowSize(10).setCompressTempFiles(true));
+		Assert.assertEquals(rows, written);
+
+		Map<String,String> alias = new HashMap<>();
+		alias.put("姓名","name");
+		alias.put("薪水","salary");
+		List<UserInfo> read = ExcelClassHelper.read(UserInfo.class, alias, "target/out-tpl-iterator.xlsx");
+		Assert.assertEquals(rows, read.size());
+		Assert.assertEquals("name:1000", read.get(rows - 1).getName());
+		Assert.assertEquals(new BigDecimal("1000.0"), read.get(rows - 1).getSalary());
+	}
+
+	@Test
+	public void exportPartitions() throws IOException {
+		final int rows = 300;
+		Map<String, Iterator<Object[]>> partitions = new LinkedHashMap<>();
+		for (String region : Arrays.asList("华东", "华南", "华北")) {
+			List<Object[]> data = new ArrayList<>();
+			for (int i = 0; i < rows; i++) {
+				data.add(new Object[]{null, region + ":" + i, "男", new Date(), i});
+			}
+			partitions.put(region, data.iterator());
+		}
+		new File("target").mkdirs();
+		int written = ExcelTplWriter.writePartitions("src/test/resources/class-tpl.xlsx", 1, partitions, "target/out-tpl-partitions.xlsx",
+				new ExcelWriteOptions().setWindowSize(10).setParallelism(3));
+		Assert.assertEquals(3 * rows, written);
+
+		try (XSSFWorkbook wb = new XSSFWorkbook("target/out-tpl-partitions.xlsx")) {
+			Assert.assertEquals(3, wb.getNumberOfSheets());
+			Assert.assertEquals("华南", wb.getSheetName(1));
+			Sheet sheet = wb.getSheetAt(1);
+			Assert.assertEquals("姓名", sheet.getRow(0).getCell(1).getStringCellValue());
+			Assert.assertEquals(rows, sheet.getLastRowNum());
+			Assert.assertEquals("华南:299", sheet.getRow(rows).getCell(1).getStringCellValue());
+			Assert.assertEquals(299.0, sheet.getRow(rows).getCell(4).getNumericCellValue(), 0.0);
+		}
+	}
+
+	@Test
+	public void templateCache() throws IOException {
+		File tpl = new File("target/cache-tpl.xlsx");
+		Files.copy(new File("src/test/resources/class-tpl.xlsx").toPath(), tpl.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		TemplateCache cache = new TemplateCache(1);
+		ExcelWriteOptions options = new ExcelWriteOptions().setTemplateCache(cache);
+		List<Object[]> data = new ArrayList<>();
+		data.add(new Object[]{null, "name", "男", new Date(), 1});
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(1, ExcelTplWriter.write(tpl.getPath(), 1, data.iterator(), "target/out-tpl-cached.xlsx", options));
+		}
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(2, cache.getHits());
+		// 命中时由预编译的模板重建工作簿，结果与直接解析模板一致
+		Assert.assertEquals(1, ExcelTplWriter.write(tpl.getPath(), 1, data.iterator(), "target/out-tpl-uncached.xlsx",
+				new ExcelWriteOptions().setTemplateCache(null)));
+		try (XSSFWorkbook cached = new XSSFWorkbook("target/out-tpl-cached.xlsx");
+			 XSSFWorkbook parsed = new XSSFWorkbook("target/out-tpl-uncached.xlsx")) {
+			Sheet a = cached.getSheetAt(0);
+			Sheet b = parsed.getSheetAt(0);
+			Assert.assertEquals(b.getSheetName(), a.getSheetName());
+			for (int r = 0; r <= 1; r++) {
+				Row ra = a.getRow(r);
+				Row rb = b.getRow(r);
+				Assert.assertEquals(rb.getHeight(), ra.getHeight());
+				Assert.assertEquals(rb.getLastCellNum(), ra.getLastCellNum());
+				for (int c = 0; c < rb.getLastCellNum(); c++) {
+					Assert.assertEquals(b.getColumnWidth(c), a.getColumnWidth(c));
+					XSSFCell ca = (XSSFCell) ra.getCell(c);
+					XSSFCell cb = (XSSFCell) rb.getCell(c);
+					if (cb == null) {
+						Assert.assertNull(ca);
+						continue;
+					}
+					Assert.assertEquals(cb.getCellType(), ca.getCellType());
+					Assert.assertEquals(cb.toString(), ca.toString());
+					XSSFCellStyle sa = ca.getCellStyle();
+					XSSFCellStyle sb = cb.getCellStyle();
+					Assert.assertEquals(sb.getDataFormatString(), sa.getDataFormatString());
+					Assert.assertEquals(sb.getAlignment(), sa.getAlignment());
+					Assert.assertEquals(sb.getBorderBottom(), sa.getBorderBottom());
+					Assert.assertEquals(sb.getFillPattern(), sa.getFillPattern());
+					Assert.assertEquals(sb.getFont().getFontName(), sa.getFont().getFontName());
+					Assert.assertEquals(sb.getFont().getFontHeight(), sa.getFont().getFontHeight());
+					Assert.assertEquals(sb.getFont().getBold(), sa.getFont().getBold());
+				}
+			}
+		}
+
+		Assert.assertTrue(tpl.setLastModified(tpl.lastModified() - 10000));
+		ExcelTplWriter.write(tpl.getPath(), 1, data.iterator(), "target/out-tpl-cached.xlsx", options);
+		Assert.assertEquals(2, cache.getMisses());
+
+		ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-cached.xlsx", options);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void directEngineMatchesSxssf() throws IOException {
+		List<Object[]> data = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			data.add(new Object[]{null, i == 0 ? " <a&b> \"引号\" " : "名字:" + i, i % 2 == 0 ? "男" : null, new Date(1500000000000L + i * 3600000L), i * 1.25});
+		}
+		new File("target").mkdirs();
+		Assert.assertEquals(500, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-sxssf.xlsx",
+				new ExcelWriteOptions()));
+		Assert.assertEquals(500, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-direct.xlsx",
+				new ExcelWriteOptions().setEngine(WriteEngine.DIRECT)));
+
+		try (XSSFWorkbook sxssf = new XSSFWorkbook("target/out-tpl-sxssf.xlsx");
+			 XSSFWorkbook direct = new XSSFWorkbook("target/out-tpl-direct.xlsx")) {
+			Sheet a = sxssf.getSheetAt(0);
+			Sheet b = direct.getSheetAt(0);
+			Assert.assertEquals(a.getSheetName(), b.getSheetName());
+			Assert.assertEquals(a.getLastRowNum(), b.getLastRowNum());
+			Assert.assertEquals(a.getColumnWidth(1), b.getColumnWidth(1));
+			for (int r = 0; r <= a.getLastRowNum(); r++) {
+				for (int c = 1; c <= 4; c++) {
+					Cell x = a.getRow(r).getCell(c);
+					Cell y = b.getRow(r).getCell(c);
+					Assert.assertEquals(x.getCellType(), y.getCellType());
+					Assert.assertEquals(x.getCellStyle().getDataFormatString(), y.getCellStyle().getDataFormatString());
+					Assert.assertEquals(x.toString(), y.toString());
+				}
+			}
+			Assert.assertEquals(" <a&b> \"引号\" ", b.getRow(1).getCell(1).getStringCellValue());
+		}
+
+		Map<String,String> alias = new HashMap<>();
+		alias.put("姓名","name");
+		alias.put("生日","birthday");
+		alias.put("性别","gender");
+		alias.put("薪水","salary");
+		List<UserInfo> users = ExcelClassHelper.read(UserInfo.class, alias, "target/out-tpl-direct.xlsx");
+		Assert.assertEquals(500, users.size());
+		Assert.assertEquals(new ExcelWriteOptions().getTemplateCache(), TemplateCache.shared());
+		Assert.assertEquals(users.size(), ExcelClassHelper.write(UserInfo.class, users, alias, "src/test/resources/class-tpl.xlsx",
+				"target/out-class-direct.xlsx", new ExcelWriteOptions().setEngine(WriteEngine.DIRECT)));
+		List<UserInfo> again = ExcelClassHelper.read(UserInfo.class, alias, "target/out-class-direct.xlsx");
+		Assert.assertEquals(users.size(), again.size());
+		for (int i = 0; i < users.size(); i++) {
+			Assert.assertEquals(users.get(i).getName(), again.get(i).getName());
+			Assert.assertEquals(users.get(i).getGender(), again.get(i).getGender());
+			Assert.assertEquals(users.get(i).getBirthday(), again.get(i).getBirthday());
+			Assert.assertEquals(users.get(i).getSalary(), again.get(i).getSalary());
+		}
+	}
+
+	@Test
+	public void columnarWrite() throws IOException {
+		final int rows = 300;
+		String[] names = new String[rows];
+		String[] genders = new String[rows];
+		long[] birthdays = new long[rows];
+		double[] salaries = new double[rows];
+		long[] present = new long[(rows + 63) / 64];
+		List<Object[]> data = new ArrayList<>();
+		for (int i = 0; i < rows; i++) {
+			names[i] = "name:" + i;
+			genders[i] = i % 2 == 0 ? "男" : null;
+			birthdays[i] = 1500000000000L + i * 3600000L;
+			salaries[i] = i * 1.25;
+			if (i % 7 != 0) {
+				present[i / 64] |= 1L << i;
+			}
+			data.add(new Object[]{null, names[i], genders[i], new Date(birthdays[i]), i % 7 != 0 ? salaries[i] : null});
+		}
+		ColumnarData columns = new ColumnarData(rows).setString(1, names).setString(2, genders)
+				.setDate(3, birthdays).setDouble(4, salaries, present);
+		new File("target").mkdirs();
+		for (WriteEngine engine : WriteEngine.values()) {
+			ExcelWriteOptions options = new ExcelWriteOptions().setEngine(engine);
+			Assert.assertEquals(rows, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-rows.xlsx", options));
+			Assert.assertEquals(rows, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, columns, "target/out-tpl-columns.xlsx", options));
+			try (XSSFWorkbook a = new XSSFWorkbook("target/out-tpl-rows.xlsx");
+				 XSSFWorkbook b = new XSSFWorkbook("target/out-tpl-columns.xlsx")) {
+				Sheet x = a.getSheetAt(0);
+				Sheet y = b.getSheetAt(0);
+				Assert.assertEquals(x.getLastRowNum(), y.getLastRowNum());
+				for (int r = 1; r <= x.getLastRowNum(); r++) {
+					for (int c = 1; c <= 4; c++) {
+						Assert.assertEquals(x.getRow(r).getCell(c).getCellType(), y.getRow(r).getCell(c).getCellType());
+						Assert.assertEquals(x.getRow(r).getCell(c).toString(), y.getRow(r).getCell(c).toString());
+					}
+				}
+			}
+		}
+		Assert.assertEquals(rows, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-rows.csv", new ExcelWriteOptions()));
+		Assert.assertEquals(rows, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, columns, "target/out-tpl-columns.csv", new ExcelWriteOptions()));
+		Assert.assertArrayEquals(Files.readAllBytes(Paths.get("target/out-tpl-rows.csv")), Files.readAllBytes(Paths.get("target/out-tpl-columns.csv")));
+	}
+
+	@Test
+	public void stringStrategies() throws IOException {
+		List<Object[]> data = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			data.add(new Object[]{null, "name:" + i, i % 2 == 0 ? "男" : "女", new Date(), i});
+		}
+		new File("target").mkdirs();
+		Map<String, Integer> unique = new HashMap<>();
+		for (WriteEngine engine : WriteEngine.values()) {
+			for (StringStrategy strategy : StringStrategy.values()) {
+				String file = "target/out-tpl-" + engine + "-" + strategy + ".xlsx";
+				ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), file,
+						new ExcelWriteOptions().setEngine(engine).setStringStrategy(strategy).setSharedStringsLimit(10));
+				try (XSSFWorkbook wb = new XSSFWorkbook(file)) {
+					Sheet sheet = wb.getSheetAt(0);
+					Assert.assertEquals(2000, sheet.getLastRowNum());
+					Assert.assertEquals("name:1999", sheet.getRow(2000).getCell(1).getStringCellValue());
+					Assert.assertEquals("女", sheet.getRow(2000).getCell(2).getStringCellValue());
+					unique.put(engine + "-" + strategy, wb.getSharedStringSource().getUniqueCount());
+				}
+			}
+		}
+		int tpl = unique.get("DIRECT-INLINE");
+		Assert.assertEquals(tpl + 2000 + 2, (int) unique.get("DIRECT-SHARED"));
+		// 姓名列超过10个取值后改为内联，性别列保持共享
+		Assert.assertEquals(tpl + 10 + 2, (int) unique.get("DIRECT-AUTO"));
+		Assert.assertEquals(unique.get("SXSSF-INLINE"), unique.get("SXSSF-AUTO"));
+		Assert.assertTrue(unique.get("SXSSF-SHARED") >= 2002);
+	}
+
+	@Test
+	public void metrics() {
+		List<Object[]> data = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			data.add(new Object[]{null, "名字:" + i, "男", new Date(), i});
+		}
+		new File("target").mkdirs();
+		ExcelMetricsRecorder sxssf = new ExcelMetricsRecorder();
+		Assert.assertEquals(300, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-metrics.xlsx",
+				new ExcelWriteOptions().setMetrics(sxssf)));
+		Assert.assertEquals(300, sxssf.getRowsWritten());
+		Assert.assertEquals(new File("target/out-tpl-metrics.xlsx").length(), sxssf.getBytesWritten());
+		Assert.assertEquals(600, sxssf.getCells(Cell.CELL_TYPE_STRING));
+		Assert.assertEquals(600, sxssf.getCells(Cell.CELL_TYPE_NUMERIC));
+		Assert.assertEquals(0, sxssf.getConversionFailures());
+		for (ExcelMetrics.Phase phase : Arrays.asList(ExcelMetrics.Phase.TEMPLATE_LOAD, ExcelMetrics.Phase.HEADER_COPY,
+				ExcelMetrics.Phase.ROW_FILL, ExcelMetrics.Phase.FLUSH, ExcelMetrics.Phase.ZIP_WRITE)) {
+			Assert.assertEquals(1, sxssf.getPhase(phase).getCount());
+		}
+
+		ExcelMetricsRecorder direct = new ExcelMetricsRecorder();
+		ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-metrics-direct.xlsx",
+				new ExcelWriteOptions().setEngine(WriteEngine.DIRECT).setMetrics(direct));
+		Assert.assertEquals(300, direct.getRowsWritten());
+		Assert.assertEquals(600, direct.getCells(Cell.CELL_TYPE_STRING));
+		Assert.assertEquals(new File("target/out-tpl-metrics-direct.xlsx").length(), direct.getBytesWritten());
+
+		Map<String, String> alias = new HashMap<>();
+		alias.put("姓名", "name");
+		alias.put("薪水", "salary");
+		ExcelMetricsRecorder read = new ExcelMetricsRecorder();
+		List<UserInfo> users = ExcelClassHelper.read(UserInfo.class, alias, "target/out-tpl-metrics.xlsx",
+				new ExcelReadOptions().setMetrics(read));
+		Assert.assertEquals(300, users.size());
+		Assert.assertEquals(300, read.getRowsRead());
+		Assert.assertEquals(1, read.getPhase(ExcelMetrics.Phase.PARSE).getCount());
+		Map<String, Number> exported = new HashMap<>();
+		read.forEach(exported::put);
+		Assert.assertEquals(300L, exported.get("rows.read"));
+	}
+
+	@Test
+	public void asyncExport() throws Exception {
+		new File("target").mkdirs();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Iterator<Object[]> endless = new Iterator<Object[]>() {
+			private int i;
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Object[] next() {
+				if (i++ == 10) {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return new Object[]{null, "名字:" + i, "男", new Date(), i};
+			}
+		};
+		List<Object[]> data = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			data.add(new Object[]{null, "名字:" + i, "女", new Date(), i});
+		}
+		List<Long> progress = new CopyOnWriteArrayList<>();
+		// 两个线程，但内存预算只够一个导出
+		try (ExcelExportService service = new ExcelExportService(2, 0, 100L << 20)) {
+			CompletableFuture<ExcelExportResult> first = service.submit(
+					new ExcelExportRequest("src/test/resources/class-tpl.xlsx", 1, endless, "target/out-async-cancelled.xlsx"));
+			// 第一个导出取得内存预算后再提交第二个，两个工作线程抢占预算的先后不确定
+			Assert.assertTrue(started.await(30, TimeUnit.SECONDS));
+			CompletableFuture<ExcelExportResult> second = service.submit(
+					new ExcelExportRequest("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-async.xlsx")
+							.setProgress(progress::add).setProgressInterval(40));
+			try {
+				service.submit(new ExcelExportRequest("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-async-rejected.xlsx"));
+				Assert.fail();
+			} catch (RejectedExecutionException e) {
+				Assert.assertEquals(2, service.getOutstanding());
+			}
+			Assert.assertTrue(progress.isEmpty());
+			first.cancel(false);
+			release.countDown();
+			ExcelExportResult result = second.get(30, TimeUnit.SECONDS);
+			Assert.assertEquals(100, result.getRows());
+			Assert.assertEquals(Arrays.asList(40L, 80L, 100L), progress);
+			Assert.assertTrue(first.isCancelled());
+			Assert.assertFalse(new File("target/out-async-cancelled.xlsx").exists());
+		}
+		Assert.assertEquals(100, ExcelClassHelper.read(UserInfo.class, Collections.singletonMap("姓名", "name"), "target/out-async.xlsx").size());
+
+		// 写出失败时future异常结束，删除不完整的文件
+		Iterator<Object[]> failing = new Iterator<Object[]>() {
+			private int i;
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Object[] next() {
+				if (i++ == 50) {
+					throw new UncheckedIOException(new IOException("读取失败"));
+				}
+				return new Object[]{null, "名字:" + i, "男", new Date(), i};
+			}
+		};
+		try (ExcelExportService service = new ExcelExportService(1, 0, 100L << 20)) {
+			CompletableFuture<ExcelExportResult> failed = service.submit(new ExcelExportRequest("src/test/resources/class-tpl.xlsx", 1, failing,
+					"target/out-async-failed.xlsx").setOptions(new ExcelWriteOptions().setEngine(WriteEngine.DIRECT)));
+			try {
+				failed.get(30, TimeUnit.SECONDS);
+				Assert.fail();
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof UncheckedIOException);
+			}
+			Assert.assertFalse(new File("target/out-async-failed.xlsx").exists());
+		}
+	}
+
+	@Test
+	public void tempStorage() {
+		List<Object[]> data = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			data.add(new Object[]{null, "名字:" + i, "男", new Date(), i});
+		}
+		File dir = new File("target/sxssf-tmp");
+		ExcelTempStorage storage = new ExcelTempStorage(dir, 64 << 10, Long.MAX_VALUE);
+		Assert.assertEquals(1000, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.subList(0, 1000).iterator(),
+				"target/out-tpl-storage.xlsx", new ExcelWriteOptions().setWindowSize(10).setCompressTempFiles(true).setTempStorage(storage)));
+		Assert.assertTrue(storage.getPeakBytes() > 0);
+		Assert.assertEquals(0, storage.getUsedBytes());
+		Assert.assertEquals(0, dir.list().length);
+
+		try {
+			ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-storage.xlsx",
+					new ExcelWriteOptions().setWindowSize(10).setTempStorage(storage));
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage().startsWith("临时文件超出单次导出配额"));
+		}
+		Assert.assertEquals(0, storage.getUsedBytes());
+		Assert.assertEquals(0, dir.list().length);
+		Assert.assertEquals(0, storage.purge(0));
+	}
+
+	@Test
+	public void streamingWriteByColumn() throws IOException {
+		new File("target").mkdirs();
+		String tpl = "target/by-column-tpl.xlsx";
+		try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream os = new FileOutputStream(tpl)) {
+			CellStyle dateStyle = wb.createCellStyle();
+			dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+			Sheet sheet = wb.createSheet("指标");
+			sheet.createRow(0).createCell(0).setCellValue("报表");
+			String[] labels = {"名称", "数量", "日期"};
+			for (int i = 0; i < labels.length; i++) {
+				Row row = sheet.createRow(i + 1);
+				row.createCell(0).setCellValue(labels[i]);
+				Cell eg = row.createCell(1);
+				if (i == 0) {
+					eg.setCellValue("");
+				} else {
+					eg.setCellValue(0);
+				}
+				if (i == 2) {
+					eg.setCellStyle(dateStyle);
+				}
+			}
+			wb.write(os);
+		}
+		// 超出xlsx的16384列，其余列在第二个sheet中继续
+		final int cols = 20000;
+		Iterator<Object[]> columns = new Iterator<Object[]>() {
+			int j = 0;
+
+			@Override
+			public boolean hasNext() {
+				return j < cols;
+			}
+
+			@Override
+			public Object[] next() {
+				int n = j++;
+				if (n == 1) {
+					return null;
+				} else if (n == 2) {
+					return new Object[]{"短列"};
+				}
+				return new Object[]{"列" + n, n * 1.5, new Date(1500000000000L + n * 86400000L)};
+			}
+		};
+		File dir = new File("target/by-column-tmp");
+		ExcelTempStorage storage = new ExcelTempStorage(dir);
+		ExcelMetricsRecorder metrics = new ExcelMetricsRecorder();
+		try (InputStream tplis = new FileInputStream(tpl); OutputStream os = new FileOutputStream("target/out-by-column.xlsx")) {
+			Assert.assertEquals(cols, ExcelTplWriter.writeByColumn(tplis, 1, 1, columns, "target/out-by-column.xlsx", os,
+					new ExcelWriteOptions().setColumnBufferSize(16 << 10).setTempStorage(storage).setMetrics(metrics)));
+		}
+		Assert.assertEquals(cols, metrics.getRowsWritten());
+		Assert.assertTrue(storage.getPeakBytes() > 0);
+		Assert.assertEquals(0, dir.list().length);
+		try (XSSFWorkbook wb = new XSSFWorkbook("target/out-by-column.xlsx")) {
+			Sheet sheet = wb.getSheetAt(0);
+			Assert.assertEquals("指标", sheet.getSheetName());
+			Assert.assertEquals("报表", sheet.getRow(0).getCell(0).getStringCellValue());
+			Assert.assertEquals("数量", sheet.getRow(2).getCell(0).getStringCellValue());
+			Assert.assertEquals(2, wb.getNumberOfSheets());
+			int perSheet = 16384 - 1;
+			Assert.assertEquals(perSheet, sheet.getRow(1).getLastCellNum() - 1);
+			Assert.assertNull(sheet.getRow(1).getCell(2));
+			Assert.assertEquals("短列", sheet.getRow(1).getCell(3).getStringCellValue());
+			Assert.assertNull(sheet.getRow(2).getCell(3));
+			Sheet next = wb.getSheetAt(1);
+			Assert.assertEquals("指标(2)", next.getSheetName());
+			Assert.assertEquals("报表", next.getRow(0).getCell(0).getStringCellValue());
+			Assert.assertEquals("日期", next.getRow(3).getCell(0).getStringCellValue());
+			Assert.assertEquals(cols - perSheet, next.getRow(1).getLastCellNum() - 1);
+			Assert.assertEquals("列" + perSheet, next.getRow(1).getCell(1).getStringCellValue());
+			int n = cols - 1;
+			int c = 1 + n - perSheet;
+			Assert.assertEquals("列" + n, next.getRow(1).getCell(c).getStringCellValue());
+			Assert.assertEquals(n * 1.5, next.getRow(2).getCell(c).getNumericCellValue(), 0.0);
+			Assert.assertEquals(new Date(1500000000000L + n * 86400000L), next.getRow(3).getCell(c).getDateCellValue());
+			Assert.assertEquals("yyyy-mm-dd", next.getRow(3).getCell(c).getCellStyle().getDataFormatString());
+		}
+	}
+
+	@Test
+	public void sheetAndFileRollover() throws Exception {
+		List<Object[]> data = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			data.add(new Object[]{null, "name:" + i, "男", new Date(), i});
+		}
+		new File("target").mkdirs();
+		for (String file : Arrays.asList("target/out-tpl-rollover.xlsx", "target/out-tpl-rollover-direct.xlsx", "target/out-tpl-rollover.xls")) {
+			String tpl = file.endsWith(".xls") ? "target/rollover-tpl.xls" : "src/test/resources/class-tpl.xlsx";
+			if (file.endsWith(".xls")) {
+				try (XSSFWorkbook src = new XSSFWorkbook(new FileInputStream("src/test/resources/class-tpl.xlsx"));
+					 HSSFWorkbook wb = new HSSFWorkbook();
+					 OutputStream os = new FileOutputStream(tpl)) {
+					Sheet sheet = wb.createSheet(src.getSheetName(0));
+					for (int r = 0; r <= 1; r++) {
+						Row row = sheet.createRow(r);
+						for (int c = 1; c <= 4; c++) {
+							Cell eg = src.getSheetAt(0).getRow(r).getCell(c);
+							row.createCell(c, eg.getCellType()).setCellValue(r == 0 ? eg.getStringCellValue() : "");
+						}
+					}
+					wb.write(os);
+				}
+			}
+			WriteEngine engine = file.contains("direct") ? WriteEngine.DIRECT : WriteEngine.SXSSF;
+			Assert.assertEquals(250, ExcelTplWriter.write(tpl, 1, data.iterator(), file, new ExcelWriteOptions().setEngine(engine).setSheetRowLimit(100)));
+			try (Workbook wb = WorkbookFactory.create(new File(file))) {
+				Assert.assertEquals(3, wb.getNumberOfSheets());
+				String name = wb.getSheetName(0);
+				Assert.assertEquals(name + "(3)", wb.getSheetName(2));
+				Sheet last = wb.getSheetAt(2);
+				Assert.assertEquals("姓名", last.getRow(0).getCell(1).getStringCellValue());
+				Assert.assertEquals(wb.getSheetAt(0).getColumnWidth(1), last.getColumnWidth(1));
+				Assert.assertEquals(50, last.getLastRowNum());
+				Assert.assertEquals("name:249", last.getRow(50).getCell(1).getStringCellValue());
+			}
+		}
+
+		for (WriteEngine engine : WriteEngine.values()) {
+			ExcelWriteOptions options = new ExcelWriteOptions().setEngine(engine).setFileRowLimit(100).setSheetRowLimit(60);
+			Assert.assertEquals(250, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(),
+					"target/out-tpl-parts.xlsx.zip", options));
+			List<String> names = new ArrayList<>();
+			int rows = 0;
+			int sheets = 0;
+			try (ZipInputStream zis = new ZipInputStream(new FileInputStream("target/out-tpl-parts.xlsx.zip"))) {
+				for (ZipEntry entry; (entry = zis.getNextEntry()) != null; ) {
+					names.add(entry.getName());
+					try (XSSFWorkbook part = new XSSFWorkbook(new ByteArrayInputStream(readAll(zis)))) {
+						for (int s = 0; s < part.getNumberOfSheets(); s++) {
+							rows += part.getSheetAt(s).getLastRowNum();
+						}
+						sheets += part.getNumberOfSheets();
+					}
+				}
+			}
+			Assert.assertEquals(Arrays.asList("out-tpl-parts.xlsx", "out-tpl-parts(2).xlsx", "out-tpl-parts(3).xlsx"), names);
+			Assert.assertEquals(250, rows);
+			Assert.assertEquals(5, sheets);
+		}
+
+		// 任一文件写出失败时放弃整个zip
+		OutputStream full = new OutputStream() {
+			private int bytes;
+
+			@Override
+			public void write(int b) throws IOException {
+				if (++bytes > 256) {
+					throw new IOException("磁盘已满");
+				}
+			}
+		};
+		try (InputStream tpl = new FileInputStream("src/test/resources/class-tpl.xlsx")) {
+			Assert.assertEquals(0, ExcelTplWriter.write(tpl, 1, null, data.iterator(), "target/out-tpl-parts.csv.zip", full,
+					new ExcelWriteOptions().setFileRowLimit(100)));
+		}
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		for (int n; (n = is.read(buf)) > 0; ) {
+			bos.write(buf, 0, n);
+		}
+		return bos.toByteArray();
+	}
+
+	@Test
+	public void appendRows() throws IOException {
+		List<Object[]> data = new ArrayList<>();
+		// 已有的sheet XML超过复制时的64KB缓冲区，覆盖跨缓冲区的标签
+		for (int i = 0; i < 1500; i++) {
+			data.add(new Object[]{null, i == 120 ? " <a&b> " : "名字:" + i, i % 2 == 0 ? "男" : null, new Date(1500000000000L + i * 3600000L), i * 1.25});
+		}
+		new File("target").mkdirs();
+		Assert.assertEquals(1500, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-whole.xlsx",
+				new ExcelWriteOptions()));
+		for (WriteEngine engine : WriteEngine.values()) {
+			ExcelWriteOptions options = new ExcelWriteOptions().setEngine(engine);
+			File file = new File("target/out-tpl-append-" + engine + ".xlsx");
+			file.delete();
+			// 文件不存在时按模板导出
+			Assert.assertEquals(1000, ExcelTplWriter.append("src/test/resources/class-tpl.xlsx", 1, data.subList(0, 1000).iterator(), file.getPath(), options));
+			Assert.assertEquals(500, ExcelTplWriter.append("src/test/resources/class-tpl.xlsx", 1, data.subList(1000, 1500).iterator(), file.getPath(), options));
+			Assert.assertEquals(0, ExcelTplWriter.append("src/test/resources/class-tpl.xlsx", 1, Collections.<Object[]>emptyIterator(), file.getPath(), options));
+			try (XSSFWorkbook whole = new XSSFWorkbook("target/out-tpl-whole.xlsx");
+				 XSSFWorkbook appended = new XSSFWorkbook(file.getPath())) {
+				Sheet a = whole.getSheetAt(0);
+				Sheet b = appended.getSheetAt(0);
+				Assert.assertEquals(1, appended.getNumberOfSheets());
+				Assert.assertEquals(a.getLastRowNum(), b.getLastRowNum());
+				for (int r = 0; r <= a.getLastRowNum(); r++) {
+					for (int c = 1; c <= 4; c++) {
+						Cell x = a.getRow(r).getCell(c);
+						Cell y = b.getRow(r).getCell(c);
+						Assert.assertEquals(x.getCellType(), y.getCellType());
+						Assert.assertEquals(x.getCellStyle().getDataFormatString(), y.getCellStyle().getDataFormatString());
+						Assert.assertEquals(x.toString(), y.toString());
+					}
+				}
+				Assert.assertEquals(" <a&b> ", b.getRow(121).getCell(1).getStringCellValue());
+			}
+		}
+	}
+
+	@Test
+	public void csvExport() throws IOException {
+		List<Object[]> data = new ArrayList<>();
+		data.add(new Object[]{null, "逗号,引号\"制表\t换行\r\n结束", "男", new Date(1500000000123L), new BigDecimal("1234.50")});
+		data.add(new Object[]{null, " 空格 ", null, LocalDate.of(2020, 1, 2), 12.5});
+		Map<String,String> alias = new HashMap<>();
+		alias.put("姓名","name");
+		alias.put("性别","gender");
+		alias.put("生日","birthday");
+		alias.put("月薪","salary");
+		new File("target").mkdirs();
+		for (String file : Arrays.asList("target/out-tpl.csv", "target/out-tpl.tsv")) {
+			try (OutputStream os = new FileOutputStream(file);
+				 InputStream tpl = new FileInputStream("src/test/resources/class-tpl.xlsx")) {
+				Assert.assertEquals(2, ExcelTplWriter.write(tpl, 1, Collections.singletonList("月薪"), data.iterator(), file, os,
+						new ExcelWriteOptions()));
+			}
+			List<UserInfo> read = ExcelClassHelper.read(UserInfo.class, alias, file, new ExcelReadOptions().setTrim(false));
+			Assert.assertEquals(2, read.size());
+			Assert.assertEquals(data.get(0)[1], read.get(0).getName());
+			Assert.assertEquals("男", read.get(0).getGender());
+			Assert.assertEquals(data.get(0)[3], read.get(0).getBirthday());
+			Assert.assertEquals(0, new BigDecimal("1234.5").compareTo(read.get(0).getSalary()));
+			Assert.assertEquals(" 空格 ", read.get(1).getName());
+			Assert.assertNull(read.get(1).getGender());
+			Calendar cal = Calendar.getInstance();
+			cal.clear();
+			cal.set(2020, Calendar.JANUARY, 2);
+			Assert.assertEquals(cal.getTime(), read.get(1).getBirthday());
+		}
+		String csv = new String(Files.readAllBytes(Paths.get("target/out-tpl.csv")), StandardCharsets.UTF_8);
+		Assert.assertTrue(csv.startsWith("\ufeff,姓名,性别,生日,月薪\r\n,\"逗号,引号\"\"制表\t换行\r\n结束\",男,"));
+		Assert.assertTrue(csv.endsWith("\r\n, 空格 ,,2020-01-02,12.5\r\n"));
+	}
+
+	@Test
+	public void typedValueWriters() {
+		Date date = new Date(1500000000000L);
+		Assert.assertEquals(DateUtil.getExcelDate(date), ExcelDates.serial(date.getTime(), false), 1e-9);
+		Assert.assertEquals(DateUtil.getExcelDate(date, true), ExcelDates.serial(date.getTime(), true), 1e-9);
+
+		List<Object[]> data = new ArrayList<>();
+		data.add(new Object[]{null, "name:1", "男", LocalDate.of(2020, 1, 2), 1234L});
+		data.add(new Object[]{null, "name:2", "女", LocalDateTime.of(2020, 1, 2, 12, 0), 12.5f});
+		new File("target").mkdirs();
+		Assert.assertEquals(2, ExcelTplWriter.write("src/test/resources/class-tpl.xlsx", 1, data.iterator(), "target/out-tpl-typed.xlsx",
+				new ExcelWriteOptions()));
+
+		Map<String,String> alias = new HashMap<>();
+		alias.put("生日","birthday");
+		alias.put("薪水","salary");
+		List<UserInfo> read = ExcelClassHelper.read(UserInfo.class, alias, "target/out-tpl-typed.xlsx");
+		Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(2020, Calendar.JANUARY, 2);
+		Assert.assertEquals(cal.getTime(), read.get(0).getBirthday());
+		Assert.assertEquals(new BigDecimal("1234.0"), read.get(0).getSalary());
+		cal.set(Calendar.HOUR_OF_DAY, 12);
+		Assert.assertEquals(cal.getTime(), read.get(1).getBirthday());
+		Assert.assertEquals(new BigDecimal("12.5"), read.get(1).getSalary());
+	}
+
 
 }
 